@@ -0,0 +1,68 @@
+package Client;
+
+import Marshaller.FieldId;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Typed request for the availability of a facility (request method 2)
+ * The queried days are packed into a bitmask, bit d set for day d, so no list of strings is sent
+ */
+public class AvailabilityRequest extends ClientRequest {
+    public static final int REQUEST_METHOD = Protocol.GET_AVAILABILITY;
+
+    @FieldId(2) String facilityName;
+    @FieldId(3) int dayMask;
+    @FieldId(4) boolean atMostOnce;
+
+    // Note: Unmarshalling needs to have an empty constructor
+    public AvailabilityRequest() {
+    }
+
+    public AvailabilityRequest(String facilityName, int dayMask, boolean atMostOnce, int requestId) {
+        super(REQUEST_METHOD, null, requestId);
+        this.facilityName = facilityName;
+        this.dayMask = dayMask;
+        this.atMostOnce = atMostOnce;
+    }
+
+    /**
+     * Packs days into a bitmask
+     * @param days: days to query, 0 - Sunday, 6 - Saturday
+     * @return the bitmask with bit d set for each day d
+     * @throws IllegalArgumentException if a day is not between 0 and 6
+     */
+    public static int toDayMask(List<Integer> days) {
+        int dayMask = 0;
+        for (int day : days) {
+            if (day < 0 || day > 6) throw new IllegalArgumentException("Invalid day: " + day);
+            dayMask |= 1 << day;
+        }
+        return dayMask;
+    }
+
+    public String getFacilityName() {
+        return facilityName;
+    }
+
+    public int getDayMask() {
+        return dayMask;
+    }
+
+    /**
+     * @return the days set in the day mask, in ascending order
+     */
+    public List<Integer> getDays() {
+        List<Integer> days = new ArrayList<>(Integer.bitCount(dayMask & 0x7F));
+        for (int day = 0; day <= 6; day++) {
+            if ((dayMask & (1 << day)) != 0) days.add(day);
+        }
+        return days;
+    }
+
+    @Override
+    public boolean isAtMostOnce() {
+        return atMostOnce;
+    }
+}
@@ -1,24 +1,37 @@
 package Client;
 
+import Marshaller.ClassSchema;
 import Marshaller.Marshallable;
+import Marshaller.WireFormat;
 import Server.Application.ServerResponse;
+import Server.Transport.FaultInjectingTransport;
+import Server.Transport.FaultProfile;
+import Server.Transport.IDatagramTransport;
+import Server.Transport.SocketTransport;
 
 import java.io.IOException;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
-import java.util.stream.Collectors;
 
 public class Client {
     Scanner in;
     int requestNum;
     DatagramSocket socket;
+    IDatagramTransport transport; // The socket, with any faults set by the client.fault properties
+    SocketAddress serverAddress;
+    WireFormat requestFormat;
 
     public Client() {
         in = new Scanner(System.in);
-        requestNum = 1;
+        requestNum = Protocol.firstRequestId(System.currentTimeMillis());
+        requestFormat = WireFormat.fromSystemProperty(WireFormat.COMPACT_VARINT);
+        ClassSchema.prepare(ClientRequest.class, AvailabilityRequest.class, CreateBookingRequest.class,
+                UpdateBookingRequest.class, ObserveFacilityRequest.class, ServerResponse.class);
     }
 
     public static void main(String[] args){
@@ -82,7 +95,9 @@ public class Client {
         // Establishing a connection with the socket
         socket = new DatagramSocket();
         InetAddress address = InetAddress.getByName(hostname);
-        socket.connect(new InetSocketAddress(address, port));
+        serverAddress = new InetSocketAddress(address, port);
+        socket.connect(serverAddress);
+        transport = FaultInjectingTransport.wrap(new SocketTransport(socket), FaultProfile.fromSystemProperties("client"));
 
         // Preparing the request string
         String requestString = "Sending heartbeat from: " + socket.getLocalAddress();
@@ -133,18 +148,13 @@ public class Client {
         System.out.println("Enter which day(s) to view availability, separated by commas:");
         System.out.println("0 - Sunday, 6 - Saturday");
         String daysString = in.nextLine();
-        List<String> days =
-                Arrays.stream(daysString.split(","))
-                .collect(Collectors.toList());
+        int dayMask = parseDayMask(daysString);
         System.out.println("Select semantic to use:");
         System.out.println("0 - At Least Once Semantic, 1 - At Most Once Semantic");
         String semantic = in.nextLine();
 
         // Send request
-        List<String> arguments = new ArrayList<>(Arrays.asList(facilityName));
-        arguments.addAll(days);
-        arguments.add(semantic);
-        ClientRequest clientRequest = new ClientRequest(2, arguments, requestNum);
+        ClientRequest clientRequest = new AvailabilityRequest(facilityName, dayMask, isAtMostOnce(semantic), requestNum);
         String response = sendRequest(clientRequest);
         System.out.println(response);
     }
@@ -164,8 +174,11 @@ public class Client {
         String semantic = in.nextLine();
 
         // Send request
-        List<String> arguments = new ArrayList<>(Arrays.asList(facilityName,startDatetime,endDatetime, semantic));
-        ClientRequest clientRequest = new ClientRequest(3, arguments, requestNum);
+        // A datetime that cannot be parsed is sent as -1, which the server rejects as an invalid datetime
+        int[] start = parseDatetime(startDatetime);
+        int[] end = parseDatetime(endDatetime);
+        int day = start[0] == end[0] ? start[0] : -1; // Bookings cannot span days
+        ClientRequest clientRequest = new CreateBookingRequest(facilityName, day, start[1], end[1], isAtMostOnce(semantic), requestNum);
         String response = sendRequest(clientRequest);
         System.out.println(response);
     }
@@ -182,8 +195,7 @@ public class Client {
         String semantic = in.nextLine();
 
         // Send request
-        List<String> arguments = new ArrayList<>(Arrays.asList(confirmationId, String.valueOf(offset), semantic));
-        ClientRequest clientRequest = new ClientRequest(4, arguments, requestNum);
+        ClientRequest clientRequest = new UpdateBookingRequest(confirmationId, offset, isAtMostOnce(semantic), requestNum);
         String response = sendRequest(clientRequest);
         System.out.println(response);
     }
@@ -199,32 +211,120 @@ public class Client {
         String semantic = in.nextLine();
 
         // Send request
-        List<String> arguments = new ArrayList<>(Arrays.asList(facilityName, String.valueOf(duration), semantic));
-        ClientRequest clientRequest = new ClientRequest(5, arguments, requestNum);
+        ClientRequest clientRequest = new ObserveFacilityRequest(facilityName, duration, isAtMostOnce(semantic), requestNum);
         String response = sendRequest(clientRequest);
         System.out.println(response);
         receiveUpdates(duration, facilityName);
     }
 
-    private void receiveUpdates(int duration, String facilityName) {
-        byte[] buffer = new byte[512];
+    // ===================================
+    // Argument parsing
+    // ===================================
+
+    /**
+     * @param daysString: days separated by commas, e.g. "0,2,4"
+     * @return the days packed into a bitmask, see AvailabilityRequest.toDayMask. Invalid days are skipped
+     */
+    private int parseDayMask(String daysString) {
+        List<Integer> days = new ArrayList<>();
+        for (String dayString : daysString.split(",")) {
+            try {
+                int day = Integer.parseInt(dayString.trim());
+                if (day >= 0 && day <= 6) {
+                    days.add(day);
+                    continue;
+                }
+            } catch (NumberFormatException ignored) {
+            }
+            System.out.println("Skipping invalid day: " + dayString);
+        }
+        return AvailabilityRequest.toDayMask(days);
+    }
+
+    /**
+     * @param datetime: datetime in the form D/HH/mm
+     * @return {day, minutes from the start of the day}, with -1 in place of any part that is malformed
+     */
+    private int[] parseDatetime(String datetime) {
+        String[] datetimeSplit = datetime.trim().split("/");
+        if (datetimeSplit.length != 3) return new int[]{-1, -1};
+        try {
+            int day = Integer.parseInt(datetimeSplit[0]);
+            int hour = Integer.parseInt(datetimeSplit[1]);
+            int minute = Integer.parseInt(datetimeSplit[2]);
+            boolean isTimeValid = hour >= 0 && hour < 24 && minute >= 0 && minute < 60;
+            return new int[]{day, isTimeValid ? hour * 60 + minute : -1};
+        } catch (NumberFormatException e) {
+            return new int[]{-1, -1};
+        }
+    }
+
+    /**
+     * @param semantic: 0 - At Least Once Semantic, 1 - At Most Once Semantic
+     */
+    private boolean isAtMostOnce(String semantic) {
+        return semantic.trim().equals("1");
+    }
+
+    /**
+     * Prints the facility's updates until the observation expires
+     * Starts from a snapshot of the facility, and asks for another whenever an update is missed, which shows as a gap
+     * in the update numbers. Updates already included in the last snapshot are skipped
+     */
+    private void receiveUpdates(int duration, String facilityName) throws IOException, IllegalAccessException {
+        // Snapshots can be longer than other replies, so updates are received into a buffer as large as a datagram
+        ByteBuffer buffer = ByteBuffer.allocate(65507);
         System.out.println("Observing " + facilityName + " for next " + duration + " minutes...");
         long expiryTime = System.currentTimeMillis() + duration * 60L * 1000;
+        long lastSequence = -1; // Unknown until the first snapshot arrives
+        requestSnapshot(facilityName);
         while (System.currentTimeMillis() < expiryTime) { // While not expired
             int remainingTime = Math.toIntExact(expiryTime - System.currentTimeMillis());
-            DatagramPacket reply = new DatagramPacket(buffer, buffer.length);
+            buffer.clear();
             try {
                 socket.setSoTimeout(remainingTime);
-                socket.receive(reply);
-                String update = new String(buffer, 0, reply.getLength());
-                System.out.println(update);
+                transport.receive(buffer);
             } catch (IOException e) {
                 System.out.println("No other updates received");
+                continue;
+            }
+            String update = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+            long sequence = Protocol.parseSequence(update, Protocol.UPDATE_PREFIX);
+            if (sequence < 0) {
+                // Anything other than an update is the reply to a snapshot request
+                buffer.flip();
+                String snapshot = Marshallable.unmarshall(buffer, ServerResponse.class).getData();
+                long snapshotSequence = Protocol.parseSequence(snapshot, Protocol.SNAPSHOT_PREFIX);
+                if (snapshotSequence < 0) {
+                    System.out.println(snapshot);
+                } else if (snapshotSequence > lastSequence) {
+                    lastSequence = snapshotSequence;
+                    System.out.println(snapshot);
+                }
+                continue;
+            }
+            if (sequence <= lastSequence) continue;
+            System.out.println(update);
+            if (lastSequence >= 0 && sequence == lastSequence + 1) {
+                lastSequence = sequence;
+            } else {
+                System.out.println("Missed updates to " + facilityName + ". Requesting a snapshot...");
+                requestSnapshot(facilityName);
             }
         }
         System.out.println("Observation session ended");
     }
 
+    /**
+     * Asks for a snapshot of the facility without waiting for the reply, which receiveUpdates receives among the updates
+     * Snapshots are read-only, so they are asked for at least once
+     */
+    private void requestSnapshot(String facilityName) throws IOException, IllegalAccessException {
+        ClientRequest snapshotRequest = new ClientRequest(Protocol.FACILITY_SNAPSHOT,
+                Arrays.asList(facilityName, "0"), requestNum);
+        transport.send(ByteBuffer.wrap(snapshotRequest.marshall(requestFormat)), serverAddress);
+    }
+
     private String sendRequest(ClientRequest clientRequest) throws IOException, IllegalAccessException {
         String response = null;
         int retryCount = 0;
@@ -234,19 +334,17 @@ public class Client {
         while (response == null && retryCount < MAX_RETRY_COUNT) {
             try {
                 // Marshall clientRequest then send the request
-                byte[] request = clientRequest.marshall();
-                DatagramPacket requestPacket = new DatagramPacket(request, request.length);
-                socket.send(requestPacket);
+                byte[] request = clientRequest.marshall(requestFormat);
+                transport.send(ByteBuffer.wrap(request), serverAddress);
 
                 // Receiving the reply
-                byte[] buffer = new byte[512];
-                DatagramPacket reply = new DatagramPacket(buffer, buffer.length);
+                ByteBuffer reply = ByteBuffer.allocate(512);
                 socket.setSoTimeout(TIMEOUT);
-                socket.receive(reply);
+                transport.receive(reply);
+                reply.flip();
 
                 // Unmarshall response
-                byte[] dataToUnmarshall = reply.getData();
-                ServerResponse serverResponse = Marshallable.unmarshall(dataToUnmarshall, ServerResponse.class);
+                ServerResponse serverResponse = Marshallable.unmarshall(reply, ServerResponse.class);
                 response = serverResponse.getData();
             } catch (SocketTimeoutException e) {
                 System.out.println("Failed to contact server. Sending request again...");
@@ -1,13 +1,14 @@
 package Client;
 
+import Marshaller.FieldId;
 import Marshaller.Marshallable;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class ClientRequest extends Marshallable {
-    int requestMethod;
-    List<String> arguments = new ArrayList<>();
+    @FieldId(0) int requestMethod;
+    @FieldId(1) List<String> arguments = new ArrayList<>();
 
     // Note: Unmarshalling needs to have an empty constructor for some reason
     public ClientRequest(){
@@ -35,5 +36,15 @@ public class ClientRequest extends Marshallable {
         return arguments;
     }
 
+    /**
+     * Untyped requests carry the semantic as their last argument: 0 - At Least Once, 1 - At Most Once
+     * Typed requests override this with a boolean field
+     * @return true if the request should be handled with at-most-once semantics
+     */
+    public boolean isAtMostOnce() {
+        if (arguments == null || arguments.isEmpty()) return false;
+        return Integer.parseInt(arguments.get(arguments.size() - 1)) == 1;
+    }
+
 
 }
@@ -0,0 +1,51 @@
+package Client;
+
+import Marshaller.FieldId;
+
+/**
+ * Typed request to book a facility (request method 3)
+ * Times are minutes from the start of the day, e.g. 10:30 is 630
+ */
+public class CreateBookingRequest extends ClientRequest {
+    public static final int REQUEST_METHOD = Protocol.CREATE_BOOKING;
+
+    @FieldId(2) String facilityName;
+    @FieldId(3) int day;
+    @FieldId(4) int startMinute;
+    @FieldId(5) int endMinute;
+    @FieldId(6) boolean atMostOnce;
+
+    // Note: Unmarshalling needs to have an empty constructor
+    public CreateBookingRequest() {
+    }
+
+    public CreateBookingRequest(String facilityName, int day, int startMinute, int endMinute, boolean atMostOnce, int requestId) {
+        super(REQUEST_METHOD, null, requestId);
+        this.facilityName = facilityName;
+        this.day = day;
+        this.startMinute = startMinute;
+        this.endMinute = endMinute;
+        this.atMostOnce = atMostOnce;
+    }
+
+    public String getFacilityName() {
+        return facilityName;
+    }
+
+    public int getDay() {
+        return day;
+    }
+
+    public int getStartMinute() {
+        return startMinute;
+    }
+
+    public int getEndMinute() {
+        return endMinute;
+    }
+
+    @Override
+    public boolean isAtMostOnce() {
+        return atMostOnce;
+    }
+}
@@ -0,0 +1,38 @@
+package Client;
+
+import Marshaller.FieldId;
+
+/**
+ * Typed request to observe a facility's availability (request method 5)
+ */
+public class ObserveFacilityRequest extends ClientRequest {
+    public static final int REQUEST_METHOD = Protocol.OBSERVE_FACILITY;
+
+    @FieldId(2) String facilityName;
+    @FieldId(3) int durationMinutes;
+    @FieldId(4) boolean atMostOnce;
+
+    // Note: Unmarshalling needs to have an empty constructor
+    public ObserveFacilityRequest() {
+    }
+
+    public ObserveFacilityRequest(String facilityName, int durationMinutes, boolean atMostOnce, int requestId) {
+        super(REQUEST_METHOD, null, requestId);
+        this.facilityName = facilityName;
+        this.durationMinutes = durationMinutes;
+        this.atMostOnce = atMostOnce;
+    }
+
+    public String getFacilityName() {
+        return facilityName;
+    }
+
+    public int getDurationMinutes() {
+        return durationMinutes;
+    }
+
+    @Override
+    public boolean isAtMostOnce() {
+        return atMostOnce;
+    }
+}
@@ -0,0 +1,76 @@
+package Client;
+
+/**
+ * The parts of the request protocol that the client and the server must agree on, besides the message classes
+ * Opcodes are the requestMethod of a ClientRequest
+ * Request ids are [15 bit epoch][16 bit sequence], where the epoch is the second the client started, so a client
+ * restarting on the same address starts a new epoch rather than reusing the ids of the one before
+ * Observers are sent each change as "Update #N ..." and asked-for snapshots as "Snapshot #N ..."
+ */
+public final class Protocol {
+    // Opcodes sent by the client
+    public static final int HEARTBEAT = 0;
+    public static final int GET_AVAILABILITY = 2;
+    public static final int CREATE_BOOKING = 3;
+    public static final int UPDATE_BOOKING = 4;
+    public static final int OBSERVE_FACILITY = 5;
+    public static final int FACILITY_SNAPSHOT = 6;
+    // Reserved for operators, see StatsClient
+    public static final int STATS = 99;
+
+    public static final int SEQUENCE_BITS = 16;
+    public static final int EPOCH_MASK = 0x7FFF;
+
+    public static final String UPDATE_PREFIX = "Update #";
+    public static final String SNAPSHOT_PREFIX = "Snapshot #";
+
+    private Protocol() {
+    }
+
+    // =====================================
+    // Request ids
+    // =====================================
+
+    /**
+     * Epochs wrap around every 9 hours, and ids compare by epoch first, so a client sends fewer than 65536 requests
+     * per epoch or its ids overflow into the next one
+     * @param nowMillis: the time the client started
+     * @return the id a client should give its first request, counting up by 1 from there
+     */
+    public static int firstRequestId(long nowMillis) {
+        return (int) (nowMillis / 1000 & EPOCH_MASK) << SEQUENCE_BITS | 1;
+    }
+
+    public static int epochOf(int requestId) {
+        return requestId >>> SEQUENCE_BITS & EPOCH_MASK;
+    }
+
+    /**
+     * Epochs wrap around, so an epoch is newer if it is less than half the range ahead
+     * @return true if requestId is from a later epoch than otherRequestId
+     */
+    public static boolean isNewerEpoch(int requestId, int otherRequestId) {
+        int ahead = (epochOf(requestId) - epochOf(otherRequestId)) & EPOCH_MASK;
+        return ahead != 0 && ahead <= EPOCH_MASK / 2;
+    }
+
+    // =====================================
+    // Observer messages
+    // =====================================
+
+    /**
+     * @param message: an update or snapshot message
+     * @param prefix: UPDATE_PREFIX or SNAPSHOT_PREFIX
+     * @return the sequence number of the message, or -1 if it is not a message of that kind
+     */
+    public static long parseSequence(String message, String prefix) {
+        if (!message.startsWith(prefix)) return -1;
+        int end = message.indexOf(' ', prefix.length());
+        if (end < 0) return -1;
+        try {
+            return Long.parseLong(message.substring(prefix.length(), end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package Client;
+
+import Marshaller.Marshallable;
+import Marshaller.WireFormat;
+import Server.Application.ServerResponse;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+
+/**
+ * Asks a server for its stats with the STATS opcode and prints the report
+ * Run with: java Client.StatsClient [host] [port], by default 127.0.0.1 17
+ */
+public class StatsClient {
+    private static final int MAX_RETRY_COUNT = 5;
+    private static final int TIMEOUT = 2000;
+
+    public static void main(String[] args) throws IOException, IllegalAccessException {
+        String hostname = args.length > 0 ? args[0] : "127.0.0.1";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 17;
+
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.connect(new InetSocketAddress(hostname, port));
+            socket.setSoTimeout(TIMEOUT);
+            ClientRequest statsRequest = new ClientRequest(Protocol.STATS, Collections.emptyList(), 1);
+            byte[] request = statsRequest.marshall(WireFormat.COMPACT_VARINT);
+            // The report is longer than other replies, so it is received into a buffer as large as a datagram
+            byte[] buffer = new byte[65507];
+
+            for (int retryCount = 0; retryCount < MAX_RETRY_COUNT; retryCount++) {
+                socket.send(new DatagramPacket(request, request.length));
+                try {
+                    DatagramPacket reply = new DatagramPacket(buffer, buffer.length);
+                    socket.receive(reply);
+                    System.out.print(Marshallable.unmarshall(reply, ServerResponse.class).getData());
+                    return;
+                } catch (SocketTimeoutException e) {
+                    System.out.println("Failed to contact server. Sending request again...");
+                }
+            }
+            System.out.println("Retried too many times. Terminating request");
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package Client;
+
+import Marshaller.FieldId;
+
+/**
+ * Typed request to shift an existing booking (request method 4)
+ */
+public class UpdateBookingRequest extends ClientRequest {
+    public static final int REQUEST_METHOD = Protocol.UPDATE_BOOKING;
+
+    @FieldId(2) String confirmationId;
+    @FieldId(3) int offsetMinutes;
+    @FieldId(4) boolean atMostOnce;
+
+    // Note: Unmarshalling needs to have an empty constructor
+    public UpdateBookingRequest() {
+    }
+
+    public UpdateBookingRequest(String confirmationId, int offsetMinutes, boolean atMostOnce, int requestId) {
+        super(REQUEST_METHOD, null, requestId);
+        this.confirmationId = confirmationId;
+        this.offsetMinutes = offsetMinutes;
+        this.atMostOnce = atMostOnce;
+    }
+
+    public String getConfirmationId() {
+        return confirmationId;
+    }
+
+    /**
+     * @return the offset in minutes. Negative values bring the booking forward
+     */
+    public int getOffsetMinutes() {
+        return offsetMinutes;
+    }
+
+    @Override
+    public boolean isAtMostOnce() {
+        return atMostOnce;
+    }
+}
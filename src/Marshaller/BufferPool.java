@@ -0,0 +1,167 @@
+package Marshaller;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ring of reusable, equally sized buffers shared by the server's receive/send path and the Marshaller
+ * Heap buffers are array-backed so their array can be handed to a DatagramPacket without copying.
+ * Direct buffers can be read and written by a DatagramChannel without copying
+ * acquire() takes a buffer from the ring, allocating a new one on a miss when the ring is empty
+ * release() puts it back. Buffers released while the ring is full are dropped and left to the garbage collector
+ * Sizes can be set with -Dmarshaller.pool.bufferSize and -Dmarshaller.pool.capacity for the shared pools
+ */
+public class BufferPool {
+    public static final int DEFAULT_BUFFER_SIZE = 512; // Same as the client's receive buffer
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final BufferPool shared = new BufferPool(
+            Integer.getInteger("marshaller.pool.bufferSize", DEFAULT_BUFFER_SIZE),
+            Integer.getInteger("marshaller.pool.capacity", DEFAULT_CAPACITY));
+    private static final BufferPool sharedDirect = new BufferPool(
+            Integer.getInteger("marshaller.pool.bufferSize", DEFAULT_BUFFER_SIZE),
+            Integer.getInteger("marshaller.pool.capacity", DEFAULT_CAPACITY), true);
+
+    private final int bufferSize;
+    private final boolean direct;
+    private final ArrayBlockingQueue<ByteBuffer> ring;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder drops = new LongAdder();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger highWaterMark = new AtomicInteger();
+
+    /**
+     * @param bufferSize: capacity in bytes of every buffer in the pool
+     * @param capacity: maximum number of idle buffers kept for reuse
+     */
+    public BufferPool(int bufferSize, int capacity) {
+        this(bufferSize, capacity, false);
+    }
+
+    /**
+     * @param bufferSize: capacity in bytes of every buffer in the pool
+     * @param capacity: maximum number of idle buffers kept for reuse
+     * @param direct: true to pool direct buffers, false to pool heap buffers
+     */
+    public BufferPool(int bufferSize, int capacity, boolean direct) {
+        if (bufferSize <= 0 || capacity <= 0) throw new IllegalArgumentException("Buffer size and capacity must be positive");
+        this.bufferSize = bufferSize;
+        this.direct = direct;
+        this.ring = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * @return the pool of heap buffers shared by the server and the Marshaller
+     */
+    public static BufferPool shared() {
+        return shared;
+    }
+
+    /**
+     * @return the pool of direct buffers shared by the server and the Marshaller, for transports over a DatagramChannel
+     */
+    public static BufferPool sharedDirect() {
+        return sharedDirect;
+    }
+
+    // =====================================
+    // Acquire and release
+    // =====================================
+
+    /**
+     * Takes a cleared buffer from the pool
+     * @return a buffer of getBufferSize() bytes, positioned at 0. Must be given back with release()
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = ring.poll();
+        if (buffer == null) {
+            misses.increment();
+            buffer = direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+        } else {
+            hits.increment();
+            buffer.clear();
+        }
+        int nowInUse = inUse.incrementAndGet();
+        highWaterMark.accumulateAndGet(nowInUse, Math::max);
+        return buffer;
+    }
+
+    /**
+     * Gives a buffer back to the pool. It must not be used by the caller afterwards
+     * @param buffer: a buffer from acquire(), or null to do nothing
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null) return;
+        inUse.decrementAndGet();
+        // Buffers of another size, e.g. ones grown to fit an oversized message, are not pooled
+        if (buffer.capacity() != bufferSize || buffer.isDirect() != direct || !ring.offer(buffer)) {
+            drops.increment();
+        }
+    }
+
+    /**
+     * Puts a pooled buffer back in the ring while its slot stays in use, e.g. when it has been swapped
+     * for a larger buffer that the caller will release instead
+     */
+    void recycle(ByteBuffer buffer) {
+        if (!ring.offer(buffer)) drops.increment();
+    }
+
+    // =====================================
+    // Getters
+    // =====================================
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * @return the number of acquires served from the ring
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of acquires that had to allocate a new buffer
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of released buffers that were not kept
+     */
+    public long getDrops() {
+        return drops.sum();
+    }
+
+    /**
+     * @return the number of buffers acquired and not yet released
+     */
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    /**
+     * @return the largest number of buffers that have been in use at the same time
+     */
+    public int getHighWaterMark() {
+        return highWaterMark.get();
+    }
+
+    @Override
+    public String toString() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        double hitRate = total == 0 ? 0 : 100.0 * hitCount / total;
+        return String.format("BufferPool[size=%d, direct=%b, idle=%d, hits=%d, misses=%d (%.1f%% hit rate), drops=%d, inUse=%d, highWaterMark=%d]",
+                bufferSize, direct, ring.size(), hitCount, getMisses(), hitRate, getDrops(), getInUse(), getHighWaterMark());
+    }
+}
@@ -0,0 +1,289 @@
+package Marshaller;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Field layout of a class, computed once and shared by the Marshaller and Unmarshaller
+ * Holds the accessible fields in declaration order, a codec for each field's type,
+ * the pre-encoded class and field name headers, and the no-arg constructor
+ */
+public class ClassSchema {
+    private static final Map<Class<?>, ClassSchema> schemasByClass = new ConcurrentHashMap<>();
+    private static final Map<String, ClassSchema> schemasByName = new ConcurrentHashMap<>();
+
+    private final Class<?> schemaClass;
+    private final byte[] encodedClassName;
+    private final FieldSchema[] fields;
+    private final FieldSchema[] fieldsById;
+    private final Map<String, FieldSchema> fieldsByName;
+    private final Constructor<?> constructor;
+    private final LongAdder hitCount;
+    private volatile GeneratedCodec generatedCodec;
+
+    private ClassSchema(Class<?> schemaClass) {
+        this.schemaClass = schemaClass;
+        this.encodedClassName = encodeName(schemaClass.getName());
+        this.hitCount = new LongAdder();
+
+        // Static and compiler-generated fields are not part of an object's state
+        // Inherited fields come first, up to but excluding Marshallable, whose id is written separately
+        List<FieldSchema> instanceFields = new ArrayList<>();
+        for (Class<?> declaringClass : getClassHierarchy(schemaClass)) {
+            for (Field field : declaringClass.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) continue;
+                instanceFields.add(new FieldSchema(field, instanceFields.size()));
+            }
+        }
+        this.fields = instanceFields.toArray(new FieldSchema[0]);
+        this.fieldsByName = new HashMap<>();
+        for (FieldSchema field : fields) {
+            fieldsByName.put(field.getName(), field);
+        }
+
+        // Field ids are declared with @FieldId, so they do not change when fields are added, removed or renamed
+        int maxFieldId = -1;
+        for (FieldSchema field : fields) {
+            maxFieldId = Math.max(maxFieldId, field.getFieldId());
+        }
+        this.fieldsById = new FieldSchema[maxFieldId + 1];
+        for (FieldSchema field : fields) {
+            if (field.getFieldId() < 0) continue;
+            if (fieldsById[field.getFieldId()] != null) {
+                throw new IllegalArgumentException(schemaClass.getName() + " has two fields with id " + field.getFieldId()
+                        + ": " + fieldsById[field.getFieldId()].getName() + " and " + field.getName());
+            }
+            fieldsById[field.getFieldId()] = field;
+        }
+
+        Constructor<?> noArgConstructor;
+        try {
+            noArgConstructor = schemaClass.getDeclaredConstructor();
+            noArgConstructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            noArgConstructor = null; // Can still be marshalled, but unmarshalling will fail
+        }
+        this.constructor = noArgConstructor;
+    }
+
+    /**
+     * Gets the schema of a class, building it on first use
+     * @param c: the class to describe
+     * @return the cached schema of c
+     */
+    public static ClassSchema forClass(Class<?> c) {
+        ClassSchema schema = schemasByClass.get(c);
+        if (schema == null) {
+            // Built outside the map so that first uses from other threads are never blocked on it
+            ClassSchema newSchema = new ClassSchema(c);
+            schema = schemasByClass.putIfAbsent(c, newSchema);
+            if (schema == null) return newSchema;
+        }
+        schema.hitCount.increment();
+        return schema;
+    }
+
+    /**
+     * Gets the schema of a Marshallable class from the class name carried on the wire
+     * Class.forName is only called the first time a name is seen
+     * @param className: the fully qualified class name
+     * @return the cached schema of the named class
+     * @throws ClassNotFoundException if the class does not exist or is not Marshallable
+     */
+    public static ClassSchema forName(String className) throws ClassNotFoundException {
+        ClassSchema schema = schemasByName.get(className);
+        if (schema != null) {
+            schema.hitCount.increment();
+            return schema;
+        }
+        Class<?> c = Class.forName(className);
+        if (!Marshallable.class.isAssignableFrom(c)) {
+            throw new ClassNotFoundException(className + " is not Marshallable");
+        }
+        schema = forClass(c);
+        schemasByName.put(className, schema);
+        return schema;
+    }
+
+    /**
+     * Builds the schemas and generated codecs of the given classes ahead of their first message
+     * @param classes: the classes that are about to be marshalled or unmarshalled
+     */
+    public static void prepare(Class<?>... classes) {
+        for (Class<?> c : classes) {
+            forClass(c).getGeneratedCodec();
+        }
+    }
+
+    /**
+     * @return the number of times each cached schema was reused instead of being rebuilt, by class name
+     */
+    public static Map<String, Long> getHitCounts() {
+        Map<String, Long> hitCounts = new TreeMap<>();
+        for (ClassSchema schema : schemasByClass.values()) {
+            hitCounts.put(schema.schemaClass.getName(), schema.getHitCount());
+        }
+        return Collections.unmodifiableMap(hitCounts);
+    }
+
+    // =====================================
+    // Getters
+    // =====================================
+    public Class<?> getSchemaClass() {
+        return schemaClass;
+    }
+
+    /**
+     * @return the number of times this schema was reused instead of being rebuilt
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    byte[] getEncodedClassName() {
+        return encodedClassName;
+    }
+
+    FieldSchema[] getFields() {
+        return fields;
+    }
+
+    FieldSchema getField(String fieldName) {
+        return fieldsByName.get(fieldName);
+    }
+
+    /**
+     * @param fieldId: a field id read from a compact message
+     * @return the field with that id
+     * @throws IllegalArgumentException if the class has no field with that id
+     */
+    FieldSchema getFieldById(int fieldId) {
+        FieldSchema field = fieldId < fieldsById.length ? fieldsById[fieldId] : null;
+        if (field == null) throw new IllegalArgumentException(schemaClass.getName() + " has no field with id " + fieldId);
+        return field;
+    }
+
+    /**
+     * Creates an empty instance to unmarshall into
+     * @throws ReflectiveOperationException if the class has no usable no-arg constructor
+     */
+    Object newInstance() throws ReflectiveOperationException {
+        if (constructor == null) throw new NoSuchMethodException(schemaClass.getName() + ".<init>()");
+        return constructor.newInstance();
+    }
+
+    MethodHandle getConstructorHandle(MethodHandles.Lookup lookup) throws ReflectiveOperationException {
+        if (constructor == null) throw new NoSuchMethodException(schemaClass.getName() + ".<init>()");
+        return lookup.unreflectConstructor(constructor);
+    }
+
+    /**
+     * @return the codec generated for this class, generating it on first use
+     */
+    GeneratedCodec getGeneratedCodec() {
+        GeneratedCodec codec = generatedCodec;
+        if (codec == null) {
+            codec = GeneratedCodec.generate(this);
+            generatedCodec = codec;
+        }
+        return codec;
+    }
+
+    /**
+     * Encodes a name as it appears on the wire: [Length of String, bytes of String]
+     */
+    static byte[] encodeName(String name) {
+        MarshallBuffer seqBytes = new MarshallBuffer(Integer.BYTES + name.length());
+        Marshaller.marshallString(name, seqBytes);
+        return seqBytes.toByteArray();
+    }
+
+    /**
+     * Lists a class and its superclasses, most general first, stopping before Marshallable or Object
+     * e.g. [ClientRequest, CreateBookingRequest] for a CreateBookingRequest
+     */
+    private static List<Class<?>> getClassHierarchy(Class<?> c) {
+        List<Class<?>> hierarchy = new ArrayList<>();
+        for (Class<?> current = c; current != null && current != Marshallable.class && current != Object.class;
+             current = current.getSuperclass()) {
+            hierarchy.add(current);
+        }
+        Collections.reverse(hierarchy);
+        return hierarchy;
+    }
+
+    /**
+     * A single declared field: its accessor, codec and pre-encoded name
+     */
+    static class FieldSchema {
+        private final Field field;
+        private final int index;
+        private final int fieldId;
+        private final String name;
+        private final byte[] encodedName;
+        private final TypeCodec codec;
+
+        FieldSchema(Field field, int index) {
+            field.setAccessible(true);
+            this.field = field;
+            this.index = index;
+            this.name = field.getName();
+            FieldId annotation = field.getAnnotation(FieldId.class);
+            this.fieldId = annotation == null ? -1 : annotation.value();
+            if (annotation != null && (fieldId < 0 || fieldId > 0xFF)) {
+                throw new IllegalArgumentException("Field id of " + name + " out of range: " + fieldId);
+            }
+            this.encodedName = encodeName(name);
+            this.codec = TypeCodec.forType(field.getGenericType());
+        }
+
+        Field getField() {
+            return field;
+        }
+
+        /**
+         * @return the position of this field in its class's schema
+         */
+        int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return the id that stands in for the field name in the compact wire formats, or -1 if it has no @FieldId
+         */
+        int getFieldId() {
+            return fieldId;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        byte[] getEncodedName() {
+            return encodedName;
+        }
+
+        TypeCodec getCodec() {
+            return codec;
+        }
+
+        Object get(Object obj) throws IllegalAccessException {
+            return field.get(obj);
+        }
+
+        void set(Object obj, Object value) throws IllegalAccessException {
+            field.set(obj, value);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package Marshaller;
+
+/**
+ * Selects how object fields are accessed while marshalling and unmarshalling
+ * Both modes produce the same bytes
+ */
+public enum CodecMode {
+    /**
+     * java.lang.reflect.Field get/set on every field
+     */
+    REFLECTIVE,
+    /**
+     * Per-class codecs generated on first use from MethodHandles and LambdaMetafactory
+     */
+    GENERATED;
+
+    /**
+     * Reads the mode from the "marshaller.codec" system property, defaulting to GENERATED
+     */
+    static CodecMode fromSystemProperty() {
+        String mode = System.getProperty("marshaller.codec", GENERATED.name());
+        return valueOf(mode.toUpperCase());
+    }
+}
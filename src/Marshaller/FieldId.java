@@ -0,0 +1,18 @@
+package Marshaller;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The id that stands in for a field's name in the compact wire formats
+ * Ids are part of the format, so a field keeps its id when fields are added, removed or renamed, and a removed
+ * field's id is not reused. Ids must be unique within a class and its superclasses, between 0 and 255
+ * Every field of a class marshalled in a compact format needs one. The LEGACY format identifies fields by name
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface FieldId {
+    int value();
+}
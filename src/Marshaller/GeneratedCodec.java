@@ -0,0 +1,311 @@
+package Marshaller;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.function.Supplier;
+
+/**
+ * Serializer and deserializer specialised for one class, generated from its ClassSchema on first use
+ * Field access goes through MethodHandles adapted to the exact field type, so primitive fields are
+ * read and written without boxing, and the no-arg constructor is bound to a Supplier with LambdaMetafactory
+ * Produces exactly the same bytes as the reflective path in Marshaller and Unmarshaller
+ */
+class GeneratedCodec {
+    private final ClassSchema schema;
+    private final FieldCodec[] fieldCodecs;
+    private final Supplier<Object> constructor;
+
+    private GeneratedCodec(ClassSchema schema, FieldCodec[] fieldCodecs, Supplier<Object> constructor) {
+        this.schema = schema;
+        this.fieldCodecs = fieldCodecs;
+        this.constructor = constructor;
+    }
+
+    /**
+     * Generates the codec for a schema
+     * @param schema: the cached field layout to generate from
+     * @return a codec for instances of the schema's class
+     */
+    static GeneratedCodec generate(ClassSchema schema) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        ClassSchema.FieldSchema[] fields = schema.getFields();
+        FieldCodec[] fieldCodecs = new FieldCodec[fields.length];
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                fieldCodecs[i] = generateFieldCodec(lookup, fields[i]);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to generate codec for " + schema.getSchemaClass().getName(), e);
+        }
+        return new GeneratedCodec(schema, fieldCodecs, generateConstructor(lookup, schema));
+    }
+
+    // =====================================
+    // Encoding and decoding
+    // =====================================
+    void write(Object obj, MarshallBuffer seqBytes) throws IllegalAccessException {
+        try {
+            for (FieldCodec fieldCodec : fieldCodecs) {
+                fieldCodec.write(obj, seqBytes);
+            }
+        } catch (IllegalAccessException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    Object read(UnmarshallBuffer seqBytes) {
+        Object obj = constructor.get();
+        if (obj == null) return null;
+        try {
+            for (int i = 0; i < fieldCodecs.length; i++) {
+                ClassSchema.FieldSchema field = Unmarshaller.unmarshallFieldHeader(seqBytes, schema, i);
+                fieldCodecs[field.getIndex()].read(obj, seqBytes);
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+        return obj;
+    }
+
+    // =====================================
+    // Private methods
+    // =====================================
+    private static FieldCodec generateFieldCodec(MethodHandles.Lookup lookup, ClassSchema.FieldSchema field)
+            throws IllegalAccessException {
+        MethodHandle getter = lookup.unreflectGetter(field.getField());
+        MethodHandle setter = lookup.unreflectSetter(field.getField());
+        Class<?> type = field.getField().getType();
+
+        if (type == int.class) return new IntFieldCodec(field, getter, setter);
+        if (type == boolean.class) return new BooleanFieldCodec(field, getter, setter);
+        if (type == short.class) return new ShortFieldCodec(field, getter, setter);
+        if (type == float.class) return new FloatFieldCodec(field, getter, setter);
+        if (type == double.class) return new DoubleFieldCodec(field, getter, setter);
+        if (type == long.class) return new LongFieldCodec(field, getter, setter);
+        return new ObjectFieldCodec(field, getter, setter, field.getCodec());
+    }
+
+    /**
+     * Binds the no-arg constructor to a Supplier
+     * Classes that the generated lambda cannot reach (e.g. non-public ones) fall back to a plain MethodHandle
+     */
+    @SuppressWarnings("unchecked")
+    private static Supplier<Object> generateConstructor(MethodHandles.Lookup lookup, ClassSchema schema) {
+        MethodHandle constructorHandle;
+        try {
+            constructorHandle = schema.getConstructorHandle(lookup);
+        } catch (ReflectiveOperationException e) {
+            // Same as the reflective path: the class can be marshalled but unmarshalls to null
+            return () -> {
+                System.out.println(e);
+                return null;
+            };
+        }
+
+        try {
+            CallSite site = LambdaMetafactory.metafactory(
+                    lookup,
+                    "get",
+                    MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class),
+                    constructorHandle,
+                    MethodType.methodType(schema.getSchemaClass()));
+            Supplier<Object> supplier = (Supplier<Object>) site.getTarget().invoke();
+            supplier.get(); // Fails here rather than per message if the lambda cannot access the constructor
+            return supplier;
+        } catch (Throwable t) {
+            MethodHandle generic = constructorHandle.asType(MethodType.methodType(Object.class));
+            return () -> {
+                try {
+                    return generic.invokeExact();
+                } catch (Throwable e) {
+                    System.out.println(e);
+                    return null;
+                }
+            };
+        }
+    }
+
+    // =====================================
+    // Field codecs
+    // =====================================
+
+    /**
+     * Writes and reads one field: [field name or id][null flag][value]
+     */
+    private static abstract class FieldCodec {
+        final ClassSchema.FieldSchema field;
+
+        FieldCodec(ClassSchema.FieldSchema field) {
+            this.field = field;
+        }
+
+        abstract void write(Object obj, MarshallBuffer seqBytes) throws Throwable;
+
+        abstract void read(Object obj, UnmarshallBuffer seqBytes) throws Throwable;
+    }
+
+    private static class IntFieldCodec extends FieldCodec {
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        IntFieldCodec(ClassSchema.FieldSchema field, MethodHandle getter, MethodHandle setter) {
+            super(field);
+            this.getter = getter.asType(MethodType.methodType(int.class, Object.class));
+            this.setter = setter.asType(MethodType.methodType(void.class, Object.class, int.class));
+        }
+
+        void write(Object obj, MarshallBuffer seqBytes) throws Throwable {
+            Marshaller.marshallFieldHeader(field, seqBytes);
+            Marshaller.marshallBoolean(true, seqBytes);
+            Marshaller.marshallInteger((int) getter.invokeExact(obj), seqBytes);
+        }
+
+        void read(Object obj, UnmarshallBuffer seqBytes) throws Throwable {
+            if (!Unmarshaller.unmarshallBoolean(seqBytes)) return;
+            setter.invokeExact(obj, Unmarshaller.unmarshallInteger(seqBytes));
+        }
+    }
+
+    private static class BooleanFieldCodec extends FieldCodec {
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        BooleanFieldCodec(ClassSchema.FieldSchema field, MethodHandle getter, MethodHandle setter) {
+            super(field);
+            this.getter = getter.asType(MethodType.methodType(boolean.class, Object.class));
+            this.setter = setter.asType(MethodType.methodType(void.class, Object.class, boolean.class));
+        }
+
+        void write(Object obj, MarshallBuffer seqBytes) throws Throwable {
+            Marshaller.marshallFieldHeader(field, seqBytes);
+            Marshaller.marshallBoolean(true, seqBytes);
+            Marshaller.marshallBoolean((boolean) getter.invokeExact(obj), seqBytes);
+        }
+
+        void read(Object obj, UnmarshallBuffer seqBytes) throws Throwable {
+            if (!Unmarshaller.unmarshallBoolean(seqBytes)) return;
+            setter.invokeExact(obj, Unmarshaller.unmarshallBoolean(seqBytes));
+        }
+    }
+
+    private static class ShortFieldCodec extends FieldCodec {
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        ShortFieldCodec(ClassSchema.FieldSchema field, MethodHandle getter, MethodHandle setter) {
+            super(field);
+            this.getter = getter.asType(MethodType.methodType(short.class, Object.class));
+            this.setter = setter.asType(MethodType.methodType(void.class, Object.class, short.class));
+        }
+
+        void write(Object obj, MarshallBuffer seqBytes) throws Throwable {
+            Marshaller.marshallFieldHeader(field, seqBytes);
+            Marshaller.marshallBoolean(true, seqBytes);
+            Marshaller.marshallShort((short) getter.invokeExact(obj), seqBytes);
+        }
+
+        void read(Object obj, UnmarshallBuffer seqBytes) throws Throwable {
+            if (!Unmarshaller.unmarshallBoolean(seqBytes)) return;
+            setter.invokeExact(obj, Unmarshaller.unmarshallShort(seqBytes));
+        }
+    }
+
+    private static class FloatFieldCodec extends FieldCodec {
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        FloatFieldCodec(ClassSchema.FieldSchema field, MethodHandle getter, MethodHandle setter) {
+            super(field);
+            this.getter = getter.asType(MethodType.methodType(float.class, Object.class));
+            this.setter = setter.asType(MethodType.methodType(void.class, Object.class, float.class));
+        }
+
+        void write(Object obj, MarshallBuffer seqBytes) throws Throwable {
+            Marshaller.marshallFieldHeader(field, seqBytes);
+            Marshaller.marshallBoolean(true, seqBytes);
+            Marshaller.marshallFloat((float) getter.invokeExact(obj), seqBytes);
+        }
+
+        void read(Object obj, UnmarshallBuffer seqBytes) throws Throwable {
+            if (!Unmarshaller.unmarshallBoolean(seqBytes)) return;
+            setter.invokeExact(obj, Unmarshaller.unmarshallFloat(seqBytes));
+        }
+    }
+
+    private static class DoubleFieldCodec extends FieldCodec {
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        DoubleFieldCodec(ClassSchema.FieldSchema field, MethodHandle getter, MethodHandle setter) {
+            super(field);
+            this.getter = getter.asType(MethodType.methodType(double.class, Object.class));
+            this.setter = setter.asType(MethodType.methodType(void.class, Object.class, double.class));
+        }
+
+        void write(Object obj, MarshallBuffer seqBytes) throws Throwable {
+            Marshaller.marshallFieldHeader(field, seqBytes);
+            Marshaller.marshallBoolean(true, seqBytes);
+            Marshaller.marshallDouble((double) getter.invokeExact(obj), seqBytes);
+        }
+
+        void read(Object obj, UnmarshallBuffer seqBytes) throws Throwable {
+            if (!Unmarshaller.unmarshallBoolean(seqBytes)) return;
+            setter.invokeExact(obj, Unmarshaller.unmarshallDouble(seqBytes));
+        }
+    }
+
+    private static class LongFieldCodec extends FieldCodec {
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        LongFieldCodec(ClassSchema.FieldSchema field, MethodHandle getter, MethodHandle setter) {
+            super(field);
+            this.getter = getter.asType(MethodType.methodType(long.class, Object.class));
+            this.setter = setter.asType(MethodType.methodType(void.class, Object.class, long.class));
+        }
+
+        void write(Object obj, MarshallBuffer seqBytes) throws Throwable {
+            Marshaller.marshallFieldHeader(field, seqBytes);
+            Marshaller.marshallBoolean(true, seqBytes);
+            Marshaller.marshallLong((long) getter.invokeExact(obj), seqBytes);
+        }
+
+        void read(Object obj, UnmarshallBuffer seqBytes) throws Throwable {
+            if (!Unmarshaller.unmarshallBoolean(seqBytes)) return;
+            setter.invokeExact(obj, Unmarshaller.unmarshallLong(seqBytes));
+        }
+    }
+
+    /**
+     * Boxed, String, enum, array, List and nested object fields, encoded with the field's TypeCodec
+     */
+    private static class ObjectFieldCodec extends FieldCodec {
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private final TypeCodec codec;
+
+        ObjectFieldCodec(ClassSchema.FieldSchema field, MethodHandle getter, MethodHandle setter, TypeCodec codec) {
+            super(field);
+            this.getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+            this.setter = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            this.codec = codec;
+        }
+
+        void write(Object obj, MarshallBuffer seqBytes) throws Throwable {
+            Marshaller.marshallFieldHeader(field, seqBytes);
+            Marshaller.marshallValue(codec, (Object) getter.invokeExact(obj), seqBytes);
+        }
+
+        void read(Object obj, UnmarshallBuffer seqBytes) throws Throwable {
+            setter.invokeExact(obj, Unmarshaller.unmarshallValue(codec, seqBytes));
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package Marshaller;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Output buffer that the Marshaller encodes into
+ * Either owns a heap ByteBuffer that grows on demand, or wraps a caller-supplied ByteBuffer of fixed size
+ * All multi-byte values are written big-endian, matching the wire format
+ */
+public class MarshallBuffer {
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private ByteBuffer buffer;
+    private final boolean isGrowable;
+    private final int startPosition;
+    private WireFormat format = WireFormat.LEGACY;
+    private boolean usesVarInts = false;
+    private int nestingDepth = 0;
+
+    public MarshallBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MarshallBuffer(int initialCapacity) {
+        this.buffer = ByteBuffer.allocate(Math.max(initialCapacity, 16));
+        this.isGrowable = true;
+        this.startPosition = 0;
+    }
+
+    /**
+     * Wraps a caller-supplied buffer. Bytes are written from its current position onwards
+     * @param buffer: the buffer to write into. It will not be grown
+     */
+    public MarshallBuffer(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+        this.isGrowable = false;
+        this.startPosition = buffer.position();
+    }
+
+    // =====================================
+    // Getters
+    // =====================================
+
+    /**
+     * @return the number of bytes written so far
+     */
+    public int size() {
+        return buffer.position() - startPosition;
+    }
+
+    /**
+     * @return the wire format of the message being written
+     */
+    public WireFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @return the underlying buffer, positioned after the last written byte
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return a copy of the bytes written so far
+     */
+    public byte[] toByteArray() {
+        if (buffer.hasArray()) {
+            int from = buffer.arrayOffset() + startPosition;
+            return Arrays.copyOfRange(buffer.array(), from, from + size());
+        }
+        byte[] bytesArr = new byte[size()];
+        ByteBuffer view = buffer.duplicate();
+        view.flip();
+        view.position(startPosition);
+        view.get(bytesArr);
+        return bytesArr;
+    }
+
+    /**
+     * Discards everything written so the buffer can be reused
+     */
+    public void clear() {
+        buffer.position(startPosition);
+    }
+
+    // =====================================
+    // Writers
+    // =====================================
+    void setFormat(WireFormat format) {
+        this.format = format;
+        this.usesVarInts = format.usesVarInts();
+    }
+
+    boolean usesVarInts() {
+        return usesVarInts;
+    }
+
+    void putByte(byte b) {
+        ensureRemaining(1);
+        buffer.put(b);
+    }
+
+    void putBytes(byte[] arr) {
+        ensureRemaining(arr.length);
+        buffer.put(arr);
+    }
+
+    void putShort(short shrt) {
+        ensureRemaining(Short.BYTES);
+        buffer.putShort(shrt);
+    }
+
+    void putInt(int integer) {
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(integer);
+    }
+
+    /**
+     * Writes an unsigned LEB128 varint: 7 bits per byte, least significant group first,
+     * with the high bit set on every byte except the last
+     */
+    void putVarInt(int value) {
+        ensureRemaining(varIntSize(value));
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    void putLong(long lng) {
+        ensureRemaining(Long.BYTES);
+        buffer.putLong(lng);
+    }
+
+    /**
+     * Writes an unsigned LEB128 varint of up to 10 bytes, see putVarInt
+     */
+    void putVarLong(long value) {
+        ensureRemaining(varLongSize(value));
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    void putFloat(float flt) {
+        ensureRemaining(Float.BYTES);
+        buffer.putFloat(flt);
+    }
+
+    void putDouble(double dbl) {
+        ensureRemaining(Double.BYTES);
+        buffer.putDouble(dbl);
+    }
+
+    // =====================================
+    // Bulk writers for primitive arrays
+    // Copied through a view of the buffer rather than value by value
+    // =====================================
+    void putShorts(short[] arr) {
+        ensureRemaining(arr.length * Short.BYTES);
+        buffer.asShortBuffer().put(arr);
+        buffer.position(buffer.position() + arr.length * Short.BYTES);
+    }
+
+    void putInts(int[] arr) {
+        ensureRemaining(arr.length * Integer.BYTES);
+        buffer.asIntBuffer().put(arr);
+        buffer.position(buffer.position() + arr.length * Integer.BYTES);
+    }
+
+    void putLongs(long[] arr) {
+        ensureRemaining(arr.length * Long.BYTES);
+        buffer.asLongBuffer().put(arr);
+        buffer.position(buffer.position() + arr.length * Long.BYTES);
+    }
+
+    void putFloats(float[] arr) {
+        ensureRemaining(arr.length * Float.BYTES);
+        buffer.asFloatBuffer().put(arr);
+        buffer.position(buffer.position() + arr.length * Float.BYTES);
+    }
+
+    void putDoubles(double[] arr) {
+        ensureRemaining(arr.length * Double.BYTES);
+        buffer.asDoubleBuffer().put(arr);
+        buffer.position(buffer.position() + arr.length * Double.BYTES);
+    }
+
+    /**
+     * Called before writing a nested object, so that a reference cycle fails instead of overflowing the stack
+     * @throws IllegalArgumentException if objects are nested deeper than TypeCodec.MAX_NESTING_DEPTH
+     */
+    void enterNested() {
+        if (++nestingDepth > TypeCodec.MAX_NESTING_DEPTH) {
+            throw new IllegalArgumentException("Objects nested deeper than " + TypeCodec.MAX_NESTING_DEPTH + ", is there a cycle?");
+        }
+    }
+
+    void exitNested() {
+        nestingDepth--;
+    }
+
+    // =====================================
+    // Private methods
+    // =====================================
+
+    /**
+     * @return the number of bytes putVarInt writes for the value, 1 to 5
+     */
+    private static int varIntSize(int value) {
+        return (Integer.SIZE - Integer.numberOfLeadingZeros(value | 1) + 6) / 7;
+    }
+
+    /**
+     * @return the number of bytes putVarLong writes for the value, 1 to 10
+     */
+    private static int varLongSize(long value) {
+        return (Long.SIZE - Long.numberOfLeadingZeros(value | 1) + 6) / 7;
+    }
+
+    private void ensureRemaining(int required) {
+        if (buffer.remaining() >= required) return;
+        if (!isGrowable) throw new BufferOverflowException();
+
+        int newCapacity = Math.max(buffer.capacity() * 2, buffer.position() + required);
+        ByteBuffer grown = ByteBuffer.allocate(newCapacity);
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+    }
+}
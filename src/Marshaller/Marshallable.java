@@ -1,5 +1,7 @@
 package Marshaller;
 
+import java.net.DatagramPacket;
+import java.nio.ByteBuffer;
 
 public class Marshallable {
     int id;
@@ -8,9 +10,61 @@ public class Marshallable {
         return Marshaller.marshall(this);
     }
 
+    public byte[] marshall(WireFormat format) throws IllegalAccessException {
+        return Marshaller.marshall(this, format);
+    }
+
+    /**
+     * Marshalls this object into buffer without an intermediate byte[]
+     * @param buffer: buffer to write into, starting at its current position
+     * @return the number of bytes written
+     */
+    public int marshall(ByteBuffer buffer) throws IllegalAccessException {
+        return Marshaller.marshall(this, buffer);
+    }
+
+    public int marshall(ByteBuffer buffer, WireFormat format) throws IllegalAccessException {
+        return Marshaller.marshall(this, buffer, format);
+    }
+
+    /**
+     * Marshalls this object into a buffer taken from pool
+     * @return the buffer flipped for reading. Give it back with pool.release() once sent
+     */
+    public ByteBuffer marshall(BufferPool pool, WireFormat format) throws IllegalAccessException {
+        return Marshaller.marshall(this, pool, format);
+    }
+
     public static <T extends Marshallable> T unmarshall(byte[] byteArr, Class<T> c) {
+        return unmarshall(byteArr, 0, byteArr.length, c);
+    }
+
+    /**
+     * Unmarshalls only the bytes between offset and offset + length, without copying them out of byteArr
+     */
+    public static <T extends Marshallable> T unmarshall(byte[] byteArr, int offset, int length, Class<T> c) {
+        try {
+            return Unmarshaller.unmarshall(byteArr, offset, length, c);
+        } catch (ClassNotFoundException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Unmarshalls the received payload of packet, ignoring any unused space left in its buffer
+     */
+    public static <T extends Marshallable> T unmarshall(DatagramPacket packet, Class<T> c) {
+        return unmarshall(packet.getData(), packet.getOffset(), packet.getLength(), c);
+    }
+
+    /**
+     * Unmarshalls the bytes between the buffer's position and limit, e.g. a datagram received from a DatagramChannel
+     * The buffer's position is advanced past the message
+     */
+    public static <T extends Marshallable> T unmarshall(ByteBuffer buffer, Class<T> c) {
         try {
-            return Unmarshaller.unmarshall(byteArr, c);
+            return Unmarshaller.unmarshall(buffer, c);
         } catch (ClassNotFoundException e) {
             e.printStackTrace();
             return null;
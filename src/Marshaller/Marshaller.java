@@ -1,13 +1,23 @@
 package Marshaller;
 
-import java.lang.reflect.Field;
-import java.util.*;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 
 public class Marshaller {
+    private static volatile CodecMode codecMode = CodecMode.fromSystemProperty();
+
+    public static CodecMode getCodecMode() {
+        return codecMode;
+    }
+
+    /**
+     * Switches between the reflective and the generated codecs for both marshalling and unmarshalling
+     * @param mode: the codec mode to use from now on
+     */
+    public static void setCodecMode(CodecMode mode) {
+        codecMode = mode;
+    }
 
     /**
      * Starting point to marshall
@@ -17,159 +27,229 @@ public class Marshaller {
      * @throws IllegalAccessException
      */
     public static byte[] marshall(Marshallable obj) throws IllegalAccessException {
-        List<Byte> seqBytes = new ArrayList<>();
+        return marshall(obj, WireFormat.LEGACY);
+    }
 
-        String className = obj.getClass().getName();
+    /**
+     * Marshalls obj in the given wire format
+     * @param obj: obj class must extend Marshallable class
+     * @param format: LEGACY, or a compact format if obj's class is registered in the SchemaRegistry
+     * @return
+     * @throws IllegalAccessException
+     */
+    public static byte[] marshall(Marshallable obj, WireFormat format) throws IllegalAccessException {
+        MarshallBuffer seqBytes = new MarshallBuffer();
+        marshall(obj, seqBytes, format);
+        //DatagramPacket buffer is in byte[]
+        return seqBytes.toByteArray();
+    }
 
-        marshallString(className, seqBytes);
-        marshallInteger(obj.getId(), seqBytes);
+    /**
+     * Marshalls obj into a caller-supplied buffer, starting at its current position
+     * @param obj: obj class must extend Marshallable class
+     * @param buffer: buffer to write into, e.g. the backing buffer of a DatagramPacket
+     * @return the number of bytes written
+     * @throws IllegalAccessException
+     * @throws java.nio.BufferOverflowException if obj does not fit in the remaining space of buffer
+     */
+    public static int marshall(Marshallable obj, ByteBuffer buffer) throws IllegalAccessException {
+        return marshall(obj, buffer, WireFormat.LEGACY);
+    }
 
-        marshallObject(obj, seqBytes);
+    /**
+     * Marshalls obj into a caller-supplied buffer, starting at its current position
+     * @param obj: obj class must extend Marshallable class
+     * @param buffer: buffer to write into, e.g. the backing buffer of a DatagramPacket
+     * @param format: the wire format to write
+     * @return the number of bytes written
+     * @throws IllegalAccessException
+     * @throws java.nio.BufferOverflowException if obj does not fit in the remaining space of buffer
+     */
+    public static int marshall(Marshallable obj, ByteBuffer buffer, WireFormat format) throws IllegalAccessException {
+        MarshallBuffer seqBytes = new MarshallBuffer(buffer);
+        marshall(obj, seqBytes, format);
+        return seqBytes.size();
+    }
 
-        //convert from list of bytes to arr of bytes since DatagramPacket buffer is in byte[]
-        int size = seqBytes.size();
-        byte[] bytesArr = new byte[size];
+    /**
+     * Marshalls obj into a buffer taken from pool, so that sending a message allocates no byte[]
+     * A message too large for a pooled buffer is marshalled into a new buffer instead, which the pool drops on release
+     * @param obj: obj class must extend Marshallable class
+     * @param pool: pool to take the buffer from
+     * @param format: the wire format to write
+     * @return the buffer flipped for reading, holding the message from 0 to its limit. Give it back with pool.release()
+     * @throws IllegalAccessException
+     */
+    public static ByteBuffer marshall(Marshallable obj, BufferPool pool, WireFormat format) throws IllegalAccessException {
+        ByteBuffer buffer = pool.acquire();
+        try {
+            marshall(obj, buffer, format);
+        } catch (BufferOverflowException e) {
+            pool.recycle(buffer);
+            buffer = ByteBuffer.wrap(marshall(obj, format));
+            buffer.position(buffer.limit());
+        } catch (IllegalAccessException | RuntimeException e) {
+            pool.release(buffer);
+            throw e;
+        }
+        buffer.flip();
+        return buffer;
+    }
 
-        for (int i = 0; i < size; i++){
-            bytesArr[i] = seqBytes.remove(0);
+    /**
+     * Marshalls obj into seqBytes
+     * @param obj: obj class must extend Marshallable class
+     * @param seqBytes: buffer to append the encoded bytes to
+     * @param format: the wire format to write
+     * @throws IllegalAccessException
+     * @throws IllegalArgumentException if the format is compact and obj's class has no registered type id
+     */
+    public static void marshall(Marshallable obj, MarshallBuffer seqBytes, WireFormat format) throws IllegalAccessException {
+        ClassSchema schema = ClassSchema.forClass(obj.getClass());
+        seqBytes.setFormat(format);
+
+        if (format.isCompact()) {
+            seqBytes.putByte(WireFormat.COMPACT_MAGIC);
+            seqBytes.putByte(format.getCompactVersion());
+            int typeId = SchemaRegistry.getTypeId(schema.getSchemaClass());
+            if (format.usesVarInts()) {
+                seqBytes.putVarInt(typeId);
+            } else {
+                seqBytes.putShort((short) typeId);
+            }
+        } else {
+            seqBytes.putBytes(schema.getEncodedClassName());
         }
-        return bytesArr;
+        marshallInteger(obj.getId(), seqBytes);
+
+        marshallObject(obj, schema, seqBytes);
     }
 
     /**
      * Adds object's fields and corresponding values to seqBytes
      * @param obj
+     * @param schema: cached field layout of obj's class
      * @param seqBytes
      * @throws IllegalAccessException
      */
-     private static void marshallObject(Object obj, List<Byte> seqBytes) throws IllegalAccessException {
-        Class objClass = obj.getClass();
-        Field[] fields = objClass.getDeclaredFields();
-        for (Field field : fields){
-            //field name
-            marshallString(field.getName(), seqBytes);
-            String fullTypeName = field.getGenericType().getTypeName();
-            String[] typeNameSplit = fullTypeName.split("[<>]");
-            field.setAccessible(true);
+    static void marshallObject(Object obj, ClassSchema schema, MarshallBuffer seqBytes) throws IllegalAccessException {
+        if (codecMode == CodecMode.GENERATED) {
+            schema.getGeneratedCodec().write(obj, seqBytes);
+            return;
+        }
+        for (ClassSchema.FieldSchema field : schema.getFields()){
+            //field name or id
+            marshallFieldHeader(field, seqBytes);
             //field value
-            Object value = field.get(obj);
-            marshallListIter(typeNameSplit, value, seqBytes);
+            marshallValue(field.getCodec(), field.get(obj), seqBytes);
         }
     }
 
     /**
-     * Marshalls object based on given type
-     * If object type is list, it will recurse until last dimension
-     * @param fullTypeName
+     * Identifies the field that follows: its name in the LEGACY format, its id in the compact formats
+     */
+    static void marshallFieldHeader(ClassSchema.FieldSchema field, MarshallBuffer seqBytes) {
+        if (seqBytes.getFormat().isCompact()) {
+            if (field.getFieldId() < 0) {
+                throw new IllegalArgumentException(field.getField().getDeclaringClass().getName() + "." + field.getName()
+                        + " has no @FieldId");
+            }
+            seqBytes.putByte((byte) field.getFieldId());
+        } else {
+            seqBytes.putBytes(field.getEncodedName());
+        }
+    }
+
+    /**
+     * Marshalls a null flag, followed by the object if it is not null
+     * @param codec: codec of the object's declared type
      * @param obj
      * @param seqBytes
      * @throws IllegalAccessException
      */
-    private static void marshallListIter(String[] fullTypeName, Object obj, List<Byte> seqBytes) throws IllegalAccessException {
+    static void marshallValue(TypeCodec codec, Object obj, MarshallBuffer seqBytes) throws IllegalAccessException {
         if(obj == null){
             marshallBoolean(false, seqBytes);
             return;
         }
         marshallBoolean(true, seqBytes);
-        String typeName = fullTypeName[0];
-        switch (typeName) {
-            case "java.util.List":
-                int dimension = fullTypeName.length;
-                marshallList(obj, Arrays.copyOfRange(fullTypeName,1, dimension), seqBytes);
-                break;
-            case "java.lang.Integer":
-            case "int":
-                marshallInteger((Integer) obj, seqBytes);
-                break;
-            case "java.lang.String":
-                marshallString((String) obj, seqBytes);
-                break;
-            case "java.lang.Boolean":
-            case "boolean":
-                marshallBoolean((Boolean) obj, seqBytes);
-                break;
-            case "java.lang.Short":
-            case "short":
-                marshallShort((Short) obj, seqBytes);
-                break;
-            case "java.lang.Float":
-            case "float":
-                marshallFloat((Float) obj, seqBytes);
-                break;
-            case "java.lang.Double":
-            case "double":
-                marshallDouble((Double) obj, seqBytes);
-                break;
-            default:
-                marshallObject(obj, seqBytes);
-                break;
-        }
+        codec.write(obj, seqBytes);
     }
 
     // =====================================
-    // Unmarshalling primitive/common object types
+    // Marshalling primitive/common object types
     // =====================================
 
     /**
-     * Follows example in lecture
-     * [Length of List, object within list,...]
-     * @param obj
-     * @param fullTypeName
-     * @param seqBytes
-     * @throws IllegalAccessException
+     * Zigzag varints map small negative numbers to small unsigned ones: 0, -1, 1, -2... become 0, 1, 2, 3...
      */
-    private static void marshallList(Object obj, String[] fullTypeName, List<Byte> seqBytes) throws IllegalAccessException {
-        List<?> list = (List<?>) obj;
-        seqBytes.addAll(intToByteList(list.size()));
-        for (Object o: list){
-            marshallListIter(fullTypeName, o,seqBytes);
+    static void marshallInteger(int integer, MarshallBuffer seqBytes){
+        if (seqBytes.usesVarInts()) {
+            seqBytes.putVarInt((integer << 1) ^ (integer >> 31));
+        } else {
+            seqBytes.putInt(integer);
         }
     }
 
-    private static void marshallInteger(Integer integer, List<Byte> seqBytes){
-        seqBytes.addAll(intToByteList(integer));
-    }
-
-    private static List<Byte> intToByteList(int integer) {
-        ByteBuffer bb = ByteBuffer.allocate(Integer.BYTES);
-        byte[] arr = bb.putInt(integer).array();
-        List<Byte> seqBytes = IntStream.range(0, arr.length).mapToObj(i -> arr[i]).collect(Collectors.toList());
-        return seqBytes;
+    /**
+     * Lengths are never negative, so varint lengths skip the zigzag step
+     */
+    static void marshallLength(int length, MarshallBuffer seqBytes){
+        if (seqBytes.usesVarInts()) {
+            seqBytes.putVarInt(length);
+        } else {
+            seqBytes.putInt(length);
+        }
     }
 
-    private static void marshallString(String string, List<Byte> seqBytes){
+    /**
+     * [Length of String, bytes of String]
+     * ASCII strings are written char by char so no intermediate byte[] is allocated
+     */
+    static void marshallString(String string, MarshallBuffer seqBytes){
+        int length = string.length();
         // add String length
-        seqBytes.addAll(intToByteList(string.length()));
+        marshallLength(length, seqBytes);
         // add String value
-        byte[] arr = string.getBytes();
-        List<Byte> result = new ArrayList<>();
-        for (int i=0; i < arr.length; i++){
-            result.add(arr[i]);
+        for (int i = 0; i < length; i++){
+            if (string.charAt(i) >= 0x80) {
+                seqBytes.putBytes(string.substring(i).getBytes());
+                return;
+            }
+            seqBytes.putByte((byte) string.charAt(i));
         }
-        seqBytes.addAll(result);
     }
 
-    private static void marshallBoolean(boolean bool, List<Byte> seqBytes){
+    static void marshallBoolean(boolean bool, MarshallBuffer seqBytes){
         byte b = (byte) (bool ? 1:0);
-        seqBytes.add(b);
+        seqBytes.putByte(b);
+    }
+
+    static void marshallShort(short shrt, MarshallBuffer seqBytes){
+        seqBytes.putShort(shrt);
+    }
+
+    /**
+     * Zigzag varint in the varint format, like marshallInteger
+     */
+    static void marshallLong(long lng, MarshallBuffer seqBytes){
+        if (seqBytes.usesVarInts()) {
+            seqBytes.putVarLong((lng << 1) ^ (lng >> 63));
+        } else {
+            seqBytes.putLong(lng);
+        }
     }
 
-    private static void marshallShort(short shrt, List<Byte> seqBytes){
-        ByteBuffer bb = ByteBuffer.allocate(Short.BYTES);
-        byte[] arr = bb.putShort(shrt).array();
-        seqBytes.addAll(IntStream.range(0, arr.length).mapToObj(i -> arr[i]).collect(Collectors.toList()));
+    static void marshallByte(byte b, MarshallBuffer seqBytes){
+        seqBytes.putByte(b);
     }
 
-    private static void marshallFloat(float flt, List<Byte> seqBytes){
-        ByteBuffer bb = ByteBuffer.allocate(Float.BYTES);
-        byte[] arr = bb.putFloat(flt).array();
-        seqBytes.addAll(IntStream.range(0, arr.length).mapToObj(i -> arr[i]).collect(Collectors.toList()));
+    static void marshallFloat(float flt, MarshallBuffer seqBytes){
+        seqBytes.putFloat(flt);
     }
 
-    private static void marshallDouble(double dbl, List<Byte> seqBytes){
-        ByteBuffer bb = ByteBuffer.allocate(Double.BYTES);
-        byte[] arr = bb.putDouble(dbl).array();
-        seqBytes.addAll(IntStream.range(0, arr.length).mapToObj(i -> arr[i]).collect(Collectors.toList()));
+    static void marshallDouble(double dbl, MarshallBuffer seqBytes){
+        seqBytes.putDouble(dbl);
     }
 
 }
@@ -0,0 +1,64 @@
+package Marshaller;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Type ids shared by the client and the server for the compact wire formats
+ * Classes are registered by name so that either side can resolve a type id before the class has been loaded
+ * Field ids are declared on the fields themselves, see FieldId
+ */
+public class SchemaRegistry {
+    private static final Map<Integer, String> classNamesByTypeId = new ConcurrentHashMap<>();
+    private static final Map<String, Integer> typeIdsByClassName = new ConcurrentHashMap<>();
+
+    static {
+        register(1, "Client.ClientRequest");
+        register(2, "Server.Application.ServerResponse");
+        register(3, "Client.AvailabilityRequest");
+        register(4, "Client.CreateBookingRequest");
+        register(5, "Client.UpdateBookingRequest");
+        register(6, "Client.ObserveFacilityRequest");
+    }
+
+    /**
+     * Registers a Marshallable class under a type id
+     * @param typeId: id carried on the wire in place of the class name, between 0 and 65535
+     * @param className: fully qualified name of the class
+     * @throws IllegalArgumentException if the type id is out of range or already taken by another class
+     */
+    public static void register(int typeId, String className) {
+        if (typeId < 0 || typeId > 0xFFFF) throw new IllegalArgumentException("Type id out of range: " + typeId);
+        String existing = classNamesByTypeId.putIfAbsent(typeId, className);
+        if (existing != null && !existing.equals(className)) {
+            throw new IllegalArgumentException("Type id " + typeId + " is already registered to " + existing);
+        }
+        typeIdsByClassName.put(className, typeId);
+    }
+
+    public static void register(int typeId, Class<? extends Marshallable> c) {
+        register(typeId, c.getName());
+    }
+
+    /**
+     * @param c: a Marshallable class
+     * @return the type id registered for the class
+     * @throws IllegalArgumentException if the class is not registered
+     */
+    static int getTypeId(Class<?> c) {
+        Integer typeId = typeIdsByClassName.get(c.getName());
+        if (typeId == null) throw new IllegalArgumentException(c.getName() + " has no registered type id");
+        return typeId;
+    }
+
+    /**
+     * @param typeId: a type id read from the wire
+     * @return the schema of the class registered under the type id
+     * @throws ClassNotFoundException if no class is registered under the type id
+     */
+    static ClassSchema getSchema(int typeId) throws ClassNotFoundException {
+        String className = classNamesByTypeId.get(typeId);
+        if (className == null) throw new ClassNotFoundException("No class registered for type id " + typeId);
+        return ClassSchema.forName(className);
+    }
+}
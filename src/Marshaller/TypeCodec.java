@@ -0,0 +1,359 @@
+package Marshaller;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes and decodes the non-null value of one declared field type
+ * Resolved once per field when its ClassSchema is built, so no type names are inspected per message
+ * The null flag in front of every value is written by the Marshaller, not by the codec
+ */
+abstract class TypeCodec {
+    /**
+     * Deepest chain of nested objects that will be written or read before giving up
+     */
+    static final int MAX_NESTING_DEPTH = 64;
+
+    abstract void write(Object value, MarshallBuffer seqBytes) throws IllegalAccessException;
+
+    abstract Object read(UnmarshallBuffer seqBytes);
+
+    /**
+     * Resolves the codec for a declared field type
+     * If the type is a list or an array, the element codec is resolved until the last dimension
+     * @param type: the generic type of the field or list element
+     * @return the codec for values of that type
+     */
+    static TypeCodec forType(Type type) {
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) type;
+            if (parameterizedType.getRawType() == List.class) {
+                return new ListCodec(forType(parameterizedType.getActualTypeArguments()[0]));
+            }
+            return new ObjectCodec((Class<?>) parameterizedType.getRawType());
+        }
+        if (type instanceof GenericArrayType) {
+            // e.g. List<Integer>[]
+            Type componentType = ((GenericArrayType) type).getGenericComponentType();
+            Class<?> rawComponentType = (Class<?>) ((ParameterizedType) componentType).getRawType();
+            return new ObjectArrayCodec(rawComponentType, forType(componentType));
+        }
+
+        Class<?> c = (Class<?>) type;
+        if (c == int.class || c == Integer.class) return INTEGER;
+        if (c == String.class) return STRING;
+        if (c == boolean.class || c == Boolean.class) return BOOLEAN;
+        if (c == short.class || c == Short.class) return SHORT;
+        if (c == float.class || c == Float.class) return FLOAT;
+        if (c == double.class || c == Double.class) return DOUBLE;
+        if (c == long.class || c == Long.class) return LONG;
+        if (c == byte.class || c == Byte.class) return BYTE;
+        if (c.isEnum()) return new EnumCodec(c);
+        if (c.isArray()) return forArrayType(c);
+        return new ObjectCodec(c);
+    }
+
+    private static TypeCodec forArrayType(Class<?> c) {
+        Class<?> componentType = c.getComponentType();
+        if (componentType == byte.class) return BYTE_ARRAY;
+        if (componentType == boolean.class) return BOOLEAN_ARRAY;
+        if (componentType == short.class) return SHORT_ARRAY;
+        if (componentType == int.class) return INT_ARRAY;
+        if (componentType == long.class) return LONG_ARRAY;
+        if (componentType == float.class) return FLOAT_ARRAY;
+        if (componentType == double.class) return DOUBLE_ARRAY;
+        return new ObjectArrayCodec(componentType, forType(componentType));
+    }
+
+    // =====================================
+    // Primitive/common object types
+    // =====================================
+    static final TypeCodec INTEGER = new TypeCodec() {
+        void write(Object value, MarshallBuffer seqBytes) { Marshaller.marshallInteger((Integer) value, seqBytes); }
+        Object read(UnmarshallBuffer seqBytes) { return Unmarshaller.unmarshallInteger(seqBytes); }
+    };
+
+    static final TypeCodec STRING = new TypeCodec() {
+        void write(Object value, MarshallBuffer seqBytes) { Marshaller.marshallString((String) value, seqBytes); }
+        Object read(UnmarshallBuffer seqBytes) { return Unmarshaller.unmarshallString(seqBytes); }
+    };
+
+    static final TypeCodec BOOLEAN = new TypeCodec() {
+        void write(Object value, MarshallBuffer seqBytes) { Marshaller.marshallBoolean((Boolean) value, seqBytes); }
+        Object read(UnmarshallBuffer seqBytes) { return Unmarshaller.unmarshallBoolean(seqBytes); }
+    };
+
+    static final TypeCodec SHORT = new TypeCodec() {
+        void write(Object value, MarshallBuffer seqBytes) { Marshaller.marshallShort((Short) value, seqBytes); }
+        Object read(UnmarshallBuffer seqBytes) { return Unmarshaller.unmarshallShort(seqBytes); }
+    };
+
+    static final TypeCodec FLOAT = new TypeCodec() {
+        void write(Object value, MarshallBuffer seqBytes) { Marshaller.marshallFloat((Float) value, seqBytes); }
+        Object read(UnmarshallBuffer seqBytes) { return Unmarshaller.unmarshallFloat(seqBytes); }
+    };
+
+    static final TypeCodec DOUBLE = new TypeCodec() {
+        void write(Object value, MarshallBuffer seqBytes) { Marshaller.marshallDouble((Double) value, seqBytes); }
+        Object read(UnmarshallBuffer seqBytes) { return Unmarshaller.unmarshallDouble(seqBytes); }
+    };
+
+    static final TypeCodec LONG = new TypeCodec() {
+        void write(Object value, MarshallBuffer seqBytes) { Marshaller.marshallLong((Long) value, seqBytes); }
+        Object read(UnmarshallBuffer seqBytes) { return Unmarshaller.unmarshallLong(seqBytes); }
+    };
+
+    static final TypeCodec BYTE = new TypeCodec() {
+        void write(Object value, MarshallBuffer seqBytes) { Marshaller.marshallByte((Byte) value, seqBytes); }
+        Object read(UnmarshallBuffer seqBytes) { return Unmarshaller.unmarshallByte(seqBytes); }
+    };
+
+    /**
+     * Written as its ordinal, so constants must only ever be appended to the enum
+     */
+    static class EnumCodec extends TypeCodec {
+        private final Object[] constants;
+
+        EnumCodec(Class<?> enumClass) {
+            this.constants = enumClass.getEnumConstants();
+        }
+
+        @Override
+        void write(Object value, MarshallBuffer seqBytes) {
+            Marshaller.marshallInteger(((Enum<?>) value).ordinal(), seqBytes);
+        }
+
+        @Override
+        Object read(UnmarshallBuffer seqBytes) {
+            int ordinal = Unmarshaller.unmarshallInteger(seqBytes);
+            if (ordinal < 0 || ordinal >= constants.length) throw new IllegalArgumentException("Invalid enum ordinal: " + ordinal);
+            return constants[ordinal];
+        }
+    }
+
+    // =====================================
+    // Primitive arrays
+    // [Length of array, elements]. Elements are fixed width in every format so they can be bulk copied
+    // =====================================
+    static final TypeCodec BYTE_ARRAY = new TypeCodec() {
+        void write(Object value, MarshallBuffer seqBytes) {
+            byte[] arr = (byte[]) value;
+            Marshaller.marshallLength(arr.length, seqBytes);
+            seqBytes.putBytes(arr);
+        }
+        Object read(UnmarshallBuffer seqBytes) {
+            int length = Unmarshaller.unmarshallLength(seqBytes);
+            seqBytes.checkRemaining(length, Byte.BYTES);
+            byte[] arr = new byte[length];
+            seqBytes.getBytes(arr);
+            return arr;
+        }
+    };
+
+    static final TypeCodec BOOLEAN_ARRAY = new TypeCodec() {
+        void write(Object value, MarshallBuffer seqBytes) {
+            boolean[] arr = (boolean[]) value;
+            Marshaller.marshallLength(arr.length, seqBytes);
+            for (boolean bool : arr) {
+                Marshaller.marshallBoolean(bool, seqBytes);
+            }
+        }
+        Object read(UnmarshallBuffer seqBytes) {
+            int length = Unmarshaller.unmarshallLength(seqBytes);
+            seqBytes.checkRemaining(length, Byte.BYTES);
+            boolean[] arr = new boolean[length];
+            for (int i = 0; i < length; i++) {
+                arr[i] = Unmarshaller.unmarshallBoolean(seqBytes);
+            }
+            return arr;
+        }
+    };
+
+    static final TypeCodec SHORT_ARRAY = new TypeCodec() {
+        void write(Object value, MarshallBuffer seqBytes) {
+            short[] arr = (short[]) value;
+            Marshaller.marshallLength(arr.length, seqBytes);
+            seqBytes.putShorts(arr);
+        }
+        Object read(UnmarshallBuffer seqBytes) {
+            int length = Unmarshaller.unmarshallLength(seqBytes);
+            seqBytes.checkRemaining(length, Short.BYTES);
+            short[] arr = new short[length];
+            seqBytes.getShorts(arr);
+            return arr;
+        }
+    };
+
+    static final TypeCodec INT_ARRAY = new TypeCodec() {
+        void write(Object value, MarshallBuffer seqBytes) {
+            int[] arr = (int[]) value;
+            Marshaller.marshallLength(arr.length, seqBytes);
+            seqBytes.putInts(arr);
+        }
+        Object read(UnmarshallBuffer seqBytes) {
+            int length = Unmarshaller.unmarshallLength(seqBytes);
+            seqBytes.checkRemaining(length, Integer.BYTES);
+            int[] arr = new int[length];
+            seqBytes.getInts(arr);
+            return arr;
+        }
+    };
+
+    static final TypeCodec LONG_ARRAY = new TypeCodec() {
+        void write(Object value, MarshallBuffer seqBytes) {
+            long[] arr = (long[]) value;
+            Marshaller.marshallLength(arr.length, seqBytes);
+            seqBytes.putLongs(arr);
+        }
+        Object read(UnmarshallBuffer seqBytes) {
+            int length = Unmarshaller.unmarshallLength(seqBytes);
+            seqBytes.checkRemaining(length, Long.BYTES);
+            long[] arr = new long[length];
+            seqBytes.getLongs(arr);
+            return arr;
+        }
+    };
+
+    static final TypeCodec FLOAT_ARRAY = new TypeCodec() {
+        void write(Object value, MarshallBuffer seqBytes) {
+            float[] arr = (float[]) value;
+            Marshaller.marshallLength(arr.length, seqBytes);
+            seqBytes.putFloats(arr);
+        }
+        Object read(UnmarshallBuffer seqBytes) {
+            int length = Unmarshaller.unmarshallLength(seqBytes);
+            seqBytes.checkRemaining(length, Float.BYTES);
+            float[] arr = new float[length];
+            seqBytes.getFloats(arr);
+            return arr;
+        }
+    };
+
+    static final TypeCodec DOUBLE_ARRAY = new TypeCodec() {
+        void write(Object value, MarshallBuffer seqBytes) {
+            double[] arr = (double[]) value;
+            Marshaller.marshallLength(arr.length, seqBytes);
+            seqBytes.putDoubles(arr);
+        }
+        Object read(UnmarshallBuffer seqBytes) {
+            int length = Unmarshaller.unmarshallLength(seqBytes);
+            seqBytes.checkRemaining(length, Double.BYTES);
+            double[] arr = new double[length];
+            seqBytes.getDoubles(arr);
+            return arr;
+        }
+    };
+
+    /**
+     * Arrays of objects, e.g. String[] or int[][]: [Length of array, null flag and element,...]
+     */
+    static class ObjectArrayCodec extends TypeCodec {
+        private final Class<?> componentType;
+        private final TypeCodec elementCodec;
+
+        ObjectArrayCodec(Class<?> componentType, TypeCodec elementCodec) {
+            this.componentType = componentType;
+            this.elementCodec = elementCodec;
+        }
+
+        @Override
+        void write(Object value, MarshallBuffer seqBytes) throws IllegalAccessException {
+            Object[] arr = (Object[]) value;
+            Marshaller.marshallLength(arr.length, seqBytes);
+            for (Object o : arr) {
+                Marshaller.marshallValue(elementCodec, o, seqBytes);
+            }
+        }
+
+        @Override
+        Object read(UnmarshallBuffer seqBytes) {
+            int length = Unmarshaller.unmarshallLength(seqBytes);
+            seqBytes.checkRemaining(length, 1); // Every element has at least its null flag
+            Object[] arr = (Object[]) Array.newInstance(componentType, length);
+            for (int i = 0; i < length; i++) {
+                arr[i] = Unmarshaller.unmarshallValue(elementCodec, seqBytes);
+            }
+            return arr;
+        }
+    }
+
+    /**
+     * Follows example in lecture
+     * [Length of List, object within list,...]
+     */
+    static class ListCodec extends TypeCodec {
+        private final TypeCodec elementCodec;
+
+        ListCodec(TypeCodec elementCodec) {
+            this.elementCodec = elementCodec;
+        }
+
+        @Override
+        void write(Object value, MarshallBuffer seqBytes) throws IllegalAccessException {
+            List<?> list = (List<?>) value;
+            Marshaller.marshallLength(list.size(), seqBytes);
+            for (Object o : list) {
+                Marshaller.marshallValue(elementCodec, o, seqBytes);
+            }
+        }
+
+        @Override
+        Object read(UnmarshallBuffer seqBytes) {
+            int sizeList = Unmarshaller.unmarshallLength(seqBytes);
+            List<Object> list = new ArrayList<>(Math.min(sizeList, seqBytes.remaining()));
+            for (int i = 0; i < sizeList; i++) {
+                list.add(Unmarshaller.unmarshallValue(elementCodec, seqBytes));
+            }
+            return list;
+        }
+    }
+
+    /**
+     * Nested object written as its field names and values, without a class name or id
+     * Since no class name is written, the value must be an instance of exactly the declared class
+     * The schema is looked up on first use so that self-referencing classes can be resolved
+     */
+    static class ObjectCodec extends TypeCodec {
+        private final Class<?> objClass;
+        private volatile ClassSchema schema;
+
+        ObjectCodec(Class<?> objClass) {
+            this.objClass = objClass;
+        }
+
+        @Override
+        void write(Object value, MarshallBuffer seqBytes) throws IllegalAccessException {
+            if (value.getClass() != objClass) {
+                throw new IllegalArgumentException("Field declared as " + objClass.getName()
+                        + " holds a " + value.getClass().getName() + ", which could not be unmarshalled");
+            }
+            seqBytes.enterNested();
+            try {
+                Marshaller.marshallObject(value, getSchema(), seqBytes);
+            } finally {
+                seqBytes.exitNested();
+            }
+        }
+
+        @Override
+        Object read(UnmarshallBuffer seqBytes) {
+            seqBytes.enterNested();
+            try {
+                return Unmarshaller.unmarshallObject(seqBytes, getSchema());
+            } finally {
+                seqBytes.exitNested();
+            }
+        }
+
+        private ClassSchema getSchema() {
+            if (schema == null) {
+                schema = ClassSchema.forClass(objClass);
+            }
+            return schema;
+        }
+    }
+}
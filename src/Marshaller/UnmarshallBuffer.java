@@ -0,0 +1,212 @@
+package Marshaller;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Read cursor over the bytes of a single marshalled message
+ * Reads advance the cursor in place, so nothing is copied or shifted while decoding
+ * Reading past the end of the message throws java.nio.BufferUnderflowException
+ */
+public class UnmarshallBuffer {
+    private final ByteBuffer buffer;
+    private WireFormat format = WireFormat.LEGACY;
+    private boolean usesVarInts = false;
+    private int nestingDepth = 0;
+
+    /**
+     * @param bytesArr: array holding the message, e.g. DatagramPacket.getData()
+     * @param offset: index of the first byte of the message, e.g. DatagramPacket.getOffset()
+     * @param length: number of bytes in the message, e.g. DatagramPacket.getLength()
+     */
+    public UnmarshallBuffer(byte[] bytesArr, int offset, int length) {
+        this(ByteBuffer.wrap(bytesArr, offset, length));
+    }
+
+    /**
+     * Reads from the buffer's current position up to its limit
+     * @param buffer: buffer holding the message
+     */
+    public UnmarshallBuffer(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+    }
+
+    // =====================================
+    // Getters
+    // =====================================
+
+    /**
+     * @return the number of unread bytes left in the message
+     */
+    public int remaining() {
+        return buffer.remaining();
+    }
+
+    /**
+     * @return the wire format of the message being read, known once its header has been read
+     */
+    public WireFormat getFormat() {
+        return format;
+    }
+
+    // =====================================
+    // Readers
+    // =====================================
+    void setFormat(WireFormat format) {
+        this.format = format;
+        this.usesVarInts = format.usesVarInts();
+    }
+
+    boolean usesVarInts() {
+        return usesVarInts;
+    }
+
+    /**
+     * @return the next byte without advancing the cursor
+     * @throws BufferUnderflowException if no bytes are left in the message
+     */
+    byte peekByte() {
+        if (buffer.remaining() < 1) throw new BufferUnderflowException();
+        return buffer.get(buffer.position());
+    }
+
+    byte getByte() {
+        return buffer.get();
+    }
+
+    short getShort() {
+        return buffer.getShort();
+    }
+
+    int getInt() {
+        return buffer.getInt();
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint, see MarshallBuffer.putVarInt
+     * @throws IllegalArgumentException if the varint is longer than 5 bytes
+     */
+    int getVarInt() {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    long getLong() {
+        return buffer.getLong();
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint of up to 10 bytes, see MarshallBuffer.putVarLong
+     * @throws IllegalArgumentException if the varint is longer than 10 bytes
+     */
+    long getVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    float getFloat() {
+        return buffer.getFloat();
+    }
+
+    double getDouble() {
+        return buffer.getDouble();
+    }
+
+    /**
+     * Skips over the next bytes if they are exactly expected, e.g. a pre-encoded field name
+     * @param expected: the bytes to compare against
+     * @return true if the bytes matched and were skipped, false if the cursor was left unchanged
+     */
+    boolean skipIfMatches(byte[] expected) {
+        if (buffer.remaining() < expected.length) return false;
+        int position = buffer.position();
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(position + i) != expected[i]) return false;
+        }
+        buffer.position(position + expected.length);
+        return true;
+    }
+
+    // =====================================
+    // Bulk readers for primitive arrays
+    // =====================================
+
+    /**
+     * Checks that a declared number of elements can be present before an array is allocated for them,
+     * so a corrupt length fails fast instead of allocating a huge array
+     * @param length: number of elements
+     * @param elementBytes: size of each element in bytes
+     * @throws BufferUnderflowException if fewer bytes are left in the message
+     */
+    void checkRemaining(int length, int elementBytes) {
+        if (length < 0 || (long) length * elementBytes > buffer.remaining()) throw new BufferUnderflowException();
+    }
+
+    void getBytes(byte[] dst) {
+        buffer.get(dst);
+    }
+
+    void getShorts(short[] dst) {
+        buffer.asShortBuffer().get(dst);
+        buffer.position(buffer.position() + dst.length * Short.BYTES);
+    }
+
+    void getInts(int[] dst) {
+        buffer.asIntBuffer().get(dst);
+        buffer.position(buffer.position() + dst.length * Integer.BYTES);
+    }
+
+    void getLongs(long[] dst) {
+        buffer.asLongBuffer().get(dst);
+        buffer.position(buffer.position() + dst.length * Long.BYTES);
+    }
+
+    void getFloats(float[] dst) {
+        buffer.asFloatBuffer().get(dst);
+        buffer.position(buffer.position() + dst.length * Float.BYTES);
+    }
+
+    void getDoubles(double[] dst) {
+        buffer.asDoubleBuffer().get(dst);
+        buffer.position(buffer.position() + dst.length * Double.BYTES);
+    }
+
+    /**
+     * Called before reading a nested object, so that deeply nested input cannot overflow the stack
+     * @throws IllegalArgumentException if objects are nested deeper than TypeCodec.MAX_NESTING_DEPTH
+     */
+    void enterNested() {
+        if (++nestingDepth > TypeCodec.MAX_NESTING_DEPTH) {
+            throw new IllegalArgumentException("Objects nested deeper than " + TypeCodec.MAX_NESTING_DEPTH);
+        }
+    }
+
+    void exitNested() {
+        nestingDepth--;
+    }
+
+    /**
+     * Reads length bytes, widening each byte to a char
+     * @param length: number of bytes to read
+     * @throws BufferUnderflowException if length is negative or fewer bytes are left in the message
+     */
+    String getChars(int length) {
+        checkRemaining(length, 1);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) buffer.get();
+        }
+        return new String(chars);
+    }
+}
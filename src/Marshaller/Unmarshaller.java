@@ -1,10 +1,6 @@
 package Marshaller;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
 import java.nio.ByteBuffer;
-import java.util.*;
 
 public class Unmarshaller {
 
@@ -17,13 +13,62 @@ public class Unmarshaller {
      * @throws ClassNotFoundException
      */
     public static <T extends Marshallable> T unmarshall(byte[] bytesArr, Class<T> c) throws ClassNotFoundException {
-        List<Byte> seqBytes = new ArrayList<>();
-        for (int i=0; i < bytesArr.length; i++){
-            seqBytes.add(bytesArr[i]);
+        return unmarshall(bytesArr, 0, bytesArr.length, c);
+    }
+
+    /**
+     * Unmarshalls a message held in part of an array, e.g. the data of a received DatagramPacket
+     * @param bytesArr: array of bytes to unserialize
+     * @param offset: index of the first byte of the message
+     * @param length: number of bytes in the message
+     * @param c: class of object
+     * @param <T>
+     * @return
+     * @throws ClassNotFoundException
+     */
+    public static <T extends Marshallable> T unmarshall(byte[] bytesArr, int offset, int length, Class<T> c) throws ClassNotFoundException {
+        return unmarshall(new UnmarshallBuffer(bytesArr, offset, length), c);
+    }
+
+    /**
+     * Unmarshalls a message held between the buffer's position and limit
+     * @param buffer: buffer of bytes to unserialize
+     * @param c: class of object
+     * @param <T>
+     * @return
+     * @throws ClassNotFoundException
+     */
+    public static <T extends Marshallable> T unmarshall(ByteBuffer buffer, Class<T> c) throws ClassNotFoundException {
+        return unmarshall(new UnmarshallBuffer(buffer), c);
+    }
+
+    /**
+     * Unmarshalls a message from the cursor's current position
+     * @param seqBytes: cursor over the bytes to unserialize
+     * @param c: class of object
+     * @param <T>
+     * @return
+     * @throws ClassNotFoundException
+     */
+    public static <T extends Marshallable> T unmarshall(UnmarshallBuffer seqBytes, Class<T> c) throws ClassNotFoundException {
+        ClassSchema schema;
+        if (seqBytes.peekByte() == WireFormat.COMPACT_MAGIC) {
+            seqBytes.getByte();
+            WireFormat format = WireFormat.forCompactVersion(seqBytes.getByte());
+            seqBytes.setFormat(format);
+            int typeId = format.usesVarInts() ? seqBytes.getVarInt() : Short.toUnsignedInt(seqBytes.getShort());
+            schema = SchemaRegistry.getSchema(typeId);
+        } else {
+            // The class name usually matches the expected class, in which case it is skipped without being decoded
+            seqBytes.setFormat(WireFormat.LEGACY);
+            schema = ClassSchema.forClass(c);
+            if (!seqBytes.skipIfMatches(schema.getEncodedClassName())) {
+                String className = unmarshallString(seqBytes);
+                schema = ClassSchema.forName(className);
+            }
         }
-        String className = unmarshallString(seqBytes);
         int id = unmarshallInteger(seqBytes);
-        Object obj = unmarshallObject(seqBytes, Class.forName(className));
+        Object obj = unmarshallObject(seqBytes, schema);
         Marshallable m = (Marshallable) obj;
         m.setId(id);
         return c.cast(m);
@@ -31,162 +76,117 @@ public class Unmarshaller {
 
     /**
      * Gets the name and value of each field and sets the corresponding values for an instantiated object of the class
-     * @param seqBytes: list of bytes to unserialize
-     * @param c: class of object to unmarshall
-     * @param <T>
+     * Fields are expected in declaration order, but are matched by name if they arrive in any other order
+     * @param seqBytes: cursor over the bytes to unserialize
+     * @param schema: cached field layout of the class of object to unmarshall
      * @return
      */
-    private static <T> T unmarshallObject(List<Byte> seqBytes, Class<T> c){
-        T obj;
+    static Object unmarshallObject(UnmarshallBuffer seqBytes, ClassSchema schema){
+        if (Marshaller.getCodecMode() == CodecMode.GENERATED) {
+            return schema.getGeneratedCodec().read(seqBytes);
+        }
+
+        Object obj;
 
         // create instance of object
         try {
-            obj = c.getDeclaredConstructor().newInstance();
-//          obj = c.newInstance(); (deprecated version)
+            obj = schema.newInstance();
         } catch (Exception e) {
             System.out.println(e);
             return null;
         }
 
-        // get fields of object and map each field to its name
-        Field[] fields = c.getDeclaredFields();
-        Map<String, Field> fieldNameToFieldTypeMap = new HashMap<>();
-        for (Field field : fields) {
-            fieldNameToFieldTypeMap.put(field.getName(), field);
-            field.setAccessible(true);
-        }
-
-        while (fieldNameToFieldTypeMap.size() > 0) {
-            String fieldName = unmarshallString(seqBytes);
-
-            Field field = fieldNameToFieldTypeMap.get(fieldName);
+        ClassSchema.FieldSchema[] fields = schema.getFields();
+        for (int i = 0; i < fields.length; i++) {
+            ClassSchema.FieldSchema field = unmarshallFieldHeader(seqBytes, schema, i);
 
             try {
-                Type fullType = field.getGenericType();
-                field.set(obj, unmarshallListIter(seqBytes, fullType));
+                field.set(obj, unmarshallValue(field.getCodec(), seqBytes));
             } catch (IllegalAccessException e) {
                 e.printStackTrace();
             }
-            fieldNameToFieldTypeMap.remove(fieldName);
         }
 
         return obj;
     }
 
     /**
-     * Unmarshalls object based on given type
-     * If object type is list, it will recurse until last dimension
+     * Reads which field follows: its name in the LEGACY format, its id in the compact formats
+     * In the LEGACY format the expected field's name is matched in place before falling back to a lookup by name
      * @param seqBytes
-     * @param type
-     * @return
+     * @param schema: cached field layout of the object being unmarshalled
+     * @param expectedIndex: index of the field expected if fields arrive in declaration order
+     * @return the field whose value follows
      */
-    private static Object unmarshallListIter(List<Byte> seqBytes, Type type){
+    static ClassSchema.FieldSchema unmarshallFieldHeader(UnmarshallBuffer seqBytes, ClassSchema schema, int expectedIndex){
+        if (seqBytes.getFormat().isCompact()) {
+            return schema.getFieldById(Byte.toUnsignedInt(seqBytes.getByte()));
+        }
+        ClassSchema.FieldSchema field = schema.getFields()[expectedIndex];
+        if (seqBytes.skipIfMatches(field.getEncodedName())) return field;
+        String fieldName = unmarshallString(seqBytes);
+        return schema.getField(fieldName);
+    }
 
+    /**
+     * Unmarshalls a null flag, followed by the object if it is not null
+     * @param codec: codec of the object's declared type
+     * @param seqBytes
+     * @return
+     */
+    static Object unmarshallValue(TypeCodec codec, UnmarshallBuffer seqBytes){
         //check if obj is null
         boolean isNull = !unmarshallBoolean(seqBytes);
         if (isNull) return null;
-
-        String[] typeNameSplit = type.getTypeName().split("[<>]");
-        String typeName = typeNameSplit[0];
-
-        switch(typeName){
-            case "java.util.List":
-                return unmarshallList(seqBytes, ((ParameterizedType) type).getActualTypeArguments()[0]);
-            case "java.lang.Integer":
-            case "int":
-                return unmarshallInteger(seqBytes);
-            case "java.lang.String":
-                return unmarshallString(seqBytes);
-            case "java.lang.Boolean":
-            case "boolean":
-                return unmarshallBoolean(seqBytes);
-            case "java.lang.Short":
-            case "short":
-                return unmarshallShort(seqBytes);
-            case "java.lang.Float":
-            case "float":
-                return unmarshallFloat(seqBytes);
-            case "java.lang.Double":
-            case "double":
-                return unmarshallDouble(seqBytes);
-            default:
-                unmarshallObject(seqBytes, (Class<?>) type);
-                break;
-        }
-
-        return null;
+        return codec.read(seqBytes);
     }
 
     // =====================================
     // Unmarshalling primitive/common object types
     // =====================================
 
-    private static <T> List<T> unmarshallList(List<Byte> seqBytes, Type type){
-        List<T> list = new ArrayList<>();
-        int sizeList = byteListToInt(seqBytes);
-        for(int i = 0; i < sizeList; i++){
-            T obj = (T) unmarshallListIter(seqBytes, type);
-            list.add(obj);
+    static int unmarshallInteger(UnmarshallBuffer seqBytes){
+        if (seqBytes.usesVarInts()) {
+            int zigzag = seqBytes.getVarInt();
+            return (zigzag >>> 1) ^ -(zigzag & 1);
         }
-        return list;
+        return seqBytes.getInt();
     }
 
-    private static int unmarshallInteger(List<Byte> seqBytes){
-        return byteListToInt(seqBytes);
+    static int unmarshallLength(UnmarshallBuffer seqBytes){
+        return seqBytes.usesVarInts() ? seqBytes.getVarInt() : seqBytes.getInt();
     }
 
-    private static int byteListToInt(List<Byte> seqBytes){
-        byte[] arr = new byte[Integer.BYTES];
-        for (int i = 0; i < arr.length; i++){
-            byte b = seqBytes.remove(0);
-            arr[i] = b;
-        }
-        ByteBuffer bb = ByteBuffer.wrap(arr);
-        int integer = bb.getInt();
-        return integer;
+    static String unmarshallString(UnmarshallBuffer seqBytes){
+        int strSize = unmarshallLength(seqBytes);
+        return seqBytes.getChars(strSize);
     }
 
-    private static String unmarshallString(List<Byte> seqBytes){
-        int strSize = byteListToInt(seqBytes);
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < strSize; i++){
-            char c = (char) seqBytes.remove(0).byteValue();
-            sb.append(c);
-        }
-        return sb.toString();
+    static boolean unmarshallBoolean(UnmarshallBuffer seqBytes){
+        return seqBytes.getByte() != (byte) 0;
     }
 
-    private static boolean unmarshallBoolean(List<Byte> seqBytes){
-        return seqBytes.remove(0) != (byte) 0;
+    static short unmarshallShort(UnmarshallBuffer seqBytes){
+        return seqBytes.getShort();
     }
 
-    private static short unmarshallShort(List<Byte> seqBytes){
-        byte[] arr = new byte[Short.BYTES];
-        for (int i = 0; i < arr.length; i++){
-            arr[i] = seqBytes.remove(0);
+    static long unmarshallLong(UnmarshallBuffer seqBytes){
+        if (seqBytes.usesVarInts()) {
+            long zigzag = seqBytes.getVarLong();
+            return (zigzag >>> 1) ^ -(zigzag & 1);
         }
-        ByteBuffer bb = ByteBuffer.wrap(arr);
-        short shrt = bb.getShort();
-        return shrt;
+        return seqBytes.getLong();
     }
 
-    private static float unmarshallFloat(List<Byte> seqBytes){
-        byte[] arr = new byte[Float.BYTES];
-        for (int i = 0; i < arr.length; i++){
-            arr[i] = seqBytes.remove(0);
-        }
-        ByteBuffer bb = ByteBuffer.wrap(arr);
-        float flt = bb.getFloat();
-        return flt;
+    static byte unmarshallByte(UnmarshallBuffer seqBytes){
+        return seqBytes.getByte();
     }
 
-    private static double unmarshallDouble(List<Byte> seqBytes){
-        byte[] arr = new byte[Double.BYTES];
-        for (int i = 0; i < arr.length; i++){
-            arr[i] = seqBytes.remove(0);
-        }
-        ByteBuffer bb = ByteBuffer.wrap(arr);
-        double dbl = bb.getDouble();
-        return dbl;
+    static float unmarshallFloat(UnmarshallBuffer seqBytes){
+        return seqBytes.getFloat();
+    }
+
+    static double unmarshallDouble(UnmarshallBuffer seqBytes){
+        return seqBytes.getDouble();
     }
 }
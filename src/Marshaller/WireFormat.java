@@ -0,0 +1,100 @@
+package Marshaller;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encoding used on the wire for a marshalled message
+ * The format of a received message is detected from its first bytes, so all formats can be served side by side
+ */
+public enum WireFormat {
+    /**
+     * [Class Name][obj id][field name, null flag, value]...
+     * The first byte is the high byte of the class name length, which is always 0
+     */
+    LEGACY,
+    /**
+     * [COMPACT_MAGIC][COMPACT_VERSION][type id][obj id][field id, null flag, value]...
+     * Type ids come from the SchemaRegistry and field ids from each field's @FieldId, instead of names
+     */
+    COMPACT,
+    /**
+     * [COMPACT_MAGIC][COMPACT_VARINT_VERSION][type id][obj id][field id, null flag, value]...
+     * Same as COMPACT, but ints are zigzag varints and type ids, list lengths and string lengths are varints,
+     * so small values take 1 byte instead of 4
+     */
+    COMPACT_VARINT;
+
+    public static final byte COMPACT_MAGIC = (byte) 0xCB;
+    public static final byte COMPACT_VERSION = 1;
+    public static final byte COMPACT_VARINT_VERSION = 2;
+
+    /**
+     * Detects the format of a message from its first bytes
+     * @param bytesArr: array holding the message
+     * @param offset: index of the first byte of the message
+     * @return the format the message was marshalled with
+     * @throws BufferUnderflowException if the message is too short to have a header
+     */
+    public static WireFormat detect(byte[] bytesArr, int offset) {
+        if (bytesArr.length - offset < 1) throw new BufferUnderflowException();
+        if (bytesArr[offset] != COMPACT_MAGIC) return LEGACY;
+        if (bytesArr.length - offset < 2) throw new BufferUnderflowException();
+        return bytesArr[offset + 1] == COMPACT_VARINT_VERSION ? COMPACT_VARINT : COMPACT;
+    }
+
+    /**
+     * Detects the format of a message from its first bytes, without moving the buffer's position
+     * @param buffer: buffer holding the message from its position onwards
+     * @return the format the message was marshalled with
+     * @throws BufferUnderflowException if the message is too short to have a header
+     */
+    public static WireFormat detect(ByteBuffer buffer) {
+        int position = buffer.position();
+        if (buffer.remaining() < 1) throw new BufferUnderflowException();
+        if (buffer.get(position) != COMPACT_MAGIC) return LEGACY;
+        if (buffer.remaining() < 2) throw new BufferUnderflowException();
+        return buffer.get(position + 1) == COMPACT_VARINT_VERSION ? COMPACT_VARINT : COMPACT;
+    }
+
+    /**
+     * @param version: the version byte following COMPACT_MAGIC
+     * @return the compact format with that version
+     * @throws IllegalArgumentException if the version is not supported
+     */
+    static WireFormat forCompactVersion(byte version) {
+        if (version == COMPACT_VERSION) return COMPACT;
+        if (version == COMPACT_VARINT_VERSION) return COMPACT_VARINT;
+        throw new IllegalArgumentException("Unsupported wire format version: " + version);
+    }
+
+    /**
+     * @return true if type and field ids are used instead of names
+     */
+    public boolean isCompact() {
+        return this != LEGACY;
+    }
+
+    /**
+     * @return true if ints and lengths are written as varints
+     */
+    public boolean usesVarInts() {
+        return this == COMPACT_VARINT;
+    }
+
+    /**
+     * @return the version byte following COMPACT_MAGIC
+     */
+    byte getCompactVersion() {
+        return this == COMPACT_VARINT ? COMPACT_VARINT_VERSION : COMPACT_VERSION;
+    }
+
+    /**
+     * Reads the format from the "marshaller.format" system property
+     * @param defaultFormat: the format to use if the property is not set
+     */
+    public static WireFormat fromSystemProperty(WireFormat defaultFormat) {
+        String format = System.getProperty("marshaller.format");
+        return format == null ? defaultFormat : valueOf(format.toUpperCase());
+    }
+}
@@ -0,0 +1,180 @@
+package Server.Application;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * At-most-once cache that holds at most maxEntries responses, each for ttlMillis after it was cached
+ * The TTL should cover the client's whole retry window, so that every retry of a request finds its response
+ * A response is never removed before its TTL is up, as a later retry of that request would then be run again.
+ * Once full of unexpired responses, new requests are answered with FULL_RESPONSE instead of being run, until
+ * responses expire, so maxEntries should be at least the peak request rate times the TTL. Such rejections are
+ * counted to show when it is too small. Requests running at once may take it past maxEntries by their number
+ * Safe to use from several worker threads at once
+ */
+public class BoundedServerCache extends KeyedRequestCache {
+    // The client retries 5 times with a 5 second timeout, so it stops retrying within 25 seconds of the first send
+    public static final long DEFAULT_TTL_MILLIS = 60_000;
+    public static final int DEFAULT_MAX_ENTRIES = 100_000;
+    public static final String FULL_RESPONSE = "503: Server is too busy, please retry later";
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, CachedResponse> responses;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long expirations = 0;
+    private long rejections = 0;
+
+    /**
+     * @param maxEntries: the most responses held at once
+     * @param ttlMillis: how long a response is kept after it is cached
+     */
+    public BoundedServerCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock: source of the current time in milliseconds
+     */
+    public BoundedServerCache(int maxEntries, long ttlMillis, LongSupplier clock) {
+        if (maxEntries <= 0 || ttlMillis <= 0) throw new IllegalArgumentException("Max entries and TTL must be positive");
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        // Insertion order, so the eldest entry is the first to expire
+        this.responses = new LinkedHashMap<>();
+    }
+
+    /**
+     * Reads the limits from -Dserver.cache.maxEntries and -Dserver.cache.ttlMillis
+     * @return a cache with the default limits for any property that is not set
+     */
+    public static BoundedServerCache fromSystemProperties() {
+        return new BoundedServerCache(Integer.getInteger("server.cache.maxEntries", DEFAULT_MAX_ENTRIES),
+                Long.getLong("server.cache.ttlMillis", DEFAULT_TTL_MILLIS));
+    }
+
+    @Override
+    public synchronized void addRequest(String requestId, String serverResponse) {
+        long now = clock.getAsLong();
+        removeExpired(now);
+        responses.put(requestId, new CachedResponse(serverResponse, now + ttlMillis));
+    }
+
+    /**
+     * @return true if the request has a cached response, or if it has none but the cache is full
+     */
+    @Override
+    public synchronized boolean hasRequest(String requestId) {
+        return getUnexpired(requestId) != null || isFull();
+    }
+
+    /**
+     * Counted as a hit, miss or rejection, unlike hasRequest
+     * @return the cached response, FULL_RESPONSE if there is none and the cache is full, or null
+     */
+    @Override
+    public synchronized String getResponse(String requestId) {
+        CachedResponse cached = getUnexpired(requestId);
+        if (cached != null) {
+            hits++;
+            return cached.response;
+        }
+        if (isFull()) {
+            rejections++;
+            return FULL_RESPONSE;
+        }
+        misses++;
+        return null;
+    }
+
+    // =====================================
+    // Getters
+    // =====================================
+    public synchronized int size() {
+        return responses.size();
+    }
+
+    /**
+     * @return the number of lookups that found a cached response, i.e. retries answered without re-running the request
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of responses removed because their TTL was up
+     */
+    public synchronized long getExpirations() {
+        return expirations;
+    }
+
+    /**
+     * @return the number of requests answered with FULL_RESPONSE because the cache was full
+     */
+    public synchronized long getRejections() {
+        return rejections;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("BoundedServerCache[size=%d/%d, ttl=%dms, hits=%d, misses=%d, expirations=%d, rejections=%d]",
+                responses.size(), maxEntries, ttlMillis, hits, misses, expirations, rejections);
+    }
+
+    // =====================================
+    // Private methods
+    // =====================================
+
+    /**
+     * @return the cached response, or null if there is none or it has expired, in which case it is removed
+     */
+    private CachedResponse getUnexpired(String requestId) {
+        CachedResponse cached = responses.get(requestId);
+        if (cached == null) return null;
+        if (cached.expiresAt <= clock.getAsLong()) {
+            responses.remove(requestId);
+            expirations++;
+            return null;
+        }
+        return cached;
+    }
+
+    /**
+     * Removes expired responses, after which the cache is full if it still holds maxEntries responses
+     */
+    private boolean isFull() {
+        removeExpired(clock.getAsLong());
+        return responses.size() >= maxEntries;
+    }
+
+    /**
+     * Removes expired responses from the eldest end, stopping at the first that has not expired
+     */
+    private void removeExpired(long now) {
+        Iterator<CachedResponse> iterator = responses.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiresAt > now) return;
+            iterator.remove();
+            expirations++;
+        }
+    }
+
+    private static class CachedResponse {
+        private final String response;
+        private final long expiresAt;
+
+        CachedResponse(String response, long expiresAt) {
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -1,24 +1,55 @@
 package Server.Application;
 
+import java.net.InetSocketAddress;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the responses to at-most-once requests, so that a retried request is answered without being run again
+ * Requests are identified by the client's address and the id the client gave the request. Caches that keep
+ * responses under a string key extend KeyedRequestCache
+ */
 public interface IRequestCache {
     /**
-     * Adds a request id and the server response to the cache
-     * @param requestId: the requestId string from the client
+     * Adds the response to a client's request to the cache
+     * @param client: the address the request was received from
+     * @param requestId: the id the client gave the request
      * @param serverResponse: the generated server response for the given request
      */
-    void addRequest(String requestId, String serverResponse);
+    void addRequest(InetSocketAddress client, int requestId, String serverResponse);
 
     /**
-     * Checks if the requestId has been responded to by the server before
-     * @param requestId: the requestId string from the client
+     * Checks if a client's request has been responded to by the server before
+     * @param client: the address the request was received from
+     * @param requestId: the id the client gave the request
      * @return a boolean to indicate if the server has cached the response for the given request
      */
-    boolean hasRequest(String requestId);
+    boolean hasRequest(InetSocketAddress client, int requestId);
+
+    /**
+     * Gets the cached response to a client's request
+     * @param client: the address the request was received from
+     * @param requestId: the id the client gave the request
+     * @return the server response that has been cached for the given request, or null if there is none
+     */
+    String getResponse(InetSocketAddress client, int requestId);
 
     /**
-     * Gets the cached response associated with the requestId
-     * @param requestId: the requestId string from the client
-     * @return the server response that has been cached for the given request
+     * Gets the cached response to a client's request, or runs handler and caches its response if there is none,
+     * as one atomic step: however many copies of the request arrive at once, handler runs only once
+     * This default runs every handler under the cache's monitor, one at a time. StripedRequestCache only makes
+     * copies of the same request wait for each other
+     * @param client: the address the request was received from
+     * @param requestId: the id the client gave the request
+     * @param handler: runs the request and returns the response to cache
+     * @return the cached response, or the response returned by handler
      */
-    String getResponse(String requestId);
+    default String computeIfAbsent(InetSocketAddress client, int requestId, Supplier<String> handler) {
+        synchronized (this) {
+            String cached = getResponse(client, requestId);
+            if (cached != null) return cached;
+            String serverResponse = handler.get();
+            addRequest(client, requestId, serverResponse);
+            return serverResponse;
+        }
+    }
 }
@@ -0,0 +1,20 @@
+package Server.Application;
+
+import Client.ClientRequest;
+import Server.Transport.IDatagramTransport;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Handles the requests of one opcode, see RequestHandlerRegistry
+ */
+@FunctionalInterface
+public interface IRequestHandler {
+    /**
+     * @param client: the address the request was received from
+     * @param clientRequest: the unmarshalled request
+     * @param transport: the socket the request was received on, which any observer updates are sent from
+     * @return the response message for the client
+     */
+    String handle(InetSocketAddress client, ClientRequest clientRequest, IDatagramTransport transport);
+}
@@ -0,0 +1,52 @@
+package Server.Application;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Request cache that keeps each response under a string key
+ * A client's request is kept under toRequestKey of the client's address and the request's id
+ */
+public abstract class KeyedRequestCache implements IRequestCache {
+    /**
+     * Adds a request id and the server response to the cache
+     * @param requestId: the requestId string from the client
+     * @param serverResponse: the generated server response for the given request
+     */
+    public abstract void addRequest(String requestId, String serverResponse);
+
+    /**
+     * Checks if the requestId has been responded to by the server before
+     * @param requestId: the requestId string from the client
+     * @return a boolean to indicate if the server has cached the response for the given request
+     */
+    public abstract boolean hasRequest(String requestId);
+
+    /**
+     * Gets the cached response associated with the requestId
+     * @param requestId: the requestId string from the client
+     * @return the server response that has been cached for the given request
+     */
+    public abstract String getResponse(String requestId);
+
+    @Override
+    public void addRequest(InetSocketAddress client, int requestId, String serverResponse) {
+        addRequest(toRequestKey(client, requestId), serverResponse);
+    }
+
+    @Override
+    public boolean hasRequest(InetSocketAddress client, int requestId) {
+        return hasRequest(toRequestKey(client, requestId));
+    }
+
+    @Override
+    public String getResponse(InetSocketAddress client, int requestId) {
+        return getResponse(toRequestKey(client, requestId));
+    }
+
+    /**
+     * @return the string key of a client's request, e.g. "3/127.0.0.1:50000"
+     */
+    public static String toRequestKey(InetSocketAddress client, int requestId) {
+        return Integer.toString(requestId) + client;
+    }
+}
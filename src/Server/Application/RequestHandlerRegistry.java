@@ -0,0 +1,130 @@
+package Server.Application;
+
+import Client.ClientRequest;
+import Server.Metrics.LatencyHistogram;
+import Server.Transport.IDatagramTransport;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps each opcode, the requestMethod of a ClientRequest, to its handler. The opcodes are listed in Client.Protocol
+ * Every request handled through the registry has its latency recorded in a histogram for its opcode, and the server
+ * records the time it spends unmarshalling requests and marshalling replies in the decode and encode histograms.
+ * getStatsReport gives the throughput and latency percentiles of each, and is what the server answers STATS with
+ * Requests with an opcode that has no handler are handled by the fallback opcode's handler
+ * Handlers can be registered while requests are being handled
+ */
+public class RequestHandlerRegistry {
+    private final Map<Integer, Registration> handlers = new ConcurrentHashMap<>();
+    private final int fallbackOpcode;
+    private final LatencyHistogram decodeLatency = new LatencyHistogram();
+    private final LatencyHistogram encodeLatency = new LatencyHistogram();
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * @param fallbackOpcode: the opcode whose handler handles requests with an unknown opcode
+     */
+    public RequestHandlerRegistry(int fallbackOpcode) {
+        this.fallbackOpcode = fallbackOpcode;
+    }
+
+    /**
+     * Registers the handler for an opcode, replacing any handler it had
+     * @param opcode: the requestMethod the handler handles
+     * @param name: the name the opcode is reported by in the stats
+     * @param handler: the handler
+     */
+    public void register(int opcode, String name, IRequestHandler handler) {
+        handlers.put(opcode, new Registration(name, handler));
+    }
+
+    /**
+     * Runs the handler registered for the request's opcode, recording how long it took
+     * @return the response message for the client
+     * @throws IllegalStateException if neither the opcode nor the fallback opcode has a handler
+     */
+    public String handle(InetSocketAddress client, ClientRequest clientRequest, IDatagramTransport transport) {
+        Registration registration = handlers.get(clientRequest.getRequestMethod());
+        if (registration == null) registration = handlers.get(fallbackOpcode);
+        if (registration == null) throw new IllegalStateException("No handler for opcode " + clientRequest.getRequestMethod());
+
+        long start = System.nanoTime();
+        try {
+            return registration.handler.handle(client, clientRequest, transport);
+        } finally {
+            registration.latency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Formats the count, throughput and latency percentiles of decoding, encoding and each opcode since the
+     * registry was created, one line each. Latencies are in microseconds
+     */
+    public String getStatsReport() {
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        StringBuilder report = new StringBuilder(String.format("Server stats over %.1fs, latencies in us%n", elapsedSeconds));
+        report.append(String.format("%-18s %10s %10s %9s %9s %9s %9s%n", "operation", "count", "ops/s", "p50", "p99", "p999", "max"));
+        appendStats(report, "decode", decodeLatency, elapsedSeconds);
+        for (Map.Entry<Integer, Registration> entry : new TreeMap<>(handlers).entrySet()) {
+            appendStats(report, entry.getKey() + " " + entry.getValue().name, entry.getValue().latency, elapsedSeconds);
+        }
+        appendStats(report, "encode", encodeLatency, elapsedSeconds);
+        return report.toString();
+    }
+
+    // =====================================
+    // Getters
+    // =====================================
+    public LatencyHistogram getDecodeLatency() {
+        return decodeLatency;
+    }
+
+    public LatencyHistogram getEncodeLatency() {
+        return encodeLatency;
+    }
+
+    /**
+     * @return the latencies of the handler registered for opcode, or null if there is none
+     */
+    public LatencyHistogram getLatency(int opcode) {
+        Registration registration = handlers.get(opcode);
+        return registration == null ? null : registration.latency;
+    }
+
+    /**
+     * @return the registered opcodes in ascending order
+     */
+    public List<Integer> getOpcodes() {
+        return new ArrayList<>(new TreeMap<>(handlers).keySet());
+    }
+
+    @Override
+    public String toString() {
+        return getStatsReport();
+    }
+
+    // =====================================
+    // Private methods
+    // =====================================
+    private static void appendStats(StringBuilder report, String operation, LatencyHistogram latency, double elapsedSeconds) {
+        report.append(String.format("%-18s %10d %10.1f %9.1f %9.1f %9.1f %9.1f%n", operation, latency.getCount(),
+                latency.getCount() / elapsedSeconds, latency.getValueAtPercentile(50) / 1e3,
+                latency.getValueAtPercentile(99) / 1e3, latency.getValueAtPercentile(99.9) / 1e3, latency.getMax() / 1e3));
+    }
+
+    private static class Registration {
+        private final String name;
+        private final IRequestHandler handler;
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        Registration(String name, IRequestHandler handler) {
+            this.name = name;
+            this.handler = handler;
+        }
+    }
+}
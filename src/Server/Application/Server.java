@@ -1,125 +1,294 @@
 package Server.Application;
 
+import Client.AvailabilityRequest;
 import Client.ClientRequest;
+import Client.Protocol;
+import Client.CreateBookingRequest;
+import Client.ObserveFacilityRequest;
+import Client.UpdateBookingRequest;
+import Marshaller.BufferPool;
+import Marshaller.ClassSchema;
 import Marshaller.Marshallable;
+import Marshaller.WireFormat;
 import Server.BusinessLogic.FacilitiesBookingSystem;
 import Server.BusinessLogic.IBookingSystem;
 import Server.DataAccess.IServerDB;
 import Server.DataAccess.ServerDB;
 import Server.Exceptions.*;
+import Server.Logging.Logger;
+import Server.Transport.ChannelTransport;
+import Server.Transport.FaultInjectingTransport;
+import Server.Transport.FaultProfile;
+import Server.Transport.IDatagramTransport;
+import Server.Transport.ReusePortChannels;
+import Server.Transport.SocketTransport;
 
 import java.io.IOException;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 public class Server {
-    private DatagramSocket socket;
+    private static final Logger log = Logger.getLogger(Server.class);
+
+    private List<IDatagramTransport> transports; // One per socket bound to the server's port
     private IServerDB serverDB;
     private IBookingSystem facilitiesBookingSystem;
     private IRequestCache cache;
-    private final double SIMULATE_NETWORK_FAILURE_PROBABILITY_THRESHOLD = 0.7;
+    private RequestHandlerRegistry handlers;
+    private ExecutorService workers; // null when requests are handled serially
+    private BufferPool bufferPool;
+    private volatile boolean closed = false;
 
 
     public Server(int port) {
+        this(new ServerConfig(port, ServerConfig.ExecutionMode.SERIAL, 1, ServerConfig.DEFAULT_QUEUE_CAPACITY));
+    }
+
+    public Server(ServerConfig config) {
         try {
-            System.out.println("Starting a service at port " + port);
-            socket = new DatagramSocket(port);
+            log.info("server.starting", "config", config);
+            transports = createTransports(config);
+            // Requests are received straight into pooled buffers of the kind the transports read without a copy
+            bufferPool = transports.get(0).prefersDirectBuffers() ? BufferPool.sharedDirect() : BufferPool.shared();
             serverDB = new ServerDB();
             facilitiesBookingSystem = new FacilitiesBookingSystem(serverDB);
-            cache = new ServerCache();
+            cache = new StripedRequestCache(createRequestCache());
+            handlers = createHandlerRegistry();
+            workers = createWorkers(config);
+            ClassSchema.prepare(ClientRequest.class, AvailabilityRequest.class, CreateBookingRequest.class,
+                    UpdateBookingRequest.class, ObserveFacilityRequest.class, ServerResponse.class);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                System.out.println(bufferPool);
+                System.out.println(cache);
+                System.out.println(handlers.getStatsReport());
+                for (IDatagramTransport transport : transports) {
+                    if (transport instanceof FaultInjectingTransport) System.out.println(transport);
+                }
+            }));
             printIp();
         } catch (Exception e){
-            e.printStackTrace();
+            log.error("server.startFailed", e);
         }
     }
 
     public static void main(String[] args) {
         try {
-            int port = 17;
-            Server server = new Server(port);
+            Server server = new Server(ServerConfig.fromSystemProperties());
             server.service();
         } catch (SocketException ex) {
-            System.out.println("Socket error: " + ex.getMessage());
+            log.error("server.socketError", ex);
         } catch (IOException ex) {
-            System.out.println("I/O error: " + ex.getMessage());
+            log.error("server.ioError", ex);
         } catch (IllegalAccessException e) {
-            e.printStackTrace();
+            log.error("server.failed", e);
         }
     }
 
     /**
      * Starts udp service
-     * @throws IOException if unable to connect to socket
+     * Each socket gets its own receive loop. The first runs on the calling thread and the others on
+     * receiver threads, so that the kernel's receive work for the port is spread over as many threads as sockets
+     * @throws IOException if unable to connect to socket, or once the server is closed
+     */
+    public void service() throws IOException, IllegalAccessException {
+        for (int i = 1; i < transports.size(); i++) {
+            IDatagramTransport transport = transports.get(i);
+            Thread receiver = new Thread(() -> {
+                try {
+                    service(transport);
+                } catch (IOException | RuntimeException e) {
+                    if (!closed) log.error("receiver.failed", e, "thread", Thread.currentThread().getName());
+                }
+            }, "server-receiver-" + i);
+            receiver.start();
+        }
+        service(transports.get(0));
+    }
+
+    /**
+     * Stops receiving requests and closes every socket
+     * Requests already handed to workers are still handled, but their replies cannot be sent
+     */
+    public void close() throws IOException {
+        closed = true;
+        for (IDatagramTransport transport : transports) {
+            transport.close();
+        }
+        if (workers != null) workers.shutdown();
+    }
+
+    private void service(IDatagramTransport transport) throws IOException {
+        if (workers == null) {
+            serviceSerially(transport);
+        } else {
+            serviceConcurrently(transport);
+        }
+    }
+
+    /**
+     * Receives, handles and replies to each request in turn on the calling thread
+     * Request and reply bytes live in buffers from the BufferPool, so handling a request
+     * does not allocate any buffers once the pool has warmed up
      */
-    private void service() throws IOException, IllegalAccessException {
+    private void serviceSerially(IDatagramTransport transport) throws IOException {
         while (true) {
-            byte[] buffer = new byte[256];
-
-            DatagramPacket request = new DatagramPacket(buffer, buffer.length);
-            socket.receive(request);
-
-            // Unmarshall the client request
-            byte[] bytesArr = request.getData();
-            ClientRequest clientRequest = Marshallable.unmarshall(bytesArr, ClientRequest.class);
-
-            int functionCode = clientRequest.getRequestMethod(); // Warning, this might produce null pointer exception
-            List<String> arguments = clientRequest.getArguments();
-            String clientRequestId = Integer.toString(clientRequest.getId()) + request.getSocketAddress();
-
-            String responseMessage;
-            switch (functionCode) {
-                case 0:
-                default:
-                    responseMessage = handleHeartbeat();
-                    break;
-                case 2:
-                    responseMessage = handleGetAvailability(clientRequestId, arguments);
-                    break;
-                case 3:
-                    responseMessage = handleCreateBooking(request, clientRequestId, arguments);
-                    break;
-                case 4:
-                    responseMessage = handleUpdateBooking(request, clientRequestId, arguments);
-                    break;
-                case 5:
-                    responseMessage = handleAddObservingClient(request, clientRequestId, arguments);
-                    break;
+            ByteBuffer requestBuffer = bufferPool.acquire();
+            try {
+                SocketAddress clientAddress = transport.receive(requestBuffer);
+                requestBuffer.flip();
+                handleRequestSafely(requestBuffer, clientAddress, transport);
+            } finally {
+                bufferPool.release(requestBuffer);
+            }
+        }
+    }
 
+    /**
+     * The calling thread only receives requests. Each one is handled and replied to by a worker,
+     * which takes over the request's pooled buffer and releases it when done
+     */
+    private void serviceConcurrently(IDatagramTransport transport) throws IOException {
+        while (true) {
+            ByteBuffer requestBuffer = bufferPool.acquire();
+            SocketAddress clientAddress;
+            try {
+                clientAddress = transport.receive(requestBuffer);
+                requestBuffer.flip();
+            } catch (IOException e) {
+                bufferPool.release(requestBuffer);
+                throw e;
             }
+            workers.execute(() -> {
+                try {
+                    handleRequestSafely(requestBuffer, clientAddress, transport);
+                } finally {
+                    bufferPool.release(requestBuffer);
+                }
+            });
+        }
+    }
 
-            ServerResponse serverResponse = new ServerResponse(responseMessage);
+    /**
+     * Handles a request as handleRequest does, logging any failure instead of throwing it,
+     * so that a malformed datagram cannot stop the loop that received it
+     */
+    private void handleRequestSafely(ByteBuffer request, SocketAddress clientAddress, IDatagramTransport transport) {
+        try {
+            handleRequest(request, clientAddress, transport);
+        } catch (Exception | Error e) {
+            // Only this request is lost. The client will retry it
+            log.error("request.failed", e, "client", clientAddress);
+        }
+    }
 
-            InetAddress clientAddress = request.getAddress();
-            int clientPort = request.getPort();
+    /**
+     * Unmarshalls a received request, runs its handler and sends the reply
+     * Safe to call from several threads at once
+     * @param request: buffer holding the received request between its position and limit
+     * @param clientAddress: the address the request was received from, which the reply is sent to
+     * @param transport: the socket the request was received on, which the reply and any observer updates are sent from
+     */
+    private void handleRequest(ByteBuffer request, SocketAddress clientAddress, IDatagramTransport transport)
+            throws IOException, IllegalAccessException {
+        // Unmarshall the client request
+        // Only the received bytes are decoded, not the unused remainder of the buffer
+        long decodeStart = System.nanoTime();
+        WireFormat requestFormat = WireFormat.detect(request);
+        ClientRequest clientRequest = Marshallable.unmarshall(request, ClientRequest.class);
+        InetSocketAddress client = (InetSocketAddress) clientAddress;
+        handlers.getDecodeLatency().record(System.nanoTime() - decodeStart);
 
-            // Pseudo server response
-            buffer = serverResponse.marshall();
-            DatagramPacket response = new DatagramPacket(buffer, buffer.length, clientAddress, clientPort);
-            if (shouldSimulateNetworkFailure()) {
-                System.out.println("Simulating network failure: Withholding response...");
-            } else {
-                socket.send(response);
-            }
+        String responseMessage = handlers.handle(client, clientRequest, transport);
+
+        ServerResponse serverResponse = new ServerResponse(responseMessage);
+
+        // Pseudo server response
+        // Reply in the format the client used, so clients that only speak the legacy format keep working
+        long encodeStart = System.nanoTime();
+        ByteBuffer responseBuffer = serverResponse.marshall(bufferPool, requestFormat);
+        handlers.getEncodeLatency().record(System.nanoTime() - encodeStart);
+        try {
+            transport.send(responseBuffer, client);
+        } finally {
+            bufferPool.release(responseBuffer);
         }
     }
 
+    /**
+     * Registers the handler of every opcode the client sends, and of the STATS opcode for operators
+     * Unknown opcodes are answered as heartbeats
+     */
+    private RequestHandlerRegistry createHandlerRegistry() {
+        RequestHandlerRegistry registry = new RequestHandlerRegistry(Protocol.HEARTBEAT);
+        registry.register(Protocol.HEARTBEAT, "heartbeat",
+                (client, clientRequest, transport) -> handleHeartbeat());
+        registry.register(Protocol.GET_AVAILABILITY, "getAvailability", (client, clientRequest, transport) ->
+                respondAtMostOnce(client, clientRequest, () -> handleGetAvailability(client, clientRequest)));
+        registry.register(Protocol.CREATE_BOOKING, "createBooking", (client, clientRequest, transport) ->
+                respondAtMostOnce(client, clientRequest, () -> handleCreateBooking(client, clientRequest, transport)));
+        registry.register(Protocol.UPDATE_BOOKING, "updateBooking", (client, clientRequest, transport) ->
+                respondAtMostOnce(client, clientRequest, () -> handleUpdateBooking(client, clientRequest, transport)));
+        registry.register(Protocol.OBSERVE_FACILITY, "observeFacility", (client, clientRequest, transport) ->
+                respondAtMostOnce(client, clientRequest, () -> handleAddObservingClient(client, clientRequest)));
+        registry.register(Protocol.FACILITY_SNAPSHOT, "facilitySnapshot",
+                (client, clientRequest, transport) -> handleGetSnapshot(clientRequest));
+        registry.register(Protocol.STATS, "stats",
+                (client, clientRequest, transport) -> registry.getStatsReport());
+        return registry;
+    }
+
+    /**
+     * Runs an at-most-once request through the cache, so a retry is answered with the response to the first copy
+     * Copies of the request that arrive while the first is still being handled wait for it instead of running again
+     * @param handler: runs the request and returns the response message
+     * @return the response message for the client
+     */
+    private String respondAtMostOnce(InetSocketAddress client, ClientRequest clientRequest, Supplier<String> handler) {
+        if (!clientRequest.isAtMostOnce()) return handler.get();
+        boolean[] handled = {false};
+        String responseMessage = cache.computeIfAbsent(client, clientRequest.getId(), () -> {
+            handled[0] = true;
+            return handler.get();
+        });
+        if (!handled[0]) {
+            log.info("request.duplicate", "client", client, "requestId", clientRequest.getId());
+        }
+        return responseMessage;
+    }
+
     // ===================================
     // Handler functions
+    // Typed requests are read from their fields. Untyped ClientRequests from older clients
+    // carry their arguments as strings, which are parsed as before
     // ===================================
-    private String handleGetAvailability(String clientRequestId, List<String> arguments) {
+    private String handleGetAvailability(InetSocketAddress client, ClientRequest clientRequest) {
         String serverResponse;
-        boolean useAtMostOnce = Integer.parseInt(arguments.get(arguments.size() - 1)) == 1;
         try {
-            if (useAtMostOnce && cache.hasRequest(clientRequestId)) {
-                System.out.println("RequestId found in cache. Retrieving response from cache instead...");
-                return cache.getResponse(clientRequestId);
-            }
-            String facilityName = arguments.get(0);
-            List<Integer> days = new ArrayList<>();
-            for (int i = 1; i < arguments.size() - 1; i++) {
-                days.add(Integer.parseInt(arguments.get(i)));
+            String facilityName;
+            List<Integer> days;
+            if (clientRequest instanceof AvailabilityRequest) {
+                AvailabilityRequest availabilityRequest = (AvailabilityRequest) clientRequest;
+                facilityName = availabilityRequest.getFacilityName();
+                days = availabilityRequest.getDays();
+            } else {
+                List<String> arguments = clientRequest.getArguments();
+                facilityName = arguments.get(0);
+                days = new ArrayList<>();
+                for (int i = 1; i < arguments.size() - 1; i++) {
+                    days.add(Integer.parseInt(arguments.get(i)));
+                }
             }
             String availability = facilitiesBookingSystem.getAvailability(facilityName, days);
             serverResponse = "Facility availability: " + availability;
@@ -128,26 +297,26 @@ public class Server {
         } catch (ParseException e) {
             serverResponse = "500: Error occurred retrieving availability";
         }
-        if (useAtMostOnce) {
-            cache.addRequest(clientRequestId, serverResponse);
-        }
         return serverResponse;
     }
 
-    private String handleCreateBooking(DatagramPacket request, String clientRequestId, List<String> arguments) {
+    private String handleCreateBooking(InetSocketAddress client, ClientRequest clientRequest,
+                                       IDatagramTransport transport) {
         String serverResponse;
-        boolean useAtMostOnce = Integer.parseInt(arguments.get(arguments.size() - 1)) == 1;
         try {
-            if(useAtMostOnce && cache.hasRequest(clientRequestId)){
-                System.out.println("RequestId found in cache. Retrieving response from cache instead...");
-                return cache.getResponse(clientRequestId);
+            String clientId = generateClientIdFromOrigin(client);
+            String confirmationId;
+            if (clientRequest instanceof CreateBookingRequest) {
+                CreateBookingRequest bookingRequest = (CreateBookingRequest) clientRequest;
+                confirmationId = facilitiesBookingSystem.createBooking(bookingRequest.getFacilityName(), bookingRequest.getDay(),
+                        bookingRequest.getStartMinute(), bookingRequest.getEndMinute(), clientId, transport);
+            } else {
+                List<String> arguments = clientRequest.getArguments();
+                String facilityName = arguments.get(0);
+                String startDateTime = arguments.get(1);
+                String endDateTime = arguments.get(2);
+                confirmationId = facilitiesBookingSystem.createBooking(facilityName, startDateTime, endDateTime, clientId, transport);
             }
-
-            String facilityName = arguments.get(0);
-            String startDateTime = arguments.get(1);
-            String endDateTime = arguments.get(2);
-            String clientId = generateClientIdFromOrigin(request);
-            String confirmationId = facilitiesBookingSystem.createBooking(facilityName, startDateTime, endDateTime, clientId, socket);
             serverResponse = "Booking confirmation ID: " + confirmationId;
         } catch (InvalidDatetimeException | ParseException e) {
             serverResponse = "400: Invalid datetime provided";
@@ -156,25 +325,26 @@ public class Server {
         } catch (FacilityNotFoundException e) {
             serverResponse = "404: Facility not found";
         }
-        if (useAtMostOnce) {
-            cache.addRequest(clientRequestId, serverResponse);
-        }
         return serverResponse;
     }
 
-    private String handleUpdateBooking(DatagramPacket request, String clientRequestId, List<String> arguments) {
+    private String handleUpdateBooking(InetSocketAddress client, ClientRequest clientRequest,
+                                       IDatagramTransport transport) {
         String serverResponse;
-        boolean useAtMostOnce = Integer.parseInt(arguments.get(arguments.size() - 1)) == 1;
         try {
-            if(useAtMostOnce && cache.hasRequest(clientRequestId)){
-                System.out.println("RequestId found in cache. Retrieving response from cache instead...");
-                return cache.getResponse(clientRequestId);
+            String confirmationId;
+            int offset;
+            if (clientRequest instanceof UpdateBookingRequest) {
+                UpdateBookingRequest updateRequest = (UpdateBookingRequest) clientRequest;
+                confirmationId = updateRequest.getConfirmationId();
+                offset = updateRequest.getOffsetMinutes();
+            } else {
+                List<String> arguments = clientRequest.getArguments();
+                confirmationId = arguments.get(0);
+                offset = Integer.parseInt(arguments.get(1));
             }
-
-            String confirmationId = arguments.get(0);
-            String clientId = generateClientIdFromOrigin(request);
-            int offset = Integer.parseInt(arguments.get(1));
-            facilitiesBookingSystem.updateBooking(confirmationId, clientId, offset, socket);
+            String clientId = generateClientIdFromOrigin(client);
+            facilitiesBookingSystem.updateBooking(confirmationId, clientId, offset, transport);
 
             serverResponse =  "Booking updated successfully";
 
@@ -187,24 +357,25 @@ public class Server {
         } catch (ParseException e) {
             serverResponse = "500: Error occurred updating booking";
         }
-        if (useAtMostOnce) {
-            cache.addRequest(clientRequestId, serverResponse);
-        }
         return serverResponse;
     }
 
-    private String handleAddObservingClient(DatagramPacket request, String clientRequestId, List<String> arguments) {
+    private String handleAddObservingClient(InetSocketAddress client, ClientRequest clientRequest) {
         String serverResponse;
-        boolean useAtMostOnce = Integer.parseInt(arguments.get(arguments.size() - 1)) == 1;
         try {
-            if(useAtMostOnce && cache.hasRequest(clientRequestId)){
-                System.out.println("RequestId found in cache. Retrieving response from cache instead...");
-                return cache.getResponse(clientRequestId);
+            String facilityName;
+            int durationInMin;
+            if (clientRequest instanceof ObserveFacilityRequest) {
+                ObserveFacilityRequest observeRequest = (ObserveFacilityRequest) clientRequest;
+                facilityName = observeRequest.getFacilityName();
+                durationInMin = observeRequest.getDurationMinutes();
+            } else {
+                List<String> arguments = clientRequest.getArguments();
+                facilityName = arguments.get(0);
+                durationInMin = Integer.parseInt(arguments.get(1));
             }
-            String facilityName = arguments.get(0);
-            InetAddress clientAddress = request.getAddress();
-            int clientPort = request.getPort();
-            int durationInMin = Integer.parseInt(arguments.get(1));
+            InetAddress clientAddress = client.getAddress();
+            int clientPort = client.getPort();
             facilitiesBookingSystem.addObservingClient(facilityName, clientAddress, clientPort, durationInMin);
 
             serverResponse =  "Successfully added to observing list";
@@ -212,18 +383,30 @@ public class Server {
         } catch (FacilityNotFoundException e) {
             serverResponse = "404: Facility not found";
         }
-        if (useAtMostOnce) {
-            cache.addRequest(clientRequestId, serverResponse);
-        }
         return serverResponse;
     }
 
+    /**
+     * Snapshots are read-only, so a retry is answered again rather than from the cache
+     */
+    private String handleGetSnapshot(ClientRequest clientRequest) {
+        // Typed requests of other opcodes carry no arguments list, so a mislabelled one has none
+        List<String> arguments = clientRequest.getArguments();
+        if (arguments == null || arguments.isEmpty()) return "400: Facility name missing";
+        String facilityName = arguments.get(0);
+        try {
+            return facilitiesBookingSystem.getSnapshot(facilityName);
+        } catch (FacilityNotFoundException e) {
+            return "404: Facility not found";
+        }
+    }
+
     private String handleHeartbeat() {
         return "Request received by server";
     }
 
-    private String generateClientIdFromOrigin(DatagramPacket request) {
-        return request.getAddress().getHostAddress() + ":" + request.getPort();
+    private String generateClientIdFromOrigin(InetSocketAddress client) {
+        return client.getAddress().getHostAddress() + ":" + client.getPort();
     }
 
     /**
@@ -233,10 +416,93 @@ public class Server {
     private void printIp () throws IOException {
         Socket socket = new Socket();
         socket.connect(new InetSocketAddress("google.com", 80)); // Creates a pseudo connection to return the private IP address. Reference: https://stackoverflow.com/questions/9481865/getting-the-ip-address-of-the-current-machine-using-java
-        System.out.println("Server started on: " + socket.getLocalAddress());
+        log.info("server.started", "address", socket.getLocalAddress());
     }
 
-    private boolean shouldSimulateNetworkFailure() {
-        return Math.random() > SIMULATE_NETWORK_FAILURE_PROBABILITY_THRESHOLD;
+    /**
+     * -Dserver.cache picks the at-most-once cache: SLIDING_WINDOW (default) keeps a window of responses per client,
+     * BOUNDED keeps every response for a TTL, up to a maximum number of responses
+     */
+    private static IRequestCache createRequestCache() {
+        String cacheType = System.getProperty("server.cache", "SLIDING_WINDOW").toUpperCase();
+        switch (cacheType) {
+            case "BOUNDED":
+                return BoundedServerCache.fromSystemProperties();
+            case "SLIDING_WINDOW":
+                return SlidingWindowRequestCache.fromSystemProperties();
+            default:
+                throw new IllegalArgumentException("Unknown server.cache: " + cacheType);
+        }
+    }
+
+    /**
+     * Opens the configured number of sockets on the server's port
+     * More than one socket needs SO_REUSEPORT. Without it, a single socket is opened instead
+     * With a fault profile, each socket is wrapped in a FaultInjectingTransport seeded with the profile's seed plus its index
+     */
+    private static List<IDatagramTransport> createTransports(ServerConfig config) throws IOException {
+        List<IDatagramTransport> transports = new ArrayList<>();
+        if (config.getSockets() == 1 || !ReusePortChannels.isSupported()) {
+            if (config.getSockets() > 1) log.warn("server.reusePortUnsupported", "sockets", 1);
+            transports.add(config.getTransportType() == ServerConfig.TransportType.CHANNEL
+                    ? new ChannelTransport(config.getPort())
+                    : new SocketTransport(config.getPort()));
+        } else {
+            for (int i = 0; i < config.getSockets(); i++) {
+                DatagramChannel channel = ReusePortChannels.open(config.getPort());
+                // A blocking channel's socket adaptor behaves like the DatagramSocket the SOCKET transport normally uses
+                transports.add(config.getTransportType() == ServerConfig.TransportType.CHANNEL
+                        ? new ChannelTransport(channel)
+                        : new SocketTransport(channel.socket()));
+            }
+        }
+        FaultProfile faults = config.getFaults();
+        for (int i = 0; i < transports.size(); i++) {
+            transports.set(i, FaultInjectingTransport.wrap(transports.get(i), faults.withSeed(faults.getSeed() + i)));
+        }
+        return transports;
+    }
+
+    /**
+     * @return the executor that handles requests in the configured mode, or null to handle them on the receiving thread
+     */
+    private static ExecutorService createWorkers(ServerConfig config) {
+        switch (config.getExecutionMode()) {
+            case WORKER_POOL:
+                return createWorkerPool(config);
+            case VIRTUAL_THREADS:
+                ExecutorService virtualThreads = createVirtualThreadPerTaskExecutor();
+                if (virtualThreads != null) return virtualThreads;
+                log.warn("server.virtualThreadsUnsupported", "mode", ServerConfig.ExecutionMode.WORKER_POOL);
+                return createWorkerPool(config);
+            case SERIAL:
+            default:
+                return null;
+        }
+    }
+
+    private static ExecutorService createWorkerPool(ServerConfig config) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "server-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        // Once every worker is busy and the queue is full, the receiver thread handles requests itself,
+        // which stops it from receiving faster than requests can be handled
+        return new ThreadPoolExecutor(config.getWorkerThreads(), config.getWorkerThreads(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getQueueCapacity()), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() is looked up reflectively, since the project is built for Java 8
+     * @return the executor, or null if the running JDK has no virtual threads
+     */
+    private static ExecutorService createVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
     }
 }
\ No newline at end of file
@@ -1,12 +1,15 @@
 package Server.Application;
 
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class ServerCache implements IRequestCache {
-    private HashMap<String, String> requestCache;
+/**
+ * Safe to use from several worker threads at once
+ */
+public class ServerCache extends KeyedRequestCache {
+    private ConcurrentHashMap<String, String> requestCache;
 
     public ServerCache() {
-        requestCache = new HashMap<>();
+        requestCache = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -0,0 +1,127 @@
+package Server.Application;
+
+import Server.Transport.FaultProfile;
+
+/**
+ * Server settings, read from system properties so they can be given on the command line
+ * e.g. java -Dserver.mode=WORKER_POOL -Dserver.workers=8 -Dserver.transport=CHANNEL Server.Application.Server
+ */
+public class ServerConfig {
+    public static final int DEFAULT_PORT = 17;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    /**
+     * How received requests are handled
+     * SERIAL: receive, handle and reply on a single thread, as the server originally did
+     * WORKER_POOL: a receiver thread hands requests to a fixed pool of worker threads
+     * VIRTUAL_THREADS: a receiver thread starts a virtual thread per request, on JDKs that support them
+     */
+    public enum ExecutionMode { SERIAL, WORKER_POOL, VIRTUAL_THREADS }
+
+    /**
+     * How datagrams are sent and received
+     * SOCKET: a blocking DatagramSocket, with requests held in heap buffers
+     * CHANNEL: a non-blocking DatagramChannel driven by a Selector, with requests held in direct buffers
+     */
+    public enum TransportType { SOCKET, CHANNEL }
+
+    private final int port;
+    private final ExecutionMode executionMode;
+    private final int workerThreads;
+    private final int queueCapacity;
+    private final TransportType transportType;
+    private final int sockets;
+    private final FaultProfile faults;
+
+    public ServerConfig(int port, ExecutionMode executionMode, int workerThreads, int queueCapacity) {
+        this(port, executionMode, workerThreads, queueCapacity, TransportType.SOCKET, 1, FaultProfile.NONE);
+    }
+
+    /**
+     * @param faults: the network faults to simulate on every socket, or FaultProfile.NONE
+     */
+    public ServerConfig(int port, ExecutionMode executionMode, int workerThreads, int queueCapacity, TransportType transportType,
+                        int sockets, FaultProfile faults) {
+        if (workerThreads <= 0 || queueCapacity <= 0 || sockets <= 0) {
+            throw new IllegalArgumentException("Worker threads, queue capacity and sockets must be positive");
+        }
+        this.port = port;
+        this.executionMode = executionMode;
+        this.workerThreads = workerThreads;
+        this.queueCapacity = queueCapacity;
+        this.transportType = transportType;
+        this.sockets = sockets;
+        this.faults = faults;
+    }
+
+    /**
+     * Reads server.port, server.mode, server.workers, server.queueCapacity, server.transport, server.sockets
+     * and the server.fault properties, see FaultProfile.fromSystemProperties
+     * server.failureProbability is still read as the probability that a reply is lost, as before faults could be configured
+     * @return the configuration, with defaults for any property that is not set
+     * @throws IllegalArgumentException if server.mode is not the name of an ExecutionMode,
+     * or server.transport is not the name of a TransportType
+     */
+    public static ServerConfig fromSystemProperties() {
+        int port = Integer.getInteger("server.port", DEFAULT_PORT);
+        ExecutionMode executionMode = ExecutionMode.valueOf(System.getProperty("server.mode", ExecutionMode.SERIAL.name()).toUpperCase());
+        int workerThreads = Integer.getInteger("server.workers", Runtime.getRuntime().availableProcessors());
+        int queueCapacity = Integer.getInteger("server.queueCapacity", DEFAULT_QUEUE_CAPACITY);
+        TransportType transportType = TransportType.valueOf(System.getProperty("server.transport", TransportType.SOCKET.name()).toUpperCase());
+        int sockets = Integer.getInteger("server.sockets", 1);
+        FaultProfile faults = FaultProfile.fromSystemProperties("server");
+        String failureProbability = System.getProperty("server.failureProbability");
+        if (failureProbability != null) faults = faults.withSendLoss(Double.parseDouble(failureProbability));
+        return new ServerConfig(port, executionMode, workerThreads, queueCapacity, transportType, sockets, faults);
+    }
+
+    // =====================================
+    // Getters
+    // =====================================
+    public int getPort() {
+        return port;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * @return the number of worker threads in WORKER_POOL mode
+     */
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    /**
+     * @return the number of requests that may wait for a worker before the receiver thread handles them itself
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public TransportType getTransportType() {
+        return transportType;
+    }
+
+    /**
+     * @return the number of sockets bound to the port with SO_REUSEPORT, each with its own receiver thread
+     */
+    public int getSockets() {
+        return sockets;
+    }
+
+    /**
+     * @return the network faults simulated on every socket
+     */
+    public FaultProfile getFaults() {
+        return faults;
+    }
+
+    @Override
+    public String toString() {
+        return "port=" + port + ", transport=" + transportType + (sockets > 1 ? ", sockets=" + sockets : "") + ", mode=" + executionMode
+                + (executionMode == ExecutionMode.WORKER_POOL ? ", workers=" + workerThreads + ", queue=" + queueCapacity : "")
+                + (faults.hasFaults() ? ", faults=[" + faults + "]" : "");
+    }
+}
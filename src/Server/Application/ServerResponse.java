@@ -1,9 +1,10 @@
 package Server.Application;
 
+import Marshaller.FieldId;
 import Marshaller.Marshallable;
 
 public class ServerResponse extends Marshallable {
-    String response;
+    @FieldId(0) String response;
 
     public ServerResponse(){
 
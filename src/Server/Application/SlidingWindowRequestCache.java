@@ -0,0 +1,336 @@
+package Server.Application;
+
+import Client.Protocol;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * At-most-once cache that keeps a small window of recent responses per client, instead of one entry per request
+ * Clients number their requests 1, 2, 3... and wait for each reply before sending the next request, so only the
+ * latest few ids of a client can still be retried. For each client this keeps the highest request id seen and the
+ * responses to the last windowSize ids. A request older than that is a late duplicate of a request the client has
+ * long stopped retrying, and is answered with STALE_RESPONSE rather than being run again
+ * IPv4 clients are looked up by their address and port packed into a long, so a lookup builds no strings.
+ * Clients that send nothing for idleMillis are forgotten
+ * A client starts numbering from Protocol.firstRequestId, which puts the second it started in the top bits of its
+ * ids, so a client restarting on the same address within idleMillis starts a new epoch with an empty window, rather than
+ * having its fresh ids answered as stale. Requests left over from an older epoch are stale
+ * Safe to use from several worker threads at once
+ */
+public class SlidingWindowRequestCache implements IRequestCache {
+    public static final int DEFAULT_WINDOW_SIZE = 16;
+    public static final String STALE_RESPONSE = "410: Request is too old to be answered again";
+    private static final int STRIPES = 16; // Power of two
+    private static final long NO_KEY = 0; // For clients whose address does not fit in a long
+
+    private final int windowSize;
+    private final long idleMillis;
+    private final LongSupplier clock;
+    private final ClientTable[] tables;
+    private final Map<InetSocketAddress, ClientWindow> otherClients = new HashMap<>(); // Guarded by itself
+    private volatile long lastSweep;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder staleRequests = new LongAdder();
+
+    /**
+     * @param windowSize: the number of recent responses kept per client. Rounded up to a power of two
+     * @param idleMillis: how long a client is remembered after its last request
+     */
+    public SlidingWindowRequestCache(int windowSize, long idleMillis) {
+        this(windowSize, idleMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock: source of the current time in milliseconds
+     */
+    public SlidingWindowRequestCache(int windowSize, long idleMillis, LongSupplier clock) {
+        if (windowSize <= 0 || idleMillis <= 0) throw new IllegalArgumentException("Window size and idle time must be positive");
+        this.windowSize = windowSize == 1 ? 1 : Integer.highestOneBit(windowSize - 1) << 1;
+        this.idleMillis = idleMillis;
+        this.clock = clock;
+        this.tables = new ClientTable[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            tables[i] = new ClientTable();
+        }
+    }
+
+    /**
+     * Reads the window size from -Dserver.cache.windowSize and the idle time from -Dserver.cache.ttlMillis
+     * @return a cache with the defaults for any property that is not set
+     */
+    public static SlidingWindowRequestCache fromSystemProperties() {
+        return new SlidingWindowRequestCache(Integer.getInteger("server.cache.windowSize", DEFAULT_WINDOW_SIZE),
+                Long.getLong("server.cache.ttlMillis", BoundedServerCache.DEFAULT_TTL_MILLIS));
+    }
+
+    @Override
+    public void addRequest(InetSocketAddress client, int requestId, String serverResponse) {
+        long now = clock.getAsLong();
+        if (now - lastSweep >= idleMillis) {
+            lastSweep = now;
+            removeIdleClients(now - idleMillis);
+        }
+        long key = toClientKey(client);
+        if (key == NO_KEY) {
+            synchronized (otherClients) {
+                otherClients.computeIfAbsent(client, address -> new ClientWindow(windowSize))
+                        .record(requestId, serverResponse, now, now - idleMillis);
+            }
+            return;
+        }
+        tableFor(key).record(key, requestId, serverResponse, now, now - idleMillis, windowSize);
+    }
+
+    @Override
+    public boolean hasRequest(InetSocketAddress client, int requestId) {
+        return lookup(client, requestId) != null;
+    }
+
+    /**
+     * Counted as a hit, miss or stale request, unlike hasRequest
+     * @return the cached response, STALE_RESPONSE, or null if the request has not been answered
+     */
+    @Override
+    public String getResponse(InetSocketAddress client, int requestId) {
+        String response = lookup(client, requestId);
+        if (response == null) {
+            misses.increment();
+        } else if (response == STALE_RESPONSE) {
+            staleRequests.increment();
+        } else {
+            hits.increment();
+        }
+        return response;
+    }
+
+    // =====================================
+    // Getters
+    // =====================================
+
+    /**
+     * @return the number of clients currently remembered, including idle clients that have not been removed yet
+     */
+    public int getClientCount() {
+        int clients = 0;
+        for (ClientTable table : tables) {
+            clients += table.getSize();
+        }
+        synchronized (otherClients) {
+            return clients + otherClients.size();
+        }
+    }
+
+    /**
+     * @return the number of retries answered with a cached response
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of requests answered with STALE_RESPONSE
+     */
+    public long getStaleRequests() {
+        return staleRequests.sum();
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SlidingWindowRequestCache[clients=%d, window=%d, idle=%dms, hits=%d, misses=%d, stale=%d]",
+                getClientCount(), windowSize, idleMillis, getHits(), getMisses(), getStaleRequests());
+    }
+
+    // =====================================
+    // Private methods
+    // =====================================
+
+    /**
+     * @return the cached response, STALE_RESPONSE, or null if the request has not been answered
+     */
+    private String lookup(InetSocketAddress client, int requestId) {
+        long now = clock.getAsLong();
+        long activeSince = now - idleMillis;
+        long key = toClientKey(client);
+        if (key == NO_KEY) {
+            synchronized (otherClients) {
+                ClientWindow window = otherClients.get(client);
+                return window == null ? null : window.lookup(requestId, now, activeSince);
+            }
+        }
+        return tableFor(key).lookup(key, requestId, now, activeSince);
+    }
+
+    /**
+     * Forgets the clients that have sent nothing since activeSince
+     */
+    private void removeIdleClients(long activeSince) {
+        for (ClientTable table : tables) {
+            table.removeIdle(activeSince);
+        }
+        synchronized (otherClients) {
+            otherClients.values().removeIf(window -> window.lastSeen < activeSince);
+        }
+    }
+
+    /**
+     * Packs an IPv4 address and port as [32 bit address][16 bit port]
+     * @return the packed address, or NO_KEY for an IPv6 client
+     */
+    static long toClientKey(InetSocketAddress client) {
+        InetAddress address = client.getAddress();
+        if (!(address instanceof Inet4Address)) return NO_KEY;
+        byte[] ip = address.getAddress(); // Does not escape, so the JIT can keep it off the heap
+        long packedIp = (ip[0] & 0xFFL) << 24 | (ip[1] & 0xFFL) << 16 | (ip[2] & 0xFFL) << 8 | (ip[3] & 0xFFL);
+        return packedIp << 16 | client.getPort();
+    }
+
+    private ClientTable tableFor(long key) {
+        return tables[mix(key) & (STRIPES - 1)];
+    }
+
+    private static int mix(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    /**
+     * Open addressing table from packed client address to the client's window, with linear probing
+     * A key of 0 marks an empty slot. Slots are only freed by rebuilding the table, which drops idle clients
+     */
+    private static class ClientTable {
+        private long[] keys = new long[16];
+        private ClientWindow[] windows = new ClientWindow[16];
+        private int size = 0;
+
+        synchronized String lookup(long key, int requestId, long now, long activeSince) {
+            ClientWindow window = find(key);
+            return window == null ? null : window.lookup(requestId, now, activeSince);
+        }
+
+        synchronized void record(long key, int requestId, String response, long now, long activeSince, int windowSize) {
+            ClientWindow window = find(key);
+            if (window == null) {
+                if ((size + 1) * 2 > keys.length) {
+                    rebuild(keys.length * 2, Long.MIN_VALUE);
+                }
+                window = new ClientWindow(windowSize);
+                insert(key, window);
+            }
+            window.record(requestId, response, now, activeSince);
+        }
+
+        synchronized void removeIdle(long activeSince) {
+            rebuild(keys.length, activeSince);
+        }
+
+        synchronized int getSize() {
+            return size;
+        }
+
+        private ClientWindow find(long key) {
+            int mask = keys.length - 1;
+            for (int i = (mix(key) >>> 4) & mask; keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) return windows[i];
+            }
+            return null;
+        }
+
+        private void insert(long key, ClientWindow window) {
+            int mask = keys.length - 1;
+            int i = (mix(key) >>> 4) & mask;
+            while (keys[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            windows[i] = window;
+            size++;
+        }
+
+        /**
+         * Rehashes the clients seen at or after activeSince into new arrays of the given capacity
+         */
+        private void rebuild(int capacity, long activeSince) {
+            long[] oldKeys = keys;
+            ClientWindow[] oldWindows = windows;
+            keys = new long[capacity];
+            windows = new ClientWindow[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0 && oldWindows[i].lastSeen >= activeSince) {
+                    insert(oldKeys[i], oldWindows[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * The highest request id seen from a client and the responses to its most recent request ids
+     * The response to request id n is kept in slot n mod windowSize. Guarded by the lock of the table holding it
+     */
+    private static class ClientWindow {
+        private final int[] requestIds;
+        private final String[] responses;
+        private int highestRequestId = Integer.MIN_VALUE;
+        private long lastSeen;
+
+        ClientWindow(int windowSize) {
+            this.requestIds = new int[windowSize];
+            this.responses = new String[windowSize];
+        }
+
+        /**
+         * @param activeSince: a client that has sent nothing since then is treated as forgotten
+         */
+        String lookup(int requestId, long now, long activeSince) {
+            if (lastSeen < activeSince) return null;
+            lastSeen = now;
+            if (isEmpty()) return null;
+            if (Protocol.epochOf(requestId) != Protocol.epochOf(highestRequestId)) {
+                return Protocol.isNewerEpoch(requestId, highestRequestId) ? null : STALE_RESPONSE;
+            }
+            if (requestId > highestRequestId) return null;
+            if ((long) highestRequestId - requestId >= requestIds.length) return STALE_RESPONSE;
+            int slot = requestId & (requestIds.length - 1);
+            return requestIds[slot] == requestId ? responses[slot] : null;
+        }
+
+        /**
+         * @param activeSince: a client that has sent nothing since then starts over with an empty window, as does
+         *                   a client whose request is from a newer epoch
+         */
+        void record(int requestId, String response, long now, long activeSince) {
+            if (lastSeen < activeSince || !isEmpty() && Protocol.isNewerEpoch(requestId, highestRequestId)) {
+                Arrays.fill(requestIds, 0);
+                Arrays.fill(responses, null);
+                highestRequestId = Integer.MIN_VALUE;
+            }
+            lastSeen = now;
+            if (!isEmpty() && Protocol.epochOf(requestId) != Protocol.epochOf(highestRequestId)) return; // From an older epoch
+            if ((long) highestRequestId - requestId >= requestIds.length) return; // Already slid out of the window
+            int slot = requestId & (requestIds.length - 1);
+            requestIds[slot] = requestId;
+            responses[slot] = response;
+            highestRequestId = Math.max(highestRequestId, requestId);
+        }
+
+        private boolean isEmpty() {
+            return highestRequestId == Integer.MIN_VALUE;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package Server.Application;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Wraps an at-most-once cache so that computeIfAbsent runs each request once, even when copies of it arrive at once
+ * A request that is not cached is registered in an in-flight table while it runs. A copy that arrives in the meantime,
+ * e.g. a client's retransmission after a timeout, waits for the original to finish and shares its response instead of
+ * running the request again. Such copies are counted as coalesced
+ * Looking up the cache and the in-flight table and registering a request happen under one of a fixed number of locks,
+ * picked by a hash of the client's address and the request id. The request itself runs without the lock held, so a
+ * slow request does not hold up unrelated requests
+ * The wrapped cache must itself be safe to use from several threads at once
+ */
+public class StripedRequestCache implements IRequestCache {
+    public static final int DEFAULT_STRIPES = 64;
+
+    private final IRequestCache cache;
+    private final ReentrantLock[] locks;
+    private final Map<RequestKey, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder computations = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder contendedLocks = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Uses the number of stripes set by -Dserver.cache.stripes, or DEFAULT_STRIPES
+     * @param cache: the cache that holds the responses
+     */
+    public StripedRequestCache(IRequestCache cache) {
+        this(cache, Integer.getInteger("server.cache.stripes", DEFAULT_STRIPES));
+    }
+
+    /**
+     * @param cache: the cache that holds the responses
+     * @param stripes: the number of locks requests are spread over. Rounded up to a power of two
+     */
+    public StripedRequestCache(IRequestCache cache, int stripes) {
+        if (stripes <= 0) throw new IllegalArgumentException("Stripes must be positive");
+        this.cache = cache;
+        this.locks = new ReentrantLock[stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public String computeIfAbsent(InetSocketAddress client, int requestId, Supplier<String> handler) {
+        RequestKey key = new RequestKey(client, requestId);
+        CompletableFuture<String> original;
+        CompletableFuture<String> response = new CompletableFuture<>();
+        ReentrantLock lock = lock(key);
+        try {
+            // One lookup, so a response that expires in the meantime is not returned as null
+            String cached = cache.getResponse(client, requestId);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            original = inFlight.putIfAbsent(key, response);
+        } finally {
+            lock.unlock();
+        }
+        if (original != null) {
+            coalesced.increment();
+            return awaitResponse(original);
+        }
+
+        computations.increment();
+        try {
+            String serverResponse = handler.get();
+            cache.addRequest(client, requestId, serverResponse);
+            response.complete(serverResponse);
+            return serverResponse;
+        } catch (RuntimeException | Error e) {
+            // Nothing is cached, so the client's next retry runs the request again
+            response.completeExceptionally(e);
+            throw e;
+        } finally {
+            // Cached before it leaves the in-flight table, and under the lock, so a copy that misses the cache
+            // always finds it in flight
+            lock = lock(key);
+            try {
+                inFlight.remove(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void addRequest(InetSocketAddress client, int requestId, String serverResponse) {
+        cache.addRequest(client, requestId, serverResponse);
+    }
+
+    @Override
+    public boolean hasRequest(InetSocketAddress client, int requestId) {
+        return cache.hasRequest(client, requestId);
+    }
+
+    @Override
+    public String getResponse(InetSocketAddress client, int requestId) {
+        return cache.getResponse(client, requestId);
+    }
+
+    // =====================================
+    // Getters
+    // =====================================
+    public IRequestCache getCache() {
+        return cache;
+    }
+
+    public int getStripes() {
+        return locks.length;
+    }
+
+    /**
+     * @return the number of requests run by computeIfAbsent
+     */
+    public long getComputations() {
+        return computations.sum();
+    }
+
+    /**
+     * @return the number of computeIfAbsent calls answered from the cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of copies of a request that arrived while it was running, and waited for its response
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return the number of requests running at the moment
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return the number of computeIfAbsent calls that had to wait for their lock
+     */
+    public long getContendedLocks() {
+        return contendedLocks.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StripedRequestCache[stripes=%d, computations=%d, hits=%d, coalesced=%d, contended=%d, cache=%s]",
+                locks.length, getComputations(), getHits(), getCoalesced(), getContendedLocks(), cache);
+    }
+
+    // =====================================
+    // Private methods
+    // =====================================
+    /**
+     * Takes the lock that guards the given request, counting the times it was held by another thread
+     * @return the lock, for the caller to release
+     */
+    private ReentrantLock lock(RequestKey key) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        ReentrantLock lock = locks[(hash ^ hash >>> 16) & (locks.length - 1)];
+        if (!lock.tryLock()) {
+            contendedLocks.increment();
+            lock.lock();
+        }
+        return lock;
+    }
+
+    /**
+     * Waits for the original copy of a request to finish
+     * @return the original's response
+     * @throws RuntimeException the exception the original's handler failed with
+     */
+    private static String awaitResponse(CompletableFuture<String> original) {
+        try {
+            return original.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+
+    private static class RequestKey {
+        private final InetSocketAddress client;
+        private final int requestId;
+
+        RequestKey(InetSocketAddress client, int requestId) {
+            this.client = client;
+            this.requestId = requestId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof RequestKey)) return false;
+            RequestKey other = (RequestKey) o;
+            return requestId == other.requestId && client.equals(other.client);
+        }
+
+        @Override
+        public int hashCode() {
+            return client.hashCode() * 31 + requestId;
+        }
+    }
+}
@@ -2,126 +2,102 @@ package Server.BusinessLogic;
 
 
 import Server.DataAccess.IServerDB;
+import Server.Entities.Concrete.FacilityUpdate;
 import Server.Entities.Concrete.TimeSlot;
 import Server.Entities.IBooking;
 import Server.Exceptions.*;
+import Server.Logging.Logger;
+import Server.Transport.IDatagramTransport;
 
-import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.text.ParseException;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
  * server db is injected into the business logic layer
+ * Checking that a time slot is free and booking it happen under a lock for the facility,
+ * so that two worker threads cannot book the same slot
+ * Observing clients are sent the change after the lock is released, so a slow observer does not hold up bookings
+ * on the facility, or on the other facilities sharing its lock
  */
 public class FacilitiesBookingSystem implements IBookingSystem {
+    private static final Logger log = Logger.getLogger(FacilitiesBookingSystem.class);
+    private static final int LOCK_STRIPES = 16;
+
     IServerDB serverDB;
+    private final Object[] facilityLocks;
 
     public FacilitiesBookingSystem(IServerDB db) {
+        this(db, LOCK_STRIPES);
+    }
+
+    /**
+     * @param lockStripes: the number of locks facilities are spread over
+     */
+    public FacilitiesBookingSystem(IServerDB db, int lockStripes) {
         serverDB = db;
+        facilityLocks = new Object[lockStripes];
+        for (int i = 0; i < facilityLocks.length; i++) {
+            facilityLocks[i] = new Object();
+        }
     }
 
     @Override
     public String createBooking(String facilityName, String startDateTime, String endDateTime, String clientId)
             throws TimingUnavailableException, FacilityNotFoundException, InvalidDatetimeException, ParseException
+    {
+        return createBooking(facilityName, startDateTime, endDateTime, clientId, null);
+    }
+
+    @Override
+    public String createBooking(String facilityName, String startDateTime, String endDateTime, String clientId, IDatagramTransport transport)
+            throws TimingUnavailableException, FacilityNotFoundException, InvalidDatetimeException, ParseException
     {
         if (!isBookingDatetimeValid(startDateTime, endDateTime)) throw new InvalidDatetimeException("Invalid start or end datetime");
         String[] startDatetimeSplit = startDateTime.split("/");
         String[] endDatetimeSplit = endDateTime.split("/");
         int day = Integer.parseInt(startDatetimeSplit[0]);
 
-        String startTime = startDatetimeSplit[1] + startDatetimeSplit[2];
-        String endTime = endDatetimeSplit[1] +  endDatetimeSplit[2];
-        try {
-            List<IBooking> sortedBookings = serverDB.getSortedBookingsByDay(facilityName, day);
-            TimeSlot timeSlot = new TimeSlot(startTime, endTime);
-            if (!isTimingAvailable(sortedBookings, timeSlot)) {
-                throw new TimingUnavailableException("Other bookings exist at this timeslot");
-            }
-            return serverDB.createBooking(day, clientId, facilityName, startTime, endTime);
-        } catch (FacilityNotFoundException e) {
-            e.printStackTrace();
-            throw e;
-        }
+        TimeSlot timeSlot = new TimeSlot(toMinuteOfDay(startDatetimeSplit), toMinuteOfDay(endDatetimeSplit));
+        return createValidatedBooking(facilityName, day, timeSlot, clientId, transport);
     }
 
     @Override
-    public String createBooking(String facilityName, String startDateTime, String endDateTime, String clientId, DatagramSocket serverSocket)
+    public String createBooking(String facilityName, int day, int startMinute, int endMinute, String clientId)
             throws TimingUnavailableException, FacilityNotFoundException, InvalidDatetimeException, ParseException
     {
-        if (!isBookingDatetimeValid(startDateTime, endDateTime)) throw new InvalidDatetimeException("Invalid start or end datetime");
-        String[] startDatetimeSplit = startDateTime.split("/");
-        String[] endDatetimeSplit = endDateTime.split("/");
-        int day = Integer.parseInt(startDatetimeSplit[0]);
+        return createBooking(facilityName, day, startMinute, endMinute, clientId, null);
+    }
 
-        String startTime = startDatetimeSplit[1] + startDatetimeSplit[2];
-        String endTime = endDatetimeSplit[1] +  endDatetimeSplit[2];
-        try {
-            List<IBooking> sortedBookings = serverDB.getSortedBookingsByDay(facilityName, day);
-            TimeSlot timeSlot = new TimeSlot(startTime, endTime);
-            if (!isTimingAvailable(sortedBookings, timeSlot)) {
-                throw new TimingUnavailableException("Other bookings exist at this timeslot");
-            }
-            return serverDB.createBooking(day, clientId, facilityName, startTime, endTime, serverSocket);
-        } catch (FacilityNotFoundException e) {
-            e.printStackTrace();
-            throw e;
-        }
+    @Override
+    public String createBooking(String facilityName, int day, int startMinute, int endMinute, String clientId, IDatagramTransport transport)
+            throws TimingUnavailableException, FacilityNotFoundException, InvalidDatetimeException, ParseException
+    {
+        if (!isBookingTimeValid(day, startMinute, endMinute)) throw new InvalidDatetimeException("Invalid start or end time");
+        return createValidatedBooking(facilityName, day, new TimeSlot(startMinute, endMinute), clientId, transport);
     }
 
     @Override
     public void updateBooking(String confirmationId, String clientId, int offset)
             throws TimingUnavailableException, BookingNotFoundException, InvalidDatetimeException, WrongClientIdException, ParseException
     {
-        String[] bookingInfo = confirmationId.split(IBooking.confirmationIdSeparator);
-        String facilityName = bookingInfo[2];
-        int day = retrieveDayInt(bookingInfo[1]);
-        try {
-            List<IBooking> sortedBookings = serverDB.getSortedBookingsByDay(facilityName, day);
-            IBooking bookingToUpdate = serverDB.getBookingByConfirmationId(confirmationId, facilityName);
-
-            if(!bookingToUpdate.getClientId().equals(clientId)){
-                throw new WrongClientIdException("Client ID is wrong");
-            }
-
-            TimeSlot oldTimeSlot = bookingToUpdate.getTimeSlot();
-            TimeSlot newTimeSlot = oldTimeSlot.offSetTimeSlot(offset);
-
-            if (!isTimingAvailable(sortedBookings, bookingToUpdate, newTimeSlot)) {
-                throw new TimingUnavailableException("Other bookings exist at new timeslot");
-            }
-            serverDB.updateBooking(confirmationId, facilityName, newTimeSlot.getStartTime(), newTimeSlot.getEndTime());
-        } catch (FacilityNotFoundException e) {
-            e.printStackTrace();
-            throw new BookingNotFoundException(e.getMessage());
-        }
+        updateBooking(confirmationId, clientId, offset, null);
     }
 
     @Override
-    public void updateBooking(String confirmationId, String clientId, int offset, DatagramSocket serverSocket)
+    public void updateBooking(String confirmationId, String clientId, int offset, IDatagramTransport transport)
             throws TimingUnavailableException, BookingNotFoundException, InvalidDatetimeException, WrongClientIdException, ParseException
     {
         String[] bookingInfo = confirmationId.split(IBooking.confirmationIdSeparator);
         String facilityName = bookingInfo[2];
         int day = retrieveDayInt(bookingInfo[1]);
+        FacilityUpdate update;
+        synchronized (getFacilityLock(facilityName)) {
+            update = updateValidatedBooking(confirmationId, clientId, offset, facilityName, day);
+        }
         try {
-            List<IBooking> sortedBookings = serverDB.getSortedBookingsByDay(facilityName, day);
-            IBooking bookingToUpdate = serverDB.getBookingByConfirmationId(confirmationId, facilityName);
-
-            if(!bookingToUpdate.getClientId().equals(clientId)){
-                throw new WrongClientIdException("Client ID is wrong");
-            }
-
-            TimeSlot oldTimeSlot = bookingToUpdate.getTimeSlot();
-            TimeSlot newTimeSlot = oldTimeSlot.offSetTimeSlot(offset);
-
-            if (!isTimingAvailable(sortedBookings, bookingToUpdate, newTimeSlot)) {
-                throw new TimingUnavailableException("Other bookings exist at new timeslot");
-            }
-            serverDB.updateBooking(confirmationId, facilityName, newTimeSlot.getStartTime(), newTimeSlot.getEndTime(), serverSocket);
+            updateObservingClients(update, transport);
         } catch (FacilityNotFoundException e) {
-            e.printStackTrace();
             throw new BookingNotFoundException(e.getMessage());
         }
     }
@@ -130,7 +106,17 @@ public class FacilitiesBookingSystem implements IBookingSystem {
         try {
             return serverDB.getAvailability(facilityName, days);
         } catch (FacilityNotFoundException e) {
-            e.printStackTrace();
+            log.debug("facility.notFound", "facility", facilityName);
+            throw e;
+        }
+    }
+
+    @Override
+    public String getSnapshot(String facilityName) throws FacilityNotFoundException {
+        try {
+            return serverDB.getSnapshot(facilityName);
+        } catch (FacilityNotFoundException e) {
+            log.debug("facility.notFound", "facility", facilityName);
             throw e;
         }
     }
@@ -152,23 +138,87 @@ public class FacilitiesBookingSystem implements IBookingSystem {
     }
 
     /**
-     * Returns if a booking between the start and end time can be created
+     * Creates a booking once its day and times have been validated
+     * @param transport: the transport to update observing clients with, or null to not send updates
+     */
+    private String createValidatedBooking(String facilityName, int day, TimeSlot timeSlot, String clientId,
+                                          IDatagramTransport transport)
+            throws TimingUnavailableException, FacilityNotFoundException
+    {
+        FacilityUpdate update;
+        synchronized (getFacilityLock(facilityName)) {
+            update = createBookingIfAvailable(facilityName, day, timeSlot, clientId);
+        }
+        updateObservingClients(update, transport);
+        return update.getConfirmationId();
+    }
+
+    /**
+     * Must be called holding the facility's lock, see getFacilityLock
+     * @return the change to send observing clients, once the lock is released
+     */
+    private FacilityUpdate createBookingIfAvailable(String facilityName, int day, TimeSlot timeSlot, String clientId)
+            throws TimingUnavailableException, FacilityNotFoundException
+    {
+        try {
+            if (serverDB.overlapsBooking(facilityName, day, timeSlot, null)) {
+                throw new TimingUnavailableException("Other bookings exist at this timeslot");
+            }
+            return serverDB.recordBooking(day, clientId, facilityName, timeSlot);
+        } catch (FacilityNotFoundException e) {
+            log.debug("facility.notFound", "facility", facilityName);
+            throw e;
+        }
+    }
+
+    /**
+     * Shifts a booking by offset minutes if the new time slot is free
+     * Must be called holding the facility's lock, see getFacilityLock
+     * @return the change to send observing clients, once the lock is released
      */
-    private boolean isTimingAvailable(List<IBooking> sortedBookings, TimeSlot newTimeSlot) throws ParseException {
-        List<IBooking> sortedBookingsCopy = new ArrayList<>(sortedBookings); // Make a copy so that we do not manipulate the original list
-        List<TimeSlot> availabilityList = SharedUtil.getAvailabilityList(sortedBookingsCopy);
-        return (SharedUtil.checkIfTimeSlotInsertable(availabilityList, newTimeSlot));
+    private FacilityUpdate updateValidatedBooking(String confirmationId, String clientId, int offset, String facilityName,
+                                                  int day)
+            throws TimingUnavailableException, BookingNotFoundException, InvalidDatetimeException, WrongClientIdException
+    {
+        try {
+            IBooking bookingToUpdate = serverDB.getBookingByConfirmationId(confirmationId, facilityName);
+
+            if(!bookingToUpdate.getClientId().equals(clientId)){
+                throw new WrongClientIdException("Client ID is wrong");
+            }
+
+            TimeSlot oldTimeSlot = bookingToUpdate.getTimeSlot();
+            TimeSlot newTimeSlot = oldTimeSlot.offSetTimeSlot(offset);
+
+            if (!newTimeSlot.isValidTimeSlot()) {
+                throw new InvalidDatetimeException("Booking cannot be moved past midnight");
+            }
+            if (serverDB.overlapsBooking(facilityName, day, newTimeSlot, bookingToUpdate)) {
+                throw new TimingUnavailableException("Other bookings exist at new timeslot");
+            }
+            return serverDB.recordMove(confirmationId, facilityName, newTimeSlot);
+        } catch (FacilityNotFoundException e) {
+            log.debug("facility.notFound", "facility", facilityName, "confirmationId", confirmationId);
+            throw new BookingNotFoundException(e.getMessage());
+        }
     }
+
     /**
-     * Returns if a booking between the start and end time can be updated
+     * Must be called without the facility's lock held, so observers are sent the change without holding up bookings
+     * @param transport: the transport to update observing clients with, or null to not send updates
      */
-    private boolean isTimingAvailable(List<IBooking> sortedBookings, IBooking bookingToUpdate, TimeSlot newTimeSlot) throws ParseException {
-        List<IBooking> sortedBookingsCopy = new ArrayList<>(sortedBookings); // Make a copy so that we do not manipulate the original list
-        sortedBookingsCopy.remove(bookingToUpdate);
-        List<TimeSlot> availabilityList = SharedUtil.getAvailabilityList(sortedBookingsCopy);
-        return (SharedUtil.checkIfTimeSlotInsertable(availabilityList, newTimeSlot));
+    private void updateObservingClients(FacilityUpdate update, IDatagramTransport transport) throws FacilityNotFoundException {
+        if (transport == null) return;
+        serverDB.updateObservingClients(update, transport);
     }
 
+    /**
+     * Lock held while checking that a time slot of a facility is free and booking it
+     * Facilities share a fixed number of locks, so names that are not facilities cannot grow the lock table
+     */
+    private Object getFacilityLock(String facilityName) {
+        return facilityLocks[(facilityName.hashCode() & 0x7FFFFFFF) % facilityLocks.length];
+    }
 
     private boolean isBookingDatetimeValid(String startDatetime, String endDatetime) {
         String[] startDatetimeSplit = startDatetime.split("/");
@@ -177,14 +227,27 @@ public class FacilitiesBookingSystem implements IBookingSystem {
         return isStartAndEndTimeValid(startDatetimeSplit, endDatetimeSplit);
     }
 
+    private boolean isBookingTimeValid(int day, int startMinute, int endMinute) {
+        boolean isDayValid = day >= 0 && day <= 6;
+        boolean isStartValid = startMinute >= 0 && startMinute < 24 * 60;
+        boolean isEndValid = endMinute >= 0 && endMinute < 24 * 60;
+        return isDayValid && isStartValid && isEndValid && startMinute < endMinute;
+    }
+
     private boolean isStartAndEndTimeValid(String[] startDatetime, String[] endDatetime) {
         boolean isSameDay = Integer.parseInt(startDatetime[0]) == Integer.parseInt(endDatetime[0]);
-        int startTime = Integer.parseInt(startDatetime[1] + startDatetime[2]);
-        int endTime = Integer.parseInt(endDatetime[1] + endDatetime[2]);
-        boolean isStartEarlier = startTime < endTime;
+        boolean isStartEarlier = toMinuteOfDay(startDatetime) < toMinuteOfDay(endDatetime);
         return (isSameDay && isStartEarlier);
     }
 
+    /**
+     * @param datetime: a datetime split into its day, hour and minute
+     * @return the minutes from the start of the day
+     */
+    private int toMinuteOfDay(String[] datetime) {
+        return Integer.parseInt(datetime[1]) * 60 + Integer.parseInt(datetime[2]);
+    }
+
     private boolean isDatetimeValid(String[] datetime) {
         if (datetime.length != 3) return false;
         return (
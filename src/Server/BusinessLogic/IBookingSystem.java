@@ -1,8 +1,8 @@
 package Server.BusinessLogic;
 
 import Server.Exceptions.*;
+import Server.Transport.IDatagramTransport;
 
-import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.text.ParseException;
 import java.util.List;
@@ -29,14 +29,47 @@ public interface IBookingSystem {
      * @param startDateTime: the start datetime in the form D/HH/mm
      * @param endDateTime: the end datetime in the form D/HH/mm
      * @param clientId: the clientId of the client who requested the booking
-     * @param serverSocket: the socket of the server to send updates to the observing clients
+     * @param transport: the transport of the server to send updates to the observing clients
      * @return the confirmation id of the booking
      * @throws TimingUnavailableException if the time slot is already booked or if the start time and end time are on different days
      * @throws FacilityNotFoundException if the facility name provided does not exist in the database
      * @throws InvalidDatetimeException if the start datetime or the end datetime is not in the format D/HH/mm,
      * with 0 <= D < 8, 0 <= HH < 24, 0 <= mm < 60, or if the end time is earlier than the start time
      */
-    String createBooking(String facilityName, String startDateTime, String endDateTime, String clientId, DatagramSocket serverSocket)
+    String createBooking(String facilityName, String startDateTime, String endDateTime, String clientId, IDatagramTransport transport)
+            throws TimingUnavailableException, FacilityNotFoundException, InvalidDatetimeException, ParseException;
+
+    /**
+     * An overloaded method to create a booking from a typed request, without parsing datetime strings
+     * @param facilityName: the name of the facility to book
+     * @param day: the day of the booking, 0 - Sunday, 6 - Saturday
+     * @param startMinute: the start time in minutes from the start of the day
+     * @param endMinute: the end time in minutes from the start of the day
+     * @param clientId: the clientId of the client who requested the booking
+     * @return the confirmation id of the booking
+     * @throws TimingUnavailableException if the time slot is already booked
+     * @throws FacilityNotFoundException if the facility name provided does not exist in the database
+     * @throws InvalidDatetimeException if the day is not between 0 and 6, if the times are not between 0 and 1439,
+     * or if the end time is not later than the start time
+     */
+    String createBooking(String facilityName, int day, int startMinute, int endMinute, String clientId)
+            throws TimingUnavailableException, FacilityNotFoundException, InvalidDatetimeException, ParseException;
+
+    /**
+     * An overloaded method to create a booking from a typed request and update the observing clients of the facility
+     * @param facilityName: the name of the facility to book
+     * @param day: the day of the booking, 0 - Sunday, 6 - Saturday
+     * @param startMinute: the start time in minutes from the start of the day
+     * @param endMinute: the end time in minutes from the start of the day
+     * @param clientId: the clientId of the client who requested the booking
+     * @param transport: the transport of the server to send updates to the observing clients
+     * @return the confirmation id of the booking
+     * @throws TimingUnavailableException if the time slot is already booked
+     * @throws FacilityNotFoundException if the facility name provided does not exist in the database
+     * @throws InvalidDatetimeException if the day is not between 0 and 6, if the times are not between 0 and 1439,
+     * or if the end time is not later than the start time
+     */
+    String createBooking(String facilityName, int day, int startMinute, int endMinute, String clientId, IDatagramTransport transport)
             throws TimingUnavailableException, FacilityNotFoundException, InvalidDatetimeException, ParseException;
 
     /**
@@ -56,12 +89,12 @@ public interface IBookingSystem {
      * @param confirmationId: the confirmation id of an existing, confirmed booking
      * @param clientId: clientId to check if the confirmation id belongs to the client
      * @param offset: the offset in minutes to shift the booking time. Negative values shift the booking earlier, positive values shift it later
-     * @param serverSocket: the socket of the server to send updates to the observing clients
+     * @param transport: the transport of the server to send updates to the observing clients
      * @throws TimingUnavailableException if the time slot is already booked, or if the offset causes the booking to be shifted to a different day
      * @throws BookingNotFoundException if the confirmation id provided does not exist in the database
      * @throws InvalidDatetimeException if the offset causes the new start datetime or new end datetime to move to a new day
      */
-    void updateBooking(String confirmationId, String clientId, int offset, DatagramSocket serverSocket)
+    void updateBooking(String confirmationId, String clientId, int offset, IDatagramTransport transport)
             throws TimingUnavailableException, BookingNotFoundException, InvalidDatetimeException, WrongClientIdException, ParseException;
 
     /**
@@ -72,6 +105,14 @@ public interface IBookingSystem {
      * */
     String getAvailability(String facilityName, List<Integer> days) throws FacilityNotFoundException, ParseException;
 
+    /**
+     * Gets the availability of the whole week, for an observer that missed an update
+     * @param facilityName: the facility that the client is observing
+     * @return a string in the form "Snapshot #N facility: availability", where N is the number of the last update included
+     * @throws FacilityNotFoundException if the facility name provided does not exist
+     */
+    String getSnapshot(String facilityName) throws FacilityNotFoundException;
+
     /**
      * Adds the client to the facility to observe any updates for the given duration
      * @param facilityName: the name of the facility
@@ -1,10 +1,12 @@
 package Server.DataAccess;
 
+import Server.Entities.Concrete.FacilityUpdate;
+import Server.Entities.Concrete.TimeSlot;
 import Server.Entities.IBooking;
 import Server.Exceptions.BookingNotFoundException;
 import Server.Exceptions.FacilityNotFoundException;
+import Server.Transport.IDatagramTransport;
 
-import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.text.ParseException;
 import java.util.List;
@@ -29,11 +31,34 @@ public interface IServerDB {
      * @param facilityName: the name of the facility to book
      * @param startTime: the start time in HH:mm
      * @param endTime: the end time in HH:mm
-     * @param serverSocket: the socket of the server to send updates to the observing clients
+     * @param transport: the transport of the server to send updates to the observing clients
      * @return the confirmation id of the booking created
      * @throws FacilityNotFoundException when the facility name provided is not found
      */
-    String createBooking(int day, String clientId, String facilityName, String startTime, String endTime, DatagramSocket serverSocket) throws FacilityNotFoundException;
+    String createBooking(int day, String clientId, String facilityName, String startTime, String endTime, IDatagramTransport transport) throws FacilityNotFoundException;
+
+    /**
+     * Creates a booking for a given day for a given facility in the given time slot
+     * @param day: the int value of the enumerated days
+     * @param clientId: the client id string
+     * @param facilityName: the name of the facility to book
+     * @param timeSlot: the start and end time of the booking
+     * @param transport: the transport of the server to send updates to the observing clients, or null to not send updates
+     * @return the confirmation id of the booking created
+     * @throws FacilityNotFoundException when the facility name provided is not found
+     */
+    String createBooking(int day, String clientId, String facilityName, TimeSlot timeSlot, IDatagramTransport transport) throws FacilityNotFoundException;
+
+    /**
+     * Creates a booking in the given time slot without updating the observing clients, see updateObservingClients
+     * @param day: the int value of the enumerated days
+     * @param clientId: the client id string
+     * @param facilityName: the name of the facility to book
+     * @param timeSlot: the start and end time of the booking
+     * @return the numbered change, with the confirmation id of the booking created
+     * @throws FacilityNotFoundException when the facility name provided is not found
+     */
+    FacilityUpdate recordBooking(int day, String clientId, String facilityName, TimeSlot timeSlot) throws FacilityNotFoundException;
 
     /**
      * Updates a booking given an existing confirmation id and the new start and end times
@@ -52,11 +77,41 @@ public interface IServerDB {
      * @param facilityName: the name of the facility
      * @param newStartTime: the new start time in HH:mm
      * @param newEndTime: the new end time in HH:mm
-     * @param serverSocket: the socket of the server to send updates to the observing clients
+     * @param transport: the transport of the server to send updates to the observing clients
+     * @throws FacilityNotFoundException if the facility name is not found in the database
+     * @throws BookingNotFoundException when the confirmation id is not found in the facility
+     */
+    void updateBooking(String confirmationId, String facilityName, String newStartTime, String newEndTime, IDatagramTransport transport) throws FacilityNotFoundException, BookingNotFoundException;
+
+    /**
+     * Moves a booking given an existing confirmation id to a new time slot
+     * @param confirmationId: confirmation id of an existing, confirmed booking
+     * @param facilityName: the name of the facility
+     * @param newTimeSlot: the new start and end time of the booking
+     * @param transport: the transport of the server to send updates to the observing clients, or null to not send updates
      * @throws FacilityNotFoundException if the facility name is not found in the database
      * @throws BookingNotFoundException when the confirmation id is not found in the facility
      */
-    void updateBooking(String confirmationId, String facilityName, String newStartTime, String newEndTime, DatagramSocket serverSocket) throws FacilityNotFoundException, BookingNotFoundException;
+    void updateBooking(String confirmationId, String facilityName, TimeSlot newTimeSlot, IDatagramTransport transport) throws FacilityNotFoundException, BookingNotFoundException;
+
+    /**
+     * Moves a booking to a new time slot without updating the observing clients, see updateObservingClients
+     * @param confirmationId: confirmation id of an existing, confirmed booking
+     * @param facilityName: the name of the facility
+     * @param newTimeSlot: the new start and end time of the booking
+     * @return the numbered change
+     * @throws FacilityNotFoundException if the facility name is not found in the database
+     * @throws BookingNotFoundException when the confirmation id is not found in the facility
+     */
+    FacilityUpdate recordMove(String confirmationId, String facilityName, TimeSlot newTimeSlot) throws FacilityNotFoundException, BookingNotFoundException;
+
+    /**
+     * Sends the observing clients of the update's facility a change made by recordBooking or recordMove
+     * @param update: the change to send
+     * @param transport: the transport of the server to send updates to the observing clients
+     * @throws FacilityNotFoundException if the update's facility is not found in the database
+     */
+    void updateObservingClients(FacilityUpdate update, IDatagramTransport transport) throws FacilityNotFoundException;
 
     /**
      * Retrieves a booking from a given facility using the confirmation id
@@ -77,6 +132,17 @@ public interface IServerDB {
      */
     List<IBooking> getSortedBookingsByDay(String facilityName, int day) throws FacilityNotFoundException;
 
+    /**
+     * Checks whether a time slot of the given facility is free to book
+     * @param facilityName: the name of the facility
+     * @param day: the int code of the days enum
+     * @param timeSlot: the time slot to check, start and end inclusive
+     * @param ignoredBooking: a booking to leave out, e.g. the one being moved to the time slot, or null
+     * @return true if any booking other than ignoredBooking holds a minute of the time slot
+     * @throws FacilityNotFoundException if the facility name does not exist
+     */
+    boolean overlapsBooking(String facilityName, int day, TimeSlot timeSlot, IBooking ignoredBooking) throws FacilityNotFoundException;
+
     /**
      * Retrieves the facility names stored in the database
      * @return a list of facility names
@@ -91,6 +157,15 @@ public interface IServerDB {
      */
     String getAvailability(String facilityName, List<Integer> days) throws FacilityNotFoundException, ParseException;
 
+    /**
+     * Retrieves facility through the given name and gets its availability for the whole week, for observers
+     * that missed an update
+     * @param facilityName: the name of the facility
+     * @return a string in the form "Snapshot #N facility: availability", where N is the number of the last update included
+     * @throws FacilityNotFoundException if the facility is not found
+     */
+    String getSnapshot(String facilityName) throws FacilityNotFoundException;
+
     /**
      * Adds a client to the facility's update list
      * @param facilityName: the name of the facility
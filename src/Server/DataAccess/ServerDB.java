@@ -1,27 +1,47 @@
 package Server.DataAccess;
 
+import Server.Entities.Concrete.BitmapFacility;
 import Server.Entities.Concrete.Facility;
+import Server.Entities.Concrete.FacilityUpdate;
+import Server.Entities.Concrete.TimeSlot;
 import Server.Entities.IBookable;
 import Server.Entities.IBooking;
 import Server.Exceptions.BookingNotFoundException;
 import Server.Exceptions.FacilityNotFoundException;
+import Server.Transport.IDatagramTransport;
 
-import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Safe to use from several worker threads at once
+ * The facilities table is only written while it is created, and each facility guards its own bookings
+ */
 public class ServerDB implements IServerDB {
+    public static final String DEFAULT_BITMAP_FACILITY_TYPES = "Badminton Court";
+
     // Hashmap of facility names to booking
-    private HashMap<String, IBookable> facilities;
+    private final HashMap<String, IBookable> facilities;
     // Hashmap of confirmationId to day of booking. Used to improve retrieval speed of booking day
-    private HashMap<String, Integer> bookingsByDay;
+    private final ConcurrentHashMap<String, Integer> bookingsByDay;
 
     public ServerDB() {
-        facilities = createFacilitiesTable();
-        bookingsByDay = new HashMap<>();
+        this(getBitmapFacilityTypesFromSystemProperty());
+    }
+
+    /**
+     * @param bitmapFacilityTypes: the facility types to keep as BitmapFacility, e.g. "Badminton Court"
+     */
+    public ServerDB(Set<String> bitmapFacilityTypes) {
+        facilities = createFacilitiesTable(bitmapFacilityTypes);
+        bookingsByDay = new ConcurrentHashMap<>();
     }
 
     // =====================================
@@ -60,6 +80,15 @@ public class ServerDB implements IServerDB {
         return facility.getAvailability(days);
     }
 
+    @Override
+    public String getSnapshot(String facilityName) throws FacilityNotFoundException {
+        if (!facilities.containsKey(facilityName)) {
+            throw new FacilityNotFoundException("Facility does not exist");
+        }
+        Facility facility = (Facility) facilities.get(facilityName);
+        return facility.getSnapshot();
+    }
+
     @Override
     public void addObservingClient(String facilityName, InetAddress clientAddress, int clientPort, long expirationTimestamp) throws FacilityNotFoundException {
         if (!facilities.containsKey(facilityName)) {
@@ -72,32 +101,60 @@ public class ServerDB implements IServerDB {
     @Override
     public String createBooking(int day, String clientId, String facilityName, String startTime, String endTime)
             throws FacilityNotFoundException
+    {
+        return createBooking(day, clientId, facilityName, new TimeSlot(startTime, endTime), null);
+    }
+
+    @Override
+    public String createBooking(int day, String clientId, String facilityName, String startTime, String endTime, IDatagramTransport transport)
+            throws FacilityNotFoundException
+    {
+        return createBooking(day, clientId, facilityName, new TimeSlot(startTime, endTime), transport);
+    }
+
+    @Override
+    public String createBooking(int day, String clientId, String facilityName, TimeSlot timeSlot, IDatagramTransport transport)
+            throws FacilityNotFoundException
     {
         if (!facilities.containsKey(facilityName)) {
             throw new FacilityNotFoundException("Facility does not exist");
         }
         IBookable facility = facilities.get(facilityName);
-        String confirmationId = facility.addBooking(day, clientId, startTime, endTime);
+        String confirmationId = facility.addBooking(day, clientId, timeSlot, transport);
         bookingsByDay.put(confirmationId, day);
         return confirmationId;
     }
 
     @Override
-    public String createBooking(int day, String clientId, String facilityName, String startTime, String endTime, DatagramSocket serverSocket)
+    public FacilityUpdate recordBooking(int day, String clientId, String facilityName, TimeSlot timeSlot)
             throws FacilityNotFoundException
     {
         if (!facilities.containsKey(facilityName)) {
             throw new FacilityNotFoundException("Facility does not exist");
         }
         IBookable facility = facilities.get(facilityName);
-        String confirmationId = facility.addBooking(day, clientId, startTime, endTime, serverSocket);
-        bookingsByDay.put(confirmationId, day);
-        return confirmationId;
+        FacilityUpdate update = facility.recordBooking(day, clientId, timeSlot);
+        bookingsByDay.put(update.getConfirmationId(), day);
+        return update;
     }
 
     @Override
     public void updateBooking(String confirmationId, String facilityName, String newStartTime, String newEndTime)
             throws FacilityNotFoundException, BookingNotFoundException
+    {
+        updateBooking(confirmationId, facilityName, newStartTime, newEndTime, null);
+    }
+
+    @Override
+    public void updateBooking(String confirmationId, String facilityName, String newStartTime, String newEndTime, IDatagramTransport transport)
+            throws FacilityNotFoundException, BookingNotFoundException
+    {
+        updateBooking(confirmationId, facilityName, new TimeSlot(newStartTime, newEndTime), transport);
+    }
+
+    @Override
+    public void updateBooking(String confirmationId, String facilityName, TimeSlot newTimeSlot, IDatagramTransport transport)
+            throws FacilityNotFoundException, BookingNotFoundException
     {
         if (!facilities.containsKey(facilityName)) {
             throw new FacilityNotFoundException("Facility does not exist");
@@ -107,11 +164,11 @@ public class ServerDB implements IServerDB {
         }
         IBookable facility = facilities.get(facilityName);
         int day = bookingsByDay.get(confirmationId);
-        facility.updateBooking(day, confirmationId, newStartTime, newEndTime);
+        facility.updateBooking(day, confirmationId, newTimeSlot, transport);
     }
 
     @Override
-    public void updateBooking(String confirmationId, String facilityName, String newStartTime, String newEndTime, DatagramSocket serverSocket)
+    public FacilityUpdate recordMove(String confirmationId, String facilityName, TimeSlot newTimeSlot)
             throws FacilityNotFoundException, BookingNotFoundException
     {
         if (!facilities.containsKey(facilityName)) {
@@ -122,7 +179,15 @@ public class ServerDB implements IServerDB {
         }
         IBookable facility = facilities.get(facilityName);
         int day = bookingsByDay.get(confirmationId);
-        facility.updateBooking(day, confirmationId, newStartTime, newEndTime, serverSocket);
+        return facility.recordMove(day, confirmationId, newTimeSlot);
+    }
+
+    @Override
+    public void updateObservingClients(FacilityUpdate update, IDatagramTransport transport) throws FacilityNotFoundException {
+        if (!facilities.containsKey(update.getFacilityName())) {
+            throw new FacilityNotFoundException("Facility does not exist");
+        }
+        facilities.get(update.getFacilityName()).updateObservingClients(transport, update);
     }
 
     @Override
@@ -145,20 +210,49 @@ public class ServerDB implements IServerDB {
         return facility.getBookingsSorted(day);
     }
 
+    @Override
+    public boolean overlapsBooking(String facilityName, int day, TimeSlot timeSlot, IBooking ignoredBooking)
+            throws FacilityNotFoundException
+    {
+        if (!facilities.containsKey(facilityName)) {
+            throw new FacilityNotFoundException("Facility does not exist");
+        }
+        IBookable facility = facilities.get(facilityName);
+        return facility.overlapsBooking(day, timeSlot, ignoredBooking);
+    }
+
 
     // =====================================
     // Private methods
     // =====================================
-    private HashMap<String, IBookable> createFacilitiesTable() {
+    /**
+     * Facilities of the types in bitmapFacilityTypes, which are booked densely in short blocks, are created as
+     * BitmapFacility, and the others as Facility
+     */
+    private HashMap<String, IBookable> createFacilitiesTable(Set<String> bitmapFacilityTypes) {
         HashMap<String, IBookable> facilities = new HashMap<>();
         List<String[]> allFacilityInfo = getFacilityInfo();
         for (String[] facilityInfo : allFacilityInfo) {
             String facilityName = facilityInfo[0];
             String facilityType = facilityInfo[1];
-            IBookable facility = new Facility(facilityName, facilityType);
+            IBookable facility = bitmapFacilityTypes.contains(facilityType)
+                    ? new BitmapFacility(facilityName, facilityType)
+                    : new Facility(facilityName, facilityType);
             facilities.put(facilityName, facility);
         }
         return facilities;
     }
 
+    /**
+     * Reads -Dserver.bitmapFacilityTypes, a comma separated list of facility types, by default "Badminton Court"
+     */
+    private static Set<String> getBitmapFacilityTypesFromSystemProperty() {
+        String types = System.getProperty("server.bitmapFacilityTypes", DEFAULT_BITMAP_FACILITY_TYPES);
+        Set<String> bitmapFacilityTypes = new HashSet<>();
+        for (String type : Arrays.asList(types.split(","))) {
+            if (!type.trim().isEmpty()) bitmapFacilityTypes.add(type.trim());
+        }
+        return bitmapFacilityTypes;
+    }
+
 }
@@ -1,50 +1,34 @@
 package Server.Entities;
 
 import Server.Entities.Concrete.ObservationSession;
+import Server.Logging.Logger;
+import Server.Transport.IDatagramTransport;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.PriorityQueue;
 
 public abstract class AbstractFacility implements IObservable {
+    private static final Logger log = Logger.getLogger(AbstractFacility.class);
     public final String CLIENT_ADDRESS_SEPARATOR = "&=";
     private String facilityName;
     private PriorityQueue<ObservationSession> observationSessions;
 
     @Override
-    public void addObservationSession(InetAddress clientAddress, int clientPort, long expirationTimeStamp) {
+    public synchronized void addObservationSession(InetAddress clientAddress, int clientPort, long expirationTimeStamp) {
         String client = clientAddress.getHostAddress() + CLIENT_ADDRESS_SEPARATOR + clientPort;
         ObservationSession session = new ObservationSession(expirationTimeStamp, client);
         observationSessions.add(session);
     }
 
     @Override
-    public void sendUpdateToObservingClients(DatagramSocket socket) throws IOException {
-        /* Set up variables
-        ioExceptCaught: indicates if IOException was thrown
-        updateInfoByteBuffer: update message string in byte format
-         */
-        boolean ioExceptCaught = false;
+    public void sendUpdateToObservingClients(IDatagramTransport transport) throws IOException {
         String updateMessage = getServerReplyString();
-        byte[] updateInfoByteBuffer = updateMessage.getBytes();
-
-        /*
-        - Remove expired observations based on current timestamp
-        - Iterate through priority queue and send message to clients
-        - If IOException caught, rethrow at end of function
-         */
-        removeExpiredObservationSessions();
-        for (ObservationSession clientSession : observationSessions) {
-            try {
-                sendMessageTo(socket, clientSession.getClient(), updateInfoByteBuffer);
-            } catch (IOException e) {
-                ioExceptCaught = true;
-                System.out.println("Failed to send to: " + clientSession.getClient());
-            }
-        }
-        if (ioExceptCaught) throw new IOException();
+        sendToObservingClients(transport, updateMessage.getBytes());
     }
 
     // =====================================
@@ -73,7 +57,7 @@ public abstract class AbstractFacility implements IObservable {
     // =====================================
     // Protected methods
     // =====================================
-    protected void removeExpiredObservationSessions() {
+    protected synchronized void removeExpiredObservationSessions() {
         /* Removes expired observation sessions
         - Min heap based on expiry timestamp is used to form queue
         - While queue is not empty and head of queue is expired, remove head of queue
@@ -83,13 +67,45 @@ public abstract class AbstractFacility implements IObservable {
         }
     }
 
-    protected void sendMessageTo(DatagramSocket socket, String client, byte[] updateInfo) throws IOException {
+    /**
+     * Removes expired observation sessions and copies the rest, so that updates can be sent
+     * without holding the facility's monitor
+     * @return the sessions that have not expired
+     */
+    protected synchronized List<ObservationSession> getActiveObservationSessions() {
+        removeExpiredObservationSessions();
+        return new ArrayList<>(observationSessions);
+    }
+
+    /**
+     * Sends the same message to every observing client
+     * @param message: the message to send. Must not be modified while it is being sent
+     * @throws IOException if the message could not be sent to some of the clients, after trying all of them
+     */
+    protected void sendToObservingClients(IDatagramTransport transport, byte[] message) throws IOException {
+        /*
+        - Remove expired observations based on current timestamp
+        - Iterate through priority queue and send message to clients
+        - If IOException caught, rethrow at end of function
+         */
+        boolean ioExceptCaught = false;
+        for (ObservationSession clientSession : getActiveObservationSessions()) {
+            try {
+                sendMessageTo(transport, clientSession.getClient(), message);
+            } catch (IOException e) {
+                ioExceptCaught = true;
+                log.warn("observer.sendFailed", "client", clientSession.getClient(), "facility", facilityName);
+            }
+        }
+        if (ioExceptCaught) throw new IOException();
+    }
+
+    protected void sendMessageTo(IDatagramTransport transport, String client, byte[] updateInfo) throws IOException {
         String[] clientInfo = client.split(CLIENT_ADDRESS_SEPARATOR);
         assert (clientInfo.length == 2);
         InetAddress clientAddress = InetAddress.getByName(clientInfo[0]);
         int clientPort = Integer.parseInt(clientInfo[1]);
 
-        DatagramPacket message = new DatagramPacket(updateInfo, updateInfo.length, clientAddress, clientPort);
-        socket.send(message);
+        transport.send(ByteBuffer.wrap(updateInfo), new InetSocketAddress(clientAddress, clientPort));
     }
 }
@@ -0,0 +1,147 @@
+package Server.Entities.Concrete;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * A facility's availability, computed and rendered once per day and kept until a booking on that day changes
+ * Holds each day's free time slots, each day's part of the availability message, and the whole week's message,
+ * which snapshots for observers are made from. Reads far outnumber bookings, so a repeated query is an array lookup
+ * Not thread safe. Facility uses it under its monitor, and invalidates a day whenever it books or moves a booking on it
+ */
+public class AvailabilityCache {
+    private static final int DAYS = 7;
+
+    private final IntFunction<List<TimeSlot>> computeTimeSlots;
+    private final List<List<TimeSlot>> timeSlots; // Indexed by day, null until computed
+    private final String[] messages;
+    private String weekMessage;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param computeTimeSlots: computes the free time slots of a day in order, when they are not cached
+     */
+    public AvailabilityCache(IntFunction<List<TimeSlot>> computeTimeSlots) {
+        this.computeTimeSlots = computeTimeSlots;
+        this.timeSlots = new ArrayList<>(Collections.nCopies(DAYS, null));
+        this.messages = new String[DAYS];
+    }
+
+    /**
+     * @return the free time slots of the day in order, as a read-only list
+     */
+    public List<TimeSlot> getTimeSlots(int day) {
+        List<TimeSlot> daySlots = timeSlots.get(day);
+        if (daySlots == null) {
+            daySlots = Collections.unmodifiableList(computeTimeSlots.apply(day));
+            timeSlots.set(day, daySlots);
+        }
+        return daySlots;
+    }
+
+    /**
+     * @return the day's free time slots in the form "D/HH/mm to D/HH/mm, " for each
+     */
+    public String getMessage(int day) {
+        String message = messages[day];
+        if (message != null) {
+            hits++;
+            return message;
+        }
+        misses++;
+        StringBuilder builder = new StringBuilder();
+        for (TimeSlot timeSlot : getTimeSlots(day)) {
+            appendDayTime(builder, day, timeSlot.getStartMinute());
+            builder.append(" to ");
+            appendDayTime(builder, day, timeSlot.getEndMinute());
+            builder.append(", ");
+        }
+        message = builder.toString();
+        messages[day] = message;
+        return message;
+    }
+
+    /**
+     * @param days: the days to include. Each is included once, in order of day, however often and in whatever
+     * order it is given
+     * @return the days' messages one after another
+     */
+    public String getMessage(List<Integer> days) {
+        boolean[] requested = new boolean[DAYS];
+        int firstDay = -1;
+        int dayCount = 0;
+        for (int day : days) {
+            if (requested[day]) continue;
+            requested[day] = true;
+            dayCount++;
+            if (firstDay < 0 || day < firstDay) firstDay = day;
+        }
+        if (dayCount == 0) return "";
+        if (dayCount == 1) return getMessage(firstDay);
+        if (dayCount == DAYS) return getWeekMessage();
+        StringBuilder message = new StringBuilder();
+        for (int day = 0; day < DAYS; day++) {
+            if (requested[day]) message.append(getMessage(day));
+        }
+        return message.toString();
+    }
+
+    /**
+     * @return every day's message one after another
+     */
+    public String getWeekMessage() {
+        if (weekMessage == null) {
+            StringBuilder message = new StringBuilder();
+            for (int day = 0; day < DAYS; day++) {
+                message.append(getMessage(day));
+            }
+            weekMessage = message.toString();
+        }
+        return weekMessage;
+    }
+
+    /**
+     * Drops everything cached for the day, to be computed again on the next read
+     */
+    public void invalidate(int day) {
+        timeSlots.set(day, null);
+        messages[day] = null;
+        weekMessage = null;
+    }
+
+    // =====================================
+    // Getters
+    // =====================================
+
+    /**
+     * @return the number of day messages read from the cache
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of day messages rendered because they were not cached
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    // =====================================
+    // Private methods
+    // =====================================
+
+    /**
+     * Appends a day and minute of the day in the form "D/HH/mm"
+     */
+    private static void appendDayTime(StringBuilder message, int day, int minuteOfDay) {
+        int hour = minuteOfDay / 60;
+        int minute = minuteOfDay % 60;
+        message.append(day).append('/')
+                .append((char) ('0' + hour / 10)).append((char) ('0' + hour % 10)).append('/')
+                .append((char) ('0' + minute / 10)).append((char) ('0' + minute % 10));
+    }
+}
@@ -0,0 +1,52 @@
+package Server.Entities.Concrete;
+
+import Server.Entities.IBooking;
+
+import java.util.List;
+
+/**
+ * A facility that also keeps an OccupancyBitmap of each day's booked minutes, for facilities booked densely
+ * in short blocks, e.g. badminton courts booked for 30 minutes at a time all day
+ * Conflict checks are masked word tests on the bitmap and availability is a scan for runs of free minutes,
+ * neither of which depends on the number of bookings. Booking records are kept as in Facility
+ * The bitmaps are guarded by the facility's monitor
+ */
+public class BitmapFacility extends Facility {
+    private final OccupancyBitmap[] bitmaps; // One per day
+
+    public BitmapFacility(String facilityName, String facilityType) {
+        super(facilityName, facilityType);
+        bitmaps = new OccupancyBitmap[7];
+        for (int i = 0; i < bitmaps.length; i++) {
+            bitmaps[i] = new OccupancyBitmap();
+        }
+    }
+
+    @Override
+    protected String book(int day, String clientId, TimeSlot timeSlot) {
+        if (bitmaps[day].isBooked(timeSlot)) {
+            throw new IllegalArgumentException("Booking overlaps another at " + timeSlot.getStartTime());
+        }
+        String confirmationId = super.book(day, clientId, timeSlot);
+        bitmaps[day].book(timeSlot);
+        return confirmationId;
+    }
+
+    @Override
+    protected void move(int day, IBooking booking, TimeSlot newTimeSlot) {
+        TimeSlot oldTimeSlot = booking.getTimeSlot();
+        super.move(day, booking, newTimeSlot);
+        bitmaps[day].free(oldTimeSlot);
+        bitmaps[day].book(newTimeSlot);
+    }
+
+    @Override
+    public synchronized boolean overlapsBooking(int day, TimeSlot timeSlot, IBooking ignoredBooking) {
+        return bitmaps[day].isBooked(timeSlot, ignoredBooking == null ? null : ignoredBooking.getTimeSlot());
+    }
+
+    @Override
+    protected List<TimeSlot> getAvailableTimeSlots(int day) {
+        return bitmaps[day].getFreeTimeSlots();
+    }
+}
@@ -5,13 +5,17 @@ import Server.Entities.IBooking;
 public class Booking implements Comparable<Booking>, IBooking {
     private String clientId;
     private String confirmationId;
-    private TimeSlot timeSlot;
+    private volatile TimeSlot timeSlot; // Replaced when the booking is moved, and read without locks
     private int day;
 
     public Booking(String facilityName, String clientId, int day, String startTime, String endTime, int uniqueIdentifier) {
+        this(facilityName, clientId, day, new TimeSlot(startTime, endTime), uniqueIdentifier);
+    }
+
+    public Booking(String facilityName, String clientId, int day, TimeSlot timeSlot, int uniqueIdentifier) {
         this.clientId = clientId;
         this.day = day;
-        this.timeSlot = new TimeSlot(startTime, endTime);
+        this.timeSlot = timeSlot;
         this.confirmationId = generateConfirmationId(facilityName, clientId, uniqueIdentifier);
     }
 
@@ -34,6 +38,14 @@ public class Booking implements Comparable<Booking>, IBooking {
         return this.timeSlot.getEndTime();
     }
 
+    public int getStartMinute() {
+        return this.timeSlot.getStartMinute();
+    }
+
+    public int getEndMinute() {
+        return this.timeSlot.getEndMinute();
+    }
+
     public TimeSlot getTimeSlot() { return this.timeSlot; }
 
     public int getDay() {
@@ -42,35 +54,21 @@ public class Booking implements Comparable<Booking>, IBooking {
 
     @Override
     public int compareTo(Booking otherBooking) {
-        return compare(this.getStartTime(), otherBooking.getStartTime());
+        return this.timeSlot.compareTo(otherBooking.timeSlot);
     }
 
     public void updateStartEndTime(String newStartTime, String newEndTime) {
-        TimeSlot timeSlot = new TimeSlot(newStartTime, newEndTime);
-        this.timeSlot = timeSlot;
+        this.timeSlot = new TimeSlot(newStartTime, newEndTime);
+    }
+
+    public void updateStartEndTime(int newStartMinute, int newEndMinute) {
+        this.timeSlot = new TimeSlot(newStartMinute, newEndMinute);
     }
 
     // =====================================
     // Private methods
     // =====================================
 
-    /**
-     * Compares to time strings to determine if time1 is earlier than time2
-     * @param time1: time in the format HH:mm
-     * @param time2: time in the format HH:mm
-     * @return -ve int if time1 < time2, else +ve
-     */
-    private int compare(String time1, String time2) {
-        int timeOne = Integer.parseInt(time1.replace(":", ""));
-        int timeTwo = Integer.parseInt(time2.replace(":", ""));
-        return isEarlier(timeOne, timeTwo);
-    }
-
-    private int isEarlier(int timeOne, int timeTwo) {
-        return Integer.compareUnsigned(timeOne, timeTwo);
-    }
-
-
     private String generateConfirmationId(String facilityName, String clientId, int uniqueIdentifier) {
         return (
                 clientId + IBooking.confirmationIdSeparator +
@@ -0,0 +1,83 @@
+package Server.Entities.Concrete;
+
+import Server.Entities.IBooking;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The bookings of a facility on one day, ordered by start time
+ * A booking holds every minute from its start to its end inclusive, and bookings never overlap, so they are also
+ * ordered by end time. Whether a time slot overlaps a booking is then decided by the one booking that starts
+ * latest at or before the slot's end, found in O(log n)
+ * Written under the facility's monitor. Read without locks, with iteration seeing bookings in order as they
+ * stand at some point during it
+ */
+public class BookingIntervalIndex implements Iterable<IBooking> {
+    private final ConcurrentSkipListMap<Integer, IBooking> bookingsByStart = new ConcurrentSkipListMap<>();
+
+    /**
+     * @return true if any booking holds a minute of the time slot
+     */
+    public boolean overlaps(TimeSlot timeSlot) {
+        return overlaps(timeSlot, null);
+    }
+
+    /**
+     * @param ignoredBooking: a booking to leave out, e.g. the one being moved to the time slot, or null
+     * @return true if any booking other than ignoredBooking holds a minute of the time slot
+     */
+    public boolean overlaps(TimeSlot timeSlot, IBooking ignoredBooking) {
+        Map.Entry<Integer, IBooking> latestBefore = bookingsByStart.floorEntry(timeSlot.getEndMinute());
+        if (latestBefore != null && latestBefore.getValue() == ignoredBooking) {
+            latestBefore = bookingsByStart.lowerEntry(latestBefore.getKey());
+        }
+        return latestBefore != null && latestBefore.getValue().getEndMinute() >= timeSlot.getStartMinute();
+    }
+
+    /**
+     * @return the bookings in order of start time, as a read-only view
+     */
+    public Collection<IBooking> getBookings() {
+        return Collections.unmodifiableCollection(bookingsByStart.values());
+    }
+
+    public int size() {
+        return bookingsByStart.size();
+    }
+
+    @Override
+    public Iterator<IBooking> iterator() {
+        return getBookings().iterator();
+    }
+
+    // =====================================
+    // Package-private methods, called by Facility under its monitor
+    // =====================================
+
+    /**
+     * @throws IllegalArgumentException if the booking overlaps another. Callers check first
+     */
+    void add(IBooking booking) {
+        if (overlaps(booking.getTimeSlot())) {
+            throw new IllegalArgumentException("Booking overlaps another: " + booking.getConfirmationId());
+        }
+        bookingsByStart.put(booking.getStartMinute(), booking);
+    }
+
+    /**
+     * Moves a booking in the index to a new time slot
+     * @throws IllegalArgumentException if the new time slot overlaps another booking. Callers check first
+     */
+    void move(IBooking booking, TimeSlot newTimeSlot) {
+        if (overlaps(newTimeSlot, booking)) {
+            throw new IllegalArgumentException("Booking overlaps another: " + booking.getConfirmationId());
+        }
+        bookingsByStart.remove(booking.getStartMinute(), booking);
+        booking.updateStartEndTime(newTimeSlot.getStartMinute(), newTimeSlot.getEndMinute());
+        bookingsByStart.put(booking.getStartMinute(), booking);
+    }
+}
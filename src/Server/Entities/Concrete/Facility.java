@@ -5,20 +5,31 @@ import Server.Entities.AbstractFacility;
 import Server.Entities.IBookable;
 import Server.Entities.IBooking;
 import Server.Exceptions.BookingNotFoundException;
+import Server.Logging.Logger;
+import Server.Transport.IDatagramTransport;
 
 import java.io.IOException;
-import java.net.DatagramSocket;
-import java.text.ParseException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.PriorityQueue;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
+/**
+ * Bookings and observation sessions are guarded by the facility's monitor, so a facility can be used
+ * from several worker threads at once. Observers are sent updates outside of it
+ * Each day's bookings are kept in a BookingIntervalIndex, which can also be read without the monitor
+ * Availability is rendered once per day into an AvailabilityCache, and rendered again after that day's bookings change
+ * Observers are sent each change as a numbered FacilityUpdate, encoded once and shared by all of them, rather than
+ * the whole week's availability. getSnapshot gives the availability with the number of the last change it includes
+ */
 public class Facility extends AbstractFacility implements IBookable {
+    private static final Logger log = Logger.getLogger(Facility.class);
     private HashMap<String, IBooking> facilityBookings;
-    private PriorityQueue<IBooking>[] sortedBookings;
+    private BookingIntervalIndex[] bookingIndexes; // One per day
+    private final AvailabilityCache availabilityCache;
+    private long updateSequence = 0; // Number of the last change to the bookings
     private String facilityType;
 
     public Facility(String facilityName, String facilityType) {
@@ -26,7 +37,8 @@ public class Facility extends AbstractFacility implements IBookable {
         super.setObservationSessions(new PriorityQueue<>());
         this.facilityType = facilityType;
         facilityBookings = new HashMap<>();
-        sortedBookings = createSortedBookingsPQ();
+        bookingIndexes = createBookingIndexes();
+        availabilityCache = new AvailabilityCache(this::getAvailableTimeSlots);
     }
 
     // =====================================
@@ -36,64 +48,58 @@ public class Facility extends AbstractFacility implements IBookable {
         return facilityType;
     }
 
-    public String getAvailability(List<Integer> days) throws ParseException {
-        HashMap<Integer, List<TimeSlot>> availableTimings = new HashMap<>();
-        for(Integer day : days){
-            List<IBooking> sortedBookings = getBookingsSorted(day);
-            List<TimeSlot> availableTimes = SharedUtil.getAvailabilityList(sortedBookings);
-            availableTimings.put(day, availableTimes);
-        }
-        return generateAvailabilityMessage(availableTimings);
+    /**
+     * @return the free time slots of the days in the form "D/HH/mm to D/HH/mm, " for each, from the availability cache
+     */
+    public synchronized String getAvailability(List<Integer> days) {
+        return availabilityCache.getMessage(days);
+    }
+
+    /**
+     * @return the whole week's availability with the number of the last change it includes, see FacilityUpdate
+     */
+    public synchronized String getSnapshot() {
+        return FacilityUpdate.getSnapshotMessage(updateSequence, getFacilityName(), availabilityCache.getWeekMessage());
     }
 
+    /**
+     * @return the number of the last change to the facility's bookings, 0 if there has been none
+     */
+    public synchronized long getUpdateSequence() {
+        return updateSequence;
+    }
+
+    /**
+     * Sends observers a snapshot of the facility, e.g. to bring all of them up to date at once
+     */
     @Override
-    public void sendUpdateToObservingClients(DatagramSocket socket) throws IOException {
-        /* Set up variables
-        ioExceptCaught: indicates if IOException was thrown
-        updateInfoByteBuffer: update message string in byte format
-         */
-        boolean ioExceptCaught = false;
-        String updateMessage = this.getServerReplyString();
-        byte[] updateInfoByteBuffer = updateMessage.getBytes();
-
-        /*
-        - Remove expired observations based on current timestamp
-        - Iterate through priority queue and send message to clients
-        - If IOException caught, rethrow at end of function
-         */
-        super.removeExpiredObservationSessions();
-        for (ObservationSession clientSession : getObservationSessions()) {
-            try {
-                super.sendMessageTo(socket, clientSession.getClient(), updateInfoByteBuffer);
-            } catch (IOException e) {
-                ioExceptCaught = true;
-                System.out.println("Failed to send to: " + clientSession.getClient());
-            }
-        }
-        if (ioExceptCaught) throw new IOException();
+    public void sendUpdateToObservingClients(IDatagramTransport transport) throws IOException {
+        sendToObservingClients(transport, getSnapshot().getBytes(StandardCharsets.UTF_8));
     }
 
     @Override
     public String getServerReplyString() {
         List<Integer> days = Arrays.asList(0, 1, 2, 3, 4, 5, 6);
-        try {
-            return getAvailability(days);
-        } catch (ParseException e) {
-            e.printStackTrace();
-            return "Failed to retrieve availability";
-        }
+        return getAvailability(days);
+    }
+
+    @Override
+    public synchronized List<IBooking> getBookingsSorted(int day) {
+        return new ArrayList<>(bookingIndexes[day].getBookings());
+    }
+
+    @Override
+    public BookingIntervalIndex getBookingIndex(int day) {
+        return bookingIndexes[day];
     }
 
     @Override
-    public List<IBooking> getBookingsSorted(int day) {
-        PriorityQueue<IBooking> bookingsForDay = new PriorityQueue<>(sortedBookings[day]); // Create a local copy to poll
-        return Stream.generate(bookingsForDay::poll)
-                .limit(bookingsForDay.size())
-                .collect(Collectors.toList());
+    public boolean overlapsBooking(int day, TimeSlot timeSlot, IBooking ignoredBooking) {
+        return bookingIndexes[day].overlaps(timeSlot, ignoredBooking);
     }
 
     @Override
-    public IBooking getBookingByConfirmationId(String confirmationId)
+    public synchronized IBooking getBookingByConfirmationId(String confirmationId)
             throws BookingNotFoundException {
         if (!facilityBookings.containsKey(confirmationId)) {
             throw new BookingNotFoundException("No booking under confirmationId: " + confirmationId);
@@ -103,85 +109,119 @@ public class Facility extends AbstractFacility implements IBookable {
 
     @Override
     public String addBooking(int day, String clientId, String startTime, String endTime) {
-        IBooking newBooking = new Booking(this.getFacilityName(), clientId, day, startTime, endTime, facilityBookings.size());
-        String confirmationId = newBooking.getConfirmationId();
-        facilityBookings.put(confirmationId, newBooking);
-        sortedBookings[day].add(newBooking);
-        return confirmationId;
+        return addBooking(day, clientId, new TimeSlot(startTime, endTime), null);
     }
 
     @Override
-    public String addBooking(int day, String clientId, String startTime, String endTime, DatagramSocket serverSocket) {
-        String confirmationId = addBooking(day, clientId, startTime, endTime);
-        try {
-            sendUpdateToObservingClients(serverSocket);
-        } catch (IOException e) {
-            e.printStackTrace();
+    public String addBooking(int day, String clientId, String startTime, String endTime, IDatagramTransport transport) {
+        return addBooking(day, clientId, new TimeSlot(startTime, endTime), transport);
+    }
+
+    @Override
+    public String addBooking(int day, String clientId, TimeSlot timeSlot, IDatagramTransport transport) {
+        FacilityUpdate update = recordBooking(day, clientId, timeSlot);
+        if (transport != null) {
+            updateObservingClients(transport, update);
         }
-        return confirmationId;
+        return update.getConfirmationId();
+    }
+
+    @Override
+    public synchronized FacilityUpdate recordBooking(int day, String clientId, TimeSlot timeSlot) {
+        String confirmationId = book(day, clientId, timeSlot);
+        availabilityCache.invalidate(day);
+        return new FacilityUpdate(++updateSequence, getFacilityName(), confirmationId, day, null, timeSlot);
     }
 
     @Override
     public boolean updateBooking(int day, String confirmationId, String newStartTime, String newEndTime)
             throws BookingNotFoundException {
+        return updateBooking(day, confirmationId, new TimeSlot(newStartTime, newEndTime), null);
+    }
+
+    @Override
+    public boolean updateBooking(int day, String confirmationId, String newStartTime, String newEndTime, IDatagramTransport transport)
+            throws BookingNotFoundException {
+        return updateBooking(day, confirmationId, new TimeSlot(newStartTime, newEndTime), transport);
+    }
+
+    @Override
+    public boolean updateBooking(int day, String confirmationId, TimeSlot newTimeSlot, IDatagramTransport transport)
+            throws BookingNotFoundException {
+        FacilityUpdate update = recordMove(day, confirmationId, newTimeSlot);
+        if (transport != null) {
+            updateObservingClients(transport, update);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized FacilityUpdate recordMove(int day, String confirmationId, TimeSlot newTimeSlot)
+            throws BookingNotFoundException {
         if (!facilityBookings.containsKey(confirmationId)) {
             throw new BookingNotFoundException("No booking under confirmationId: " + confirmationId);
         }
         IBooking bookingToUpdate = facilityBookings.get(confirmationId);
-        // Remove and add back to heap as order may have changed
-        sortedBookings[day].remove(bookingToUpdate);
-        bookingToUpdate.updateStartEndTime(newStartTime, newEndTime);
-        sortedBookings[day].add(bookingToUpdate);
-        return true;
+        TimeSlot oldTimeSlot = bookingToUpdate.getTimeSlot();
+        move(day, bookingToUpdate, newTimeSlot);
+        availabilityCache.invalidate(day);
+        return new FacilityUpdate(++updateSequence, getFacilityName(), confirmationId, day, oldTimeSlot, newTimeSlot);
     }
 
+    /**
+     * Sends observers a change to the bookings. Must be called without the facility's monitor held
+     * The update is encoded once and the same bytes are sent to every observer
+     */
     @Override
-    public boolean updateBooking(int day, String confirmationId, String newStartTime, String newEndTime, DatagramSocket serverSocket) throws BookingNotFoundException {
-        updateBooking(day, confirmationId, newStartTime, newEndTime);
+    public void updateObservingClients(IDatagramTransport transport, FacilityUpdate update) {
         try {
-            sendUpdateToObservingClients(serverSocket);
+            sendToObservingClients(transport, update.getMessageBytes());
         } catch (IOException e) {
-            e.printStackTrace();
+            // The booking stands. Observers that missed the update see a gap in the numbers and ask for a snapshot
+            log.warn("observer.updateIncomplete", "facility", getFacilityName(), "sequence", update.getSequence());
         }
-        return true;
+    }
+
+    // =====================================
+    // Protected methods
+    // =====================================
+    /**
+     * Called holding the facility's monitor, when the day's availability is not cached
+     * @return the free time slots of the day in order, each from its first to its last free minute
+     */
+    protected List<TimeSlot> getAvailableTimeSlots(int day) {
+        return SharedUtil.getAvailabilityList(bookingIndexes[day]);
+    }
+
+    /**
+     * Called holding the facility's monitor, to add a booking that has been checked for conflicts
+     * @return the confirmation ID of the booking
+     * @throws IllegalArgumentException if the booking overlaps another
+     */
+    protected String book(int day, String clientId, TimeSlot timeSlot) {
+        IBooking newBooking = new Booking(this.getFacilityName(), clientId, day, timeSlot, facilityBookings.size());
+        String confirmationId = newBooking.getConfirmationId();
+        bookingIndexes[day].add(newBooking);
+        facilityBookings.put(confirmationId, newBooking);
+        return confirmationId;
+    }
+
+    /**
+     * Called holding the facility's monitor, to move a booking to a time slot that has been checked for conflicts
+     * @throws IllegalArgumentException if the new time slot overlaps another booking
+     */
+    protected void move(int day, IBooking booking, TimeSlot newTimeSlot) {
+        bookingIndexes[day].move(booking, newTimeSlot);
     }
 
     // =====================================
     // Private methods
     // =====================================
-    private PriorityQueue<IBooking>[] createSortedBookingsPQ() {
-        PriorityQueue<IBooking> sortedBookings[] = new PriorityQueue[7];
-        for (int i = 0; i < sortedBookings.length; i++) {
-            sortedBookings[i] = new PriorityQueue<>();
-        }
-        return sortedBookings;
-    }
-
-    private String generateAvailabilityMessage(HashMap<Integer, List<TimeSlot>> availabilities) {
-        StringBuilder message = new StringBuilder();
-        for (Integer day : availabilities.keySet()) {
-            List<TimeSlot> availableTimeslots = availabilities.get(day);
-            for (TimeSlot timeSlot : availableTimeslots) {
-                StringBuilder timeSlotString = new StringBuilder();
-                String startTime = timeSlot.getStartTime(); // HHmm
-                String endTime = timeSlot.getEndTime(); // HHmm
-                // Build a string in the form "D/HH/mm to D/HH/mm"
-                timeSlotString.append(day);
-                timeSlotString.append("/");
-                timeSlotString.append(startTime.substring(0, 2));
-                timeSlotString.append("/");
-                timeSlotString.append(startTime.substring(2));
-                timeSlotString.append(" to ");
-                timeSlotString.append(day);
-                timeSlotString.append("/");
-                timeSlotString.append(endTime.substring(0, 2));
-                timeSlotString.append("/");
-                timeSlotString.append(endTime.substring(2));
-                // Append to message
-                message.append(timeSlotString);
-                message.append(", ");
-            }
+    private BookingIntervalIndex[] createBookingIndexes() {
+        BookingIntervalIndex[] bookingIndexes = new BookingIntervalIndex[7];
+        for (int i = 0; i < bookingIndexes.length; i++) {
+            bookingIndexes[i] = new BookingIntervalIndex();
         }
-        return message.toString();
+        return bookingIndexes;
     }
 }
@@ -0,0 +1,104 @@
+package Server.Entities.Concrete;
+
+import Client.Protocol;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A change to one of a facility's bookings, as sent to the facility's observers
+ * Every change to a facility's bookings is numbered in order from 1, so an observer that sees a gap in the
+ * numbers knows it missed a change and can ask for a snapshot of the facility instead, see getSnapshotMessage
+ * The message is in the form "Update #N facility: old -> new", with each time slot as "D/HH/mm to D/HH/mm"
+ * and "none" as the old time slot of a new booking
+ */
+public class FacilityUpdate {
+    private final long sequence;
+    private final String facilityName;
+    private final String confirmationId;
+    private final int day;
+    private final TimeSlot oldTimeSlot;
+    private final TimeSlot newTimeSlot;
+    private byte[] messageBytes;
+
+    /**
+     * @param sequence: the number of the change, counted per facility from 1
+     * @param confirmationId: the confirmation ID of the booking that changed
+     * @param oldTimeSlot: the time slot of the booking before the change, or null for a new booking
+     * @param newTimeSlot: the time slot of the booking after the change
+     */
+    public FacilityUpdate(long sequence, String facilityName, String confirmationId, int day, TimeSlot oldTimeSlot,
+                          TimeSlot newTimeSlot) {
+        this.sequence = sequence;
+        this.facilityName = facilityName;
+        this.confirmationId = confirmationId;
+        this.day = day;
+        this.oldTimeSlot = oldTimeSlot;
+        this.newTimeSlot = newTimeSlot;
+    }
+
+    // =====================================
+    // Getters
+    // =====================================
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getFacilityName() {
+        return facilityName;
+    }
+
+    public String getConfirmationId() {
+        return confirmationId;
+    }
+
+    public int getDay() {
+        return day;
+    }
+
+    public TimeSlot getOldTimeSlot() {
+        return oldTimeSlot;
+    }
+
+    public TimeSlot getNewTimeSlot() {
+        return newTimeSlot;
+    }
+
+    /**
+     * @return the update in the form "Update #N facility: old -> new"
+     */
+    public String getMessage() {
+        return Protocol.UPDATE_PREFIX + sequence + " " + facilityName + ": " + formatTimeSlot(oldTimeSlot) + " -> " + formatTimeSlot(newTimeSlot);
+    }
+
+    /**
+     * Encoded on the first call, so the same bytes are sent to every observer. Must not be modified
+     * @return the message, encoded as sent to observers
+     */
+    public synchronized byte[] getMessageBytes() {
+        if (messageBytes == null) {
+            messageBytes = getMessage().getBytes(StandardCharsets.UTF_8);
+        }
+        return messageBytes;
+    }
+
+    // =====================================
+    // Snapshots
+    // =====================================
+
+    /**
+     * @param sequence: the number of the last change included in the availability
+     * @param availability: the facility's availability for the whole week
+     * @return the snapshot in the form "Snapshot #N facility: availability"
+     */
+    public static String getSnapshotMessage(long sequence, String facilityName, String availability) {
+        return Protocol.SNAPSHOT_PREFIX + sequence + " " + facilityName + ": " + availability;
+    }
+
+    // =====================================
+    // Private methods
+    // =====================================
+    private String formatTimeSlot(TimeSlot timeSlot) {
+        if (timeSlot == null) return "none";
+        return day + "/" + timeSlot.getStartTime().replace(':', '/') + " to " + day + "/" + timeSlot.getEndTime().replace(':', '/');
+    }
+}
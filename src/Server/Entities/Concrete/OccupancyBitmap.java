@@ -0,0 +1,108 @@
+package Server.Entities.Concrete;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The booked minutes of one day, one bit per minute packed into longs
+ * Checking and marking a time slot touches each of its words once with a mask, so a check costs the same however
+ * many bookings there are. Free time slots are found by scanning for runs of clear bits a word at a time
+ * Not thread safe. BitmapFacility uses it under its monitor
+ */
+public class OccupancyBitmap {
+    private static final int WORDS = (TimeSlot.MINUTES_PER_DAY + Long.SIZE - 1) / Long.SIZE;
+
+    private final long[] words = new long[WORDS];
+
+    /**
+     * @return true if any minute of the time slot, start and end inclusive, is booked
+     */
+    public boolean isBooked(TimeSlot timeSlot) {
+        return isBooked(timeSlot, null);
+    }
+
+    /**
+     * @param ignoredTimeSlot: minutes to treat as free, e.g. those of the booking being moved, or null
+     * @return true if any minute of the time slot outside of ignoredTimeSlot is booked
+     */
+    public boolean isBooked(TimeSlot timeSlot, TimeSlot ignoredTimeSlot) {
+        int from = timeSlot.getStartMinute();
+        int to = timeSlot.getEndMinute();
+        for (int word = from >>> 6; word <= to >>> 6; word++) {
+            long booked = words[word] & mask(word, from, to);
+            if (ignoredTimeSlot != null) {
+                booked &= ~mask(word, ignoredTimeSlot.getStartMinute(), ignoredTimeSlot.getEndMinute());
+            }
+            if (booked != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Marks every minute of the time slot as booked
+     */
+    public void book(TimeSlot timeSlot) {
+        int from = timeSlot.getStartMinute();
+        int to = timeSlot.getEndMinute();
+        for (int word = from >>> 6; word <= to >>> 6; word++) {
+            words[word] |= mask(word, from, to);
+        }
+    }
+
+    /**
+     * Marks every minute of the time slot as free
+     */
+    public void free(TimeSlot timeSlot) {
+        int from = timeSlot.getStartMinute();
+        int to = timeSlot.getEndMinute();
+        for (int word = from >>> 6; word <= to >>> 6; word++) {
+            words[word] &= ~mask(word, from, to);
+        }
+    }
+
+    /**
+     * @return the runs of free minutes in order, each as a time slot from its first to its last minute. As with
+     * SharedUtil.getAvailabilityList, a run of a single minute is left out, as nothing can be booked in it
+     */
+    public List<TimeSlot> getFreeTimeSlots() {
+        List<TimeSlot> freeTimeSlots = new ArrayList<>();
+        int minute = 0;
+        while (minute < TimeSlot.MINUTES_PER_DAY) {
+            int start = nextMinute(minute, false);
+            if (start >= TimeSlot.MINUTES_PER_DAY) break;
+            int end = Math.min(nextMinute(start, true), TimeSlot.MINUTES_PER_DAY) - 1;
+            if (start < end) freeTimeSlots.add(new TimeSlot(start, end));
+            minute = end + 1;
+        }
+        return freeTimeSlots;
+    }
+
+    // =====================================
+    // Private methods
+    // =====================================
+
+    /**
+     * @return the bits of the given word that lie between minutes from and to inclusive
+     */
+    private static long mask(int word, int from, int to) {
+        int wordStart = word << 6;
+        int low = Math.max(from - wordStart, 0);
+        int high = Math.min(to - wordStart, Long.SIZE - 1);
+        if (low > high) return 0;
+        return (-1L << low) & (-1L >>> (Long.SIZE - 1 - high));
+    }
+
+    /**
+     * @param booked: true to find the next booked minute, false the next free one
+     * @return the first such minute at or after from, or past the end of the day if there is none
+     */
+    private int nextMinute(int from, boolean booked) {
+        int word = from >>> 6;
+        long bits = (booked ? words[word] : ~words[word]) & (-1L << (from & 63));
+        while (bits == 0) {
+            if (++word == WORDS) return WORDS * Long.SIZE;
+            bits = booked ? words[word] : ~words[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+}
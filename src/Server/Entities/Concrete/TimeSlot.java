@@ -1,56 +1,118 @@
 package Server.Entities.Concrete;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
-
+/**
+ * A time slot within a day, stored as minutes from the start of the day so that comparing and shifting
+ * time slots does no parsing
+ * Times are only converted to and from strings at the edges, where they are given or shown as HH:mm
+ */
 public class TimeSlot implements Comparable<TimeSlot>{
-    String startTime; // Format: HHMM
-    String endTime; // Format: HHMM
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    public static final int LAST_MINUTE = MINUTES_PER_DAY - 1; // 23:59
+
+    private final int startMinute;
+    private final int endMinute;
+
+    /**
+     * @param startMinute: minutes from the start of the day, between 0 and LAST_MINUTE
+     * @param endMinute: minutes from the start of the day, between 0 and LAST_MINUTE
+     */
+    public TimeSlot(int startMinute, int endMinute){
+        this.startMinute = startMinute;
+        this.endMinute = endMinute;
+    }
+
+    /**
+     * @param startTime: the start time in HH:mm or HHmm
+     * @param endTime: the end time in HH:mm or HHmm
+     */
     public TimeSlot(String startTime, String endTime){
-        this.startTime = startTime;
-        this.endTime = endTime;
+        this(parseMinuteOfDay(startTime), parseMinuteOfDay(endTime));
     }
 
+    // =====================================
+    // Getters
+    // =====================================
+    public int getStartMinute() {
+        return startMinute;
+    }
+
+    public int getEndMinute() {
+        return endMinute;
+    }
 
+    /**
+     * @return the start time in HH:mm
+     */
     public String getStartTime(){
-        return this.startTime;
+        return formatMinuteOfDay(startMinute);
     }
+
+    /**
+     * @return the end time in HH:mm
+     */
     public String getEndTime(){
-        return this.endTime;
+        return formatMinuteOfDay(endMinute);
     }
+
     public Boolean isValidTimeSlot() {
-        return !(Integer.parseInt(this.startTime) >= Integer.parseInt(this.endTime));
+        return startMinute < endMinute;
     }
-    // String offset is in the form of : (+/-)HHMM, e.g. +0130 for add 1 hr 30 mins
-    public TimeSlot offSetTimeSlot(int offSetMinutes) throws ParseException {
-        DateFormat dateFormat = new SimpleDateFormat("HHmm");
 
-        SimpleDateFormat sdf = new java.text.SimpleDateFormat ("HHmm");
-        Date timeStart = sdf.parse(this.getStartTime());
-        Date timeEnd = sdf.parse(this.getEndTime());
-
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(timeStart);
-        cal.add(Calendar.MINUTE, offSetMinutes);
-        timeStart = cal.getTime();
-
-        cal.setTime(timeEnd);
-        cal.add(Calendar.MINUTE, offSetMinutes);
-        timeEnd = cal.getTime();
-
-        String timeStartString = dateFormat.format(timeStart);
-        String timeEndString = dateFormat.format(timeEnd);
-
-        return new TimeSlot(timeStartString, timeEndString);
+    /**
+     * Shifts both times by the same number of minutes, wrapping around midnight, e.g. 23:30 + 60 is 00:30
+     * @param offSetMinutes: minutes to add, or subtract if negative
+     */
+    public TimeSlot offSetTimeSlot(int offSetMinutes) {
+        return new TimeSlot(Math.floorMod(startMinute + offSetMinutes, MINUTES_PER_DAY),
+                Math.floorMod(endMinute + offSetMinutes, MINUTES_PER_DAY));
     }
 
     // Compares start times for sorting purposes
     @Override
     public int compareTo(TimeSlot o) {
-        return Integer.compare(Integer.parseInt(this.getStartTime()), Integer.parseInt(o.getStartTime()));
+        return Integer.compare(this.startMinute, o.startMinute);
     }
 
+    /**
+     * @param time: a time in HH:mm or HHmm, e.g. "10:30" or "1030"
+     * @return minutes from the start of the day, e.g. 630
+     * @throws NumberFormatException if the time is in neither format
+     */
+    public static int parseMinuteOfDay(String time) {
+        int minuteFrom;
+        if (time.length() == 5 && time.charAt(2) == ':') {
+            minuteFrom = 3;
+        } else if (time.length() == 4) {
+            minuteFrom = 2;
+        } else {
+            throw new NumberFormatException("Time must be in HH:mm or HHmm: " + time);
+        }
+        int hour = parseTwoDigits(time, 0);
+        int minute = parseTwoDigits(time, minuteFrom);
+        return hour * 60 + minute;
+    }
+
+    /**
+     * @param minuteOfDay: minutes from the start of the day, between 0 and LAST_MINUTE
+     * @return the time in HH:mm, e.g. "10:30" for 630
+     */
+    public static String formatMinuteOfDay(int minuteOfDay) {
+        int hour = minuteOfDay / 60;
+        int minute = minuteOfDay % 60;
+        char[] chars = {
+                (char) ('0' + hour / 10), (char) ('0' + hour % 10), ':',
+                (char) ('0' + minute / 10), (char) ('0' + minute % 10)
+        };
+        return new String(chars);
+    }
+
+    // =====================================
+    // Private methods
+    // =====================================
+    private static int parseTwoDigits(String time, int from) {
+        int tens = Character.digit(time.charAt(from), 10);
+        int ones = Character.digit(time.charAt(from + 1), 10);
+        if (tens < 0 || ones < 0) throw new NumberFormatException("Time must be in HH:mm or HHmm: " + time);
+        return tens * 10 + ones;
+    }
 }
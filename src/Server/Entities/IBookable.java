@@ -1,8 +1,11 @@
 package Server.Entities;
 
+import Server.Entities.Concrete.BookingIntervalIndex;
+import Server.Entities.Concrete.FacilityUpdate;
+import Server.Entities.Concrete.TimeSlot;
 import Server.Exceptions.BookingNotFoundException;
+import Server.Transport.IDatagramTransport;
 
-import java.net.DatagramSocket;
 import java.util.List;
 
 public interface IBookable {
@@ -23,10 +26,30 @@ public interface IBookable {
      * @param clientId: the client id string to identify the client
      * @param startTime: the start time in HH:mm
      * @param endTime: the end time in HH:mm
-     * @param serverSocket: the socket to send observing clients the update
+     * @param transport: the transport to send observing clients the update
      * @return a String confirmationId
      */
-    String addBooking(int day, String clientId, String startTime, String endTime, DatagramSocket serverSocket);
+    String addBooking(int day, String clientId, String startTime, String endTime, IDatagramTransport transport);
+
+    /**
+     * Creates a booking under the facility
+     * @param day: the int code of the day enum
+     * @param clientId: the client id string to identify the client
+     * @param timeSlot: the start and end time of the booking
+     * @param transport: the transport to send observing clients the update, or null to not send updates
+     * @return a String confirmationId
+     */
+    String addBooking(int day, String clientId, TimeSlot timeSlot, IDatagramTransport transport);
+
+    /**
+     * Creates a booking under the facility without updating observing clients, so the caller can send the update
+     * once it holds no locks, see updateObservingClients
+     * @param day: the int code of the day enum
+     * @param clientId: the client id string to identify the client
+     * @param timeSlot: the start and end time of the booking
+     * @return the numbered change, with the confirmation id of the new booking
+     */
+    FacilityUpdate recordBooking(int day, String clientId, TimeSlot timeSlot);
 
     /**
      * Updates a booking under the facility
@@ -45,11 +68,40 @@ public interface IBookable {
      * @param confirmationId: confirmation id of an existing booking
      * @param newStartTime: new start time in HH:mm
      * @param newEndTime: new end time in HH:mm
-     * @param serverSocket: the socket to send observing clients the update
+     * @param transport: the transport to send observing clients the update
      * @return true if update was done successfully, else false
      * @throws BookingNotFoundException if confirmation id is not found in facility
      */
-    boolean updateBooking(int day, String confirmationId, String newStartTime, String newEndTime, DatagramSocket serverSocket) throws BookingNotFoundException;
+    boolean updateBooking(int day, String confirmationId, String newStartTime, String newEndTime, IDatagramTransport transport) throws BookingNotFoundException;
+
+    /**
+     * Updates a booking under the facility
+     * @param day: the int code of the day enum
+     * @param confirmationId: confirmation id of an existing booking
+     * @param newTimeSlot: the new start and end time of the booking
+     * @param transport: the transport to send observing clients the update, or null to not send updates
+     * @return true if update was done successfully, else false
+     * @throws BookingNotFoundException if confirmation id is not found in facility
+     */
+    boolean updateBooking(int day, String confirmationId, TimeSlot newTimeSlot, IDatagramTransport transport) throws BookingNotFoundException;
+
+    /**
+     * Moves a booking under the facility without updating observing clients, so the caller can send the update
+     * once it holds no locks, see updateObservingClients
+     * @param day: the int code of the day enum
+     * @param confirmationId: confirmation id of an existing booking
+     * @param newTimeSlot: the new start and end time of the booking
+     * @return the numbered change
+     * @throws BookingNotFoundException if confirmation id is not found in facility
+     */
+    FacilityUpdate recordMove(int day, String confirmationId, TimeSlot newTimeSlot) throws BookingNotFoundException;
+
+    /**
+     * Sends observing clients a change made by recordBooking or recordMove
+     * @param transport: the transport to send observing clients the update
+     * @param update: the change to send
+     */
+    void updateObservingClients(IDatagramTransport transport, FacilityUpdate update);
 
     /**
      * Gets the booking for a given day sorted by start time
@@ -58,6 +110,23 @@ public interface IBookable {
      */
     List<IBooking> getBookingsSorted(int day);
 
+    /**
+     * Gets the index of the bookings for a given day, to check for overlapping bookings in O(log n)
+     * and to iterate over the bookings in order of start time without copying them
+     * @param day: the int code of the day enum
+     * @return the day's BookingIntervalIndex
+     */
+    BookingIntervalIndex getBookingIndex(int day);
+
+    /**
+     * Checks whether a time slot is free to book
+     * @param day: the int code of the day enum
+     * @param timeSlot: the time slot to check, start and end inclusive
+     * @param ignoredBooking: a booking to leave out, e.g. the one being moved to the time slot, or null
+     * @return true if any booking other than ignoredBooking holds a minute of the time slot
+     */
+    boolean overlapsBooking(int day, TimeSlot timeSlot, IBooking ignoredBooking);
+
     /**
      * Gets a particular booking given the confirmation code
      * @param confirmationId: the String confirmation dd of the booking to retrieve
@@ -11,7 +11,10 @@ public interface IBooking {
     String getConfirmationId();
     String getStartTime();
     String getEndTime();
+    int getStartMinute();
+    int getEndMinute();
     TimeSlot getTimeSlot();
     int getDay();
     void updateStartEndTime(String newStartTime, String newEndTime);
+    void updateStartEndTime(int newStartMinute, int newEndMinute);
 }
@@ -1,7 +1,8 @@
 package Server.Entities;
 
+import Server.Transport.IDatagramTransport;
+
 import java.io.IOException;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
 
 public interface IObservable {
@@ -15,8 +16,8 @@ public interface IObservable {
 
     /**
      * Goes through the list of observing clients and sends them an update
-     * @param socket: specifies the socket to send the update through
+     * @param transport: specifies the transport to send the update through
      * @throws IOException: Sending datagram packets may throw IOException
      */
-    void sendUpdateToObservingClients(DatagramSocket socket) throws IOException;
+    void sendUpdateToObservingClients(IDatagramTransport transport) throws IOException;
 }
@@ -0,0 +1,210 @@
+package Server.Logging;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes log records from a background thread, so that logging never blocks the thread handling a request
+ * Records are put into a ring buffer of preallocated slots. A logging thread claims a slot, fills in the record's
+ * fields and publishes it, which takes no locks. The appender thread formats and writes published records in order
+ * When the ring buffer is full, new records are dropped rather than waiting for space. The number dropped is
+ * written out once there is space again
+ * The shared appender writes to stdout, and its buffer size is set by -Dserver.log.bufferSize
+ */
+public class AsyncLogAppender {
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    private static AsyncLogAppender shared;
+
+    private final Slot[] slots;
+    private final AtomicLongArray published; // Sequence of the record last published in each slot
+    private final AtomicLong head = new AtomicLong(); // Sequence of the next record to be claimed
+    private volatile long tail = 0; // Sequence of the next record to be written
+    private final PrintWriter out;
+    private final LongAdder dropped = new LongAdder();
+    private long droppedReported = 0; // Only used by the appender thread
+    private volatile Thread writer;
+
+    /**
+     * Records are only written once start() is called
+     * @param bufferSize: the most records waiting to be written at once. Rounded up to a power of two
+     * @param out: where records are written, one line each
+     */
+    public AsyncLogAppender(int bufferSize, Writer out) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("Buffer size must be positive");
+        int capacity = bufferSize == 1 ? 1 : Integer.highestOneBit(bufferSize - 1) << 1;
+        this.slots = new Slot[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+            published.set(i, -1);
+        }
+        this.out = new PrintWriter(out);
+    }
+
+    /**
+     * @return the appender shared by every Logger, started on first use
+     */
+    public static synchronized AsyncLogAppender shared() {
+        if (shared == null) {
+            shared = new AsyncLogAppender(Integer.getInteger("server.log.bufferSize", DEFAULT_BUFFER_SIZE),
+                    new BufferedWriter(new OutputStreamWriter(System.out)));
+            shared.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(shared::flush));
+        }
+        return shared;
+    }
+
+    /**
+     * Starts the appender thread, a daemon so that it does not keep the JVM alive
+     */
+    public synchronized void start() {
+        if (writer != null) return;
+        writer = new Thread(this::writeRecords, "log-appender");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a record to be written. Returns at once, dropping the record if the buffer is full
+     * @param fields: alternating keys and values, written as key=value. Values are formatted on the appender thread
+     * @param suppressed: the number of similar records dropped by sampling before this one
+     * @return false if the record was dropped
+     */
+    public boolean append(long timestamp, LogLevel level, String logger, String event, Object[] fields,
+                          Throwable thrown, long suppressed) {
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail >= slots.length) {
+                dropped.increment();
+                return false;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) sequence & (slots.length - 1);
+        Slot slot = slots[index];
+        slot.timestamp = timestamp;
+        slot.level = level;
+        slot.logger = logger;
+        slot.event = event;
+        slot.fields = fields;
+        slot.thrown = thrown;
+        slot.suppressed = suppressed;
+        published.lazySet(index, sequence); // Publishes the writes to the slot above
+        return true;
+    }
+
+    /**
+     * Waits until every record appended so far has been written, e.g. on shutdown. Returns at once if not started
+     */
+    public void flush() {
+        long until = head.get();
+        Thread current = writer;
+        while (current != null && current.isAlive() && tail < until) {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    // =====================================
+    // Getters
+    // =====================================
+
+    /**
+     * @return the number of records dropped because the buffer was full
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public int getBufferSize() {
+        return slots.length;
+    }
+
+    // =====================================
+    // Private methods
+    // =====================================
+
+    /**
+     * Body of the appender thread. Writes records in order of sequence, flushing the output whenever it has caught up
+     */
+    private void writeRecords() {
+        StringBuilder line = new StringBuilder(256);
+        while (true) {
+            long sequence = tail;
+            int index = (int) sequence & (slots.length - 1);
+            if (published.get(index) != sequence) {
+                reportDropped();
+                out.flush();
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            Slot slot = slots[index];
+            line.setLength(0);
+            format(slot, line);
+            out.println(line);
+            if (slot.thrown != null) slot.thrown.printStackTrace(out);
+            slot.clear();
+            tail = sequence + 1; // Frees the slot
+        }
+    }
+
+    private void reportDropped() {
+        long total = dropped.sum();
+        if (total == droppedReported) return;
+        out.println(formatTimestamp(System.currentTimeMillis()) + " WARN  AsyncLogAppender log.dropped count=" + (total - droppedReported));
+        droppedReported = total;
+    }
+
+    private static void format(Slot slot, StringBuilder line) {
+        line.append(formatTimestamp(slot.timestamp)).append(' ');
+        String level = slot.level.name();
+        line.append(level);
+        for (int i = level.length(); i < 6; i++) {
+            line.append(' ');
+        }
+        line.append(slot.logger).append(' ').append(slot.event);
+        Object[] fields = slot.fields;
+        if (fields != null) {
+            for (int i = 0; i + 1 < fields.length; i += 2) {
+                line.append(' ').append(fields[i]).append('=').append(fields[i + 1]);
+            }
+        }
+        if (slot.thrown != null) line.append(" error=").append(slot.thrown);
+        if (slot.suppressed > 0) line.append(" suppressed=").append(slot.suppressed);
+    }
+
+    private static String formatTimestamp(long timestamp) {
+        return TIMESTAMP.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()));
+    }
+
+    /**
+     * A record in the ring buffer. Written by the thread that claimed it, then read by the appender thread
+     */
+    private static class Slot {
+        long timestamp;
+        LogLevel level;
+        String logger;
+        String event;
+        Object[] fields;
+        Throwable thrown;
+        long suppressed;
+
+        void clear() {
+            fields = null;
+            thrown = null;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package Server.Logging;
+
+/**
+ * Severity of a log record. A logger writes the records at or above its level
+ */
+public enum LogLevel {
+    DEBUG, INFO, WARN, ERROR, OFF;
+
+    /**
+     * Reads the level from -Dserver.log.level
+     * @return the level set, or INFO if it is not set
+     */
+    public static LogLevel fromSystemProperty() {
+        return valueOf(System.getProperty("server.log.level", "INFO").toUpperCase());
+    }
+}
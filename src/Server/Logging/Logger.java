@@ -0,0 +1,119 @@
+package Server.Logging;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Structured logger for the server's request path. A record is an event name and key/value fields, e.g.
+ * log.warn("observer.sendFailed", "client", address) is written as "... WARN  Facility observer.sendFailed client=/10.0.0.2:5000"
+ * Records below the logger's level cost only a comparison. Others are handed to an AsyncLogAppender and formatted
+ * on its thread, so the calling thread does not wait for stdout
+ * Each event is sampled: at most sampleLimit records of it are written per second, and the next one written
+ * after some were dropped says how many with a suppressed=N field
+ * The level is set by -Dserver.log.level and the sample limit by -Dserver.log.sampleLimit, 0 to write every record
+ */
+public class Logger {
+    public static final int DEFAULT_SAMPLE_LIMIT = 100;
+    private static final long SAMPLE_WINDOW_MILLIS = 1000;
+    private static final Object[] NO_FIELDS = new Object[0];
+
+    private final String name;
+    private final AsyncLogAppender appender;
+    private final LogLevel level;
+    private final int sampleLimit;
+    private final LongSupplier clock;
+    private final Map<String, Sampler> samplers = new ConcurrentHashMap<>();
+
+    /**
+     * @param name: written on every record, usually the simple name of the class logging
+     * @param appender: writes the records
+     * @param level: the lowest level written
+     * @param sampleLimit: the most records of an event written per second, or 0 for no limit
+     * @param clock: source of the current time in milliseconds
+     */
+    public Logger(String name, AsyncLogAppender appender, LogLevel level, int sampleLimit, LongSupplier clock) {
+        this.name = name;
+        this.appender = appender;
+        this.level = level;
+        this.sampleLimit = sampleLimit;
+        this.clock = clock;
+    }
+
+    /**
+     * @return a logger named after the class, writing to the shared appender with the level and sample limit
+     * set by system properties
+     */
+    public static Logger getLogger(Class<?> c) {
+        return new Logger(c.getSimpleName(), AsyncLogAppender.shared(), LogLevel.fromSystemProperty(),
+                Integer.getInteger("server.log.sampleLimit", DEFAULT_SAMPLE_LIMIT), System::currentTimeMillis);
+    }
+
+    public boolean isEnabled(LogLevel recordLevel) {
+        return recordLevel.compareTo(level) >= 0 && recordLevel != LogLevel.OFF;
+    }
+
+    /**
+     * @param fields: alternating keys and values
+     */
+    public void debug(String event, Object... fields) {
+        log(LogLevel.DEBUG, event, null, fields);
+    }
+
+    public void info(String event, Object... fields) {
+        log(LogLevel.INFO, event, null, fields);
+    }
+
+    public void warn(String event, Object... fields) {
+        log(LogLevel.WARN, event, null, fields);
+    }
+
+    /**
+     * @param thrown: written with its stack trace after the record
+     */
+    public void error(String event, Throwable thrown, Object... fields) {
+        log(LogLevel.ERROR, event, thrown, fields);
+    }
+
+    /**
+     * Hands a record to the appender if its level is enabled and its event has not hit the sample limit
+     */
+    public void log(LogLevel recordLevel, String event, Throwable thrown, Object... fields) {
+        if (!isEnabled(recordLevel)) return;
+        long now = clock.getAsLong();
+        long suppressed = 0;
+        if (sampleLimit > 0) {
+            Sampler sampler = samplers.get(event); // Java 8's computeIfAbsent locks even when the key is present
+            if (sampler == null) sampler = samplers.computeIfAbsent(event, e -> new Sampler());
+            if (!sampler.tryAcquire(now, sampleLimit)) return;
+            suppressed = sampler.suppressed.getAndSet(0);
+        }
+        appender.append(now, recordLevel, name, event, fields == null ? NO_FIELDS : fields, thrown, suppressed);
+    }
+
+    public LogLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * Counts the records of an event written in the current one second window
+     * Windows are started by whichever thread first sees the last one is over, so the limit is approximate
+     */
+    private static class Sampler {
+        private volatile long windowStart = Long.MIN_VALUE / 2; // Long ago, without overflowing now - windowStart
+        private final AtomicInteger written = new AtomicInteger();
+        private final AtomicLong suppressed = new AtomicLong();
+
+        boolean tryAcquire(long now, int limit) {
+            if (now - windowStart >= SAMPLE_WINDOW_MILLIS) {
+                windowStart = now;
+                written.set(0);
+            }
+            if (written.incrementAndGet() <= limit) return true;
+            suppressed.incrementAndGet();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package Server.Metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies in nanoseconds with log-linear buckets, in the manner of HdrHistogram
+ * Values below SUB_BUCKETS are counted exactly. Above that, each power of two is split into SUB_BUCKETS equal buckets,
+ * so any recorded value is reported within 1% of its true value whatever its magnitude
+ * Values above MAX_VALUE, about 36 minutes, are counted as MAX_VALUE
+ * Recording takes no locks and allocates nothing, so it is safe to call from every worker thread on every request.
+ * Percentiles read while values are being recorded may miss the latest of them
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // 128, i.e. < 1% error
+    private static final int MAX_BIT = 40;
+    public static final long MAX_VALUE = (1L << (MAX_BIT + 1)) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray((MAX_BIT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param nanos: the latency to record. Negative values are counted as 0
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @param percentile: between 0 and 100, e.g. 99.9
+     * @return the smallest latency that the given percentage of recorded latencies are at or below, or 0 if none
+     * have been recorded. Reported as the highest value of its bucket, but never above the largest recorded value
+     */
+    public long getValueAtPercentile(double percentile) {
+        long recorded = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            recorded += counts.get(i);
+        }
+        if (recorded == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * recorded));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(highestValueOf(i), getMax());
+        }
+        return getMax();
+    }
+
+    // =====================================
+    // Getters
+    // =====================================
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return the mean latency, or 0 if none have been recorded
+     */
+    public double getMean() {
+        long recorded = count.sum();
+        return recorded == 0 ? 0 : (double) total.sum() / recorded;
+    }
+
+    // =====================================
+    // Private methods
+    // =====================================
+
+    /**
+     * Values below SUB_BUCKETS have a bucket each. A value with its highest set bit at position b >= SUB_BUCKET_BITS
+     * is in row b - SUB_BUCKET_BITS + 1, at the column given by the SUB_BUCKET_BITS bits below its highest set bit
+     */
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    private static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
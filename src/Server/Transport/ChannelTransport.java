@@ -0,0 +1,164 @@
+package Server.Transport;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+
+/**
+ * Transport over a non-blocking DatagramChannel, driven by a Selector
+ * The receiving thread runs the event loop: it drains every datagram that has already arrived without waiting,
+ * and only blocks in select() once the channel is empty
+ * Sends go straight to the channel. If the socket's send buffer is full, the datagram is copied and queued, and
+ * written by the event loop once the channel is writable again, so senders never block. While any datagram is
+ * queued, later sends queue behind it, so datagrams leave in the order they were sent
+ * At most maxPendingSends datagrams are queued. Beyond that, sends are dropped and counted, as a full network
+ * buffer would drop them, and clients retry them as lost replies
+ * Payloads in direct buffers are read and written by the kernel without any copy
+ */
+public class ChannelTransport implements IDatagramTransport {
+    public static final int DEFAULT_MAX_PENDING_SENDS = 1024;
+
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final SelectionKey key;
+    private final int maxPendingSends;
+    private final ArrayDeque<PendingSend> pendingSends = new ArrayDeque<>(); // Guarded by itself
+    private long droppedSends = 0; // Guarded by pendingSends
+
+    /**
+     * @param port: the port to bind to
+     * @throws IOException if the channel could not be opened or bound
+     */
+    public ChannelTransport(int port) throws IOException {
+        this(DatagramChannel.open().bind(new InetSocketAddress(port)));
+    }
+
+    /**
+     * @param channel: a bound channel. It is switched to non-blocking mode and closed when this transport is closed
+     */
+    public ChannelTransport(DatagramChannel channel) throws IOException {
+        this(channel, DEFAULT_MAX_PENDING_SENDS);
+    }
+
+    /**
+     * @param channel: a bound channel. It is switched to non-blocking mode and closed when this transport is closed
+     * @param maxPendingSends: the most datagrams queued while the send buffer is full, beyond which sends are dropped
+     */
+    public ChannelTransport(DatagramChannel channel, int maxPendingSends) throws IOException {
+        if (maxPendingSends <= 0) throw new IllegalArgumentException("Pending sends must be positive");
+        this.channel = channel;
+        this.maxPendingSends = maxPendingSends;
+        this.selector = Selector.open();
+        channel.configureBlocking(false);
+        this.key = channel.register(selector, SelectionKey.OP_READ);
+    }
+
+    @Override
+    public SocketAddress receive(ByteBuffer buffer) throws IOException {
+        while (true) {
+            flushPendingSends();
+            SocketAddress sender = channel.receive(buffer);
+            if (sender != null) return sender;
+
+            // Nothing to read. Wait for a datagram, or for the send buffer to drain if sends are queued
+            try {
+                key.interestOps(getPendingSendCount() == 0 ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                selector.select();
+                selector.selectedKeys().clear();
+            } catch (ClosedSelectorException | CancelledKeyException e) {
+                throw new ClosedChannelException(); // Closed by another thread while waiting
+            }
+        }
+    }
+
+    @Override
+    public void send(ByteBuffer message, SocketAddress target) throws IOException {
+        // Checking the queue and sending happen under one lock, so a datagram never overtakes one already waiting.
+        // The channel serialises sends anyway, and a non-blocking send does not wait for the send buffer to drain
+        synchronized (pendingSends) {
+            if (pendingSends.isEmpty() && channel.send(message, target) > 0) return;
+            if (pendingSends.size() >= maxPendingSends) {
+                droppedSends++;
+                return;
+            }
+            // Copied to the heap, as direct buffers are slow to allocate and their memory is only freed by the GC
+            ByteBuffer copy = ByteBuffer.allocate(message.remaining());
+            copy.put(message).flip();
+            pendingSends.add(new PendingSend(copy, target));
+        }
+        selector.wakeup(); // So the event loop starts watching for OP_WRITE
+    }
+
+    @Override
+    public boolean prefersDirectBuffers() {
+        return true;
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() {
+        try {
+            return channel.getLocalAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        selector.close();
+    }
+
+    /**
+     * @return the number of datagrams waiting for the channel to become writable
+     */
+    public int getPendingSendCount() {
+        synchronized (pendingSends) {
+            return pendingSends.size();
+        }
+    }
+
+    /**
+     * @return the number of datagrams dropped because maxPendingSends were already queued
+     */
+    public long getDroppedSendCount() {
+        synchronized (pendingSends) {
+            return droppedSends;
+        }
+    }
+
+    // =====================================
+    // Private methods
+    // =====================================
+
+    /**
+     * Writes queued datagrams until the channel's send buffer is full again
+     */
+    private void flushPendingSends() throws IOException {
+        synchronized (pendingSends) {
+            PendingSend pending;
+            while ((pending = pendingSends.peek()) != null) {
+                if (channel.send(pending.message, pending.target) == 0) return;
+                pendingSends.poll();
+            }
+        }
+    }
+
+    private static class PendingSend {
+        private final ByteBuffer message;
+        private final SocketAddress target;
+
+        PendingSend(ByteBuffer message, SocketAddress target) {
+            this.message = message;
+            this.target = target;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package Server.Transport;
+
+import Server.Logging.Logger;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wraps a transport to simulate an unreliable network, with the faults described by a FaultProfile
+ * Used by both the server and the client to exercise retries and at-most-once semantics. The faults are drawn from a
+ * seeded random sequence, four draws per sent datagram and one per received datagram, so the same traffic always
+ * meets the same faults
+ * Delayed and reordered datagrams are copied and sent later from a background thread
+ */
+public class FaultInjectingTransport implements IDatagramTransport {
+    private static final Logger log = Logger.getLogger(FaultInjectingTransport.class);
+
+    private final IDatagramTransport transport;
+    private final FaultProfile profile;
+    private final Random random; // Guarded by itself
+    private final ScheduledExecutorService delayedSends; // null if nothing is ever delayed
+
+    private final LongAdder droppedReceived = new LongAdder();
+    private final LongAdder droppedSent = new LongAdder();
+    private final LongAdder delayed = new LongAdder();
+    private final LongAdder duplicated = new LongAdder();
+    private final LongAdder reordered = new LongAdder();
+
+    /**
+     * @param transport: the transport to wrap. It is closed when this transport is closed
+     * @param profile: the faults to simulate
+     */
+    public FaultInjectingTransport(IDatagramTransport transport, FaultProfile profile) {
+        this.transport = transport;
+        this.profile = profile;
+        this.random = new Random(profile.getSeed());
+        if (profile.getMaxDelayMillis() > 0 || profile.getReorderProbability() > 0) {
+            delayedSends = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "fault-delayed-sends");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            delayedSends = null;
+        }
+    }
+
+    /**
+     * @return transport wrapped in a FaultInjectingTransport, or transport itself if the profile has no faults
+     */
+    public static IDatagramTransport wrap(IDatagramTransport transport, FaultProfile profile) {
+        return profile.hasFaults() ? new FaultInjectingTransport(transport, profile) : transport;
+    }
+
+    /**
+     * Receives the next datagram that is not dropped
+     */
+    @Override
+    public SocketAddress receive(ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        while (true) {
+            SocketAddress sender = transport.receive(buffer);
+            boolean drop;
+            synchronized (random) {
+                drop = random.nextDouble() < profile.getReceiveLoss();
+            }
+            if (!drop) return sender;
+            droppedReceived.increment();
+            log.debug("fault.receiveDropped", "sender", sender);
+            buffer.position(start);
+        }
+    }
+
+    @Override
+    public void send(ByteBuffer message, SocketAddress target) throws IOException {
+        boolean drop;
+        int delayMillis;
+        boolean duplicate;
+        boolean reorder;
+        synchronized (random) {
+            drop = random.nextDouble() < profile.getSendLoss();
+            delayMillis = random.nextInt(profile.getMaxDelayMillis() + 1);
+            duplicate = random.nextDouble() < profile.getDuplicateProbability();
+            reorder = random.nextDouble() < profile.getReorderProbability();
+        }
+
+        if (drop) {
+            droppedSent.increment();
+            log.debug("fault.sendDropped", "target", target);
+            message.position(message.limit());
+            return;
+        }
+        int copies = duplicate ? 2 : 1;
+        if (duplicate) duplicated.increment();
+        if (reorder) {
+            reordered.increment();
+            delayMillis += FaultProfile.REORDER_DELAY_MILLIS;
+        }
+        if (delayMillis == 0) {
+            for (int i = 0; i < copies; i++) {
+                transport.send(message.duplicate(), target);
+            }
+            message.position(message.limit());
+            return;
+        }
+
+        // The caller may reuse message once this returns, so a copy is sent later
+        delayed.increment();
+        ByteBuffer copy = ByteBuffer.allocate(message.remaining());
+        copy.put(message).flip();
+        delayedSends.schedule(() -> {
+            for (int i = 0; i < copies; i++) {
+                try {
+                    transport.send(copy.duplicate(), target);
+                } catch (IOException e) {
+                    log.warn("fault.delayedSendFailed", "target", target, "error", e);
+                }
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean prefersDirectBuffers() {
+        return transport.prefersDirectBuffers();
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() {
+        return transport.getLocalAddress();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (delayedSends != null) delayedSends.shutdownNow();
+        transport.close();
+    }
+
+    // =====================================
+    // Getters
+    // =====================================
+    public FaultProfile getProfile() {
+        return profile;
+    }
+
+    public long getDroppedReceived() {
+        return droppedReceived.sum();
+    }
+
+    public long getDroppedSent() {
+        return droppedSent.sum();
+    }
+
+    /**
+     * @return the number of sent datagrams delayed, including those reordered
+     */
+    public long getDelayed() {
+        return delayed.sum();
+    }
+
+    public long getDuplicated() {
+        return duplicated.sum();
+    }
+
+    public long getReordered() {
+        return reordered.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FaultInjectingTransport[%s, droppedReceived=%d, droppedSent=%d, delayed=%d, duplicated=%d, reordered=%d]",
+                profile, getDroppedReceived(), getDroppedSent(), getDelayed(), getDuplicated(), getReordered());
+    }
+}
@@ -0,0 +1,127 @@
+package Server.Transport;
+
+/**
+ * The network faults a FaultInjectingTransport simulates, each drawn from a random sequence started from seed,
+ * so that a run with the same profile and the same traffic sees the same faults
+ * Received datagrams can be lost. Sent datagrams can be lost, delayed, duplicated, or held back long enough for
+ * later datagrams to overtake them
+ * A process reads its profile from system properties with its own prefix, e.g. -Dserver.fault.sendLoss=0.3 loses
+ * 30% of the server's replies and -Dclient.fault.sendLoss=0.3 loses 30% of the client's requests. By default there
+ * are no faults
+ */
+public class FaultProfile {
+    public static final FaultProfile NONE = new FaultProfile(1, 0, 0, 0, 0, 0);
+    public static final int REORDER_DELAY_MILLIS = 50;
+
+    private final long seed;
+    private final double receiveLoss;
+    private final double sendLoss;
+    private final int maxDelayMillis;
+    private final double duplicateProbability;
+    private final double reorderProbability;
+
+    /**
+     * @param seed: starts the random sequence the faults are drawn from
+     * @param receiveLoss: probability that a received datagram is dropped
+     * @param sendLoss: probability that a sent datagram is dropped
+     * @param maxDelayMillis: each sent datagram is delayed by between 0 and this many milliseconds
+     * @param duplicateProbability: probability that a sent datagram is sent twice
+     * @param reorderProbability: probability that a sent datagram is held back a further REORDER_DELAY_MILLIS
+     */
+    public FaultProfile(long seed, double receiveLoss, double sendLoss, int maxDelayMillis, double duplicateProbability,
+                        double reorderProbability) {
+        checkProbability(receiveLoss);
+        checkProbability(sendLoss);
+        checkProbability(duplicateProbability);
+        checkProbability(reorderProbability);
+        if (maxDelayMillis < 0) throw new IllegalArgumentException("Delay must not be negative");
+        this.seed = seed;
+        this.receiveLoss = receiveLoss;
+        this.sendLoss = sendLoss;
+        this.maxDelayMillis = maxDelayMillis;
+        this.duplicateProbability = duplicateProbability;
+        this.reorderProbability = reorderProbability;
+    }
+
+    /**
+     * Reads prefix.fault.seed, prefix.fault.receiveLoss, prefix.fault.sendLoss, prefix.fault.maxDelayMillis,
+     * prefix.fault.duplicate and prefix.fault.reorder
+     * @param prefix: e.g. "server" or "client"
+     * @return the profile, with no fault for any property that is not set
+     */
+    public static FaultProfile fromSystemProperties(String prefix) {
+        String fault = prefix + ".fault.";
+        return new FaultProfile(Long.getLong(fault + "seed", NONE.seed),
+                getProbability(fault + "receiveLoss"),
+                getProbability(fault + "sendLoss"),
+                Integer.getInteger(fault + "maxDelayMillis", 0),
+                getProbability(fault + "duplicate"),
+                getProbability(fault + "reorder"));
+    }
+
+    /**
+     * @return the same faults drawn from another random sequence, e.g. for each of several sockets
+     */
+    public FaultProfile withSeed(long seed) {
+        return new FaultProfile(seed, receiveLoss, sendLoss, maxDelayMillis, duplicateProbability, reorderProbability);
+    }
+
+    /**
+     * @return the same profile, losing sent datagrams with the given probability
+     */
+    public FaultProfile withSendLoss(double sendLoss) {
+        return new FaultProfile(seed, receiveLoss, sendLoss, maxDelayMillis, duplicateProbability, reorderProbability);
+    }
+
+    /**
+     * @return false if the profile has no faults, in which case the transport should not be wrapped at all
+     */
+    public boolean hasFaults() {
+        return receiveLoss > 0 || sendLoss > 0 || maxDelayMillis > 0 || duplicateProbability > 0 || reorderProbability > 0;
+    }
+
+    // =====================================
+    // Getters
+    // =====================================
+    public long getSeed() {
+        return seed;
+    }
+
+    public double getReceiveLoss() {
+        return receiveLoss;
+    }
+
+    public double getSendLoss() {
+        return sendLoss;
+    }
+
+    public int getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public double getDuplicateProbability() {
+        return duplicateProbability;
+    }
+
+    public double getReorderProbability() {
+        return reorderProbability;
+    }
+
+    @Override
+    public String toString() {
+        if (!hasFaults()) return "none";
+        return "seed=" + seed + ", receiveLoss=" + receiveLoss + ", sendLoss=" + sendLoss + ", maxDelay=" + maxDelayMillis
+                + "ms, duplicate=" + duplicateProbability + ", reorder=" + reorderProbability;
+    }
+
+    // =====================================
+    // Private methods
+    // =====================================
+    private static double getProbability(String property) {
+        return Double.parseDouble(System.getProperty(property, "0"));
+    }
+
+    private static void checkProbability(double probability) {
+        if (probability < 0 || probability > 1) throw new IllegalArgumentException("Probabilities must be between 0 and 1");
+    }
+}
@@ -0,0 +1,40 @@
+package Server.Transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * Sends and receives the server's UDP datagrams, so that the server and facilities do not depend on
+ * whether a blocking DatagramSocket or a non-blocking DatagramChannel is used underneath
+ */
+public interface IDatagramTransport extends Closeable {
+    /**
+     * Blocks until a datagram arrives and writes its payload into buffer, starting at the buffer's position
+     * Must not be called by more than one thread at a time
+     * @param buffer: the buffer to receive into. A payload larger than its remaining space is truncated
+     * @return the address of the sender
+     * @throws IOException if the transport fails or has been closed
+     */
+    SocketAddress receive(ByteBuffer buffer) throws IOException;
+
+    /**
+     * Sends the bytes between the buffer's position and limit as one datagram
+     * Safe to call from several threads at once, and while another thread is blocked in receive()
+     * @param message: the payload to send. It may be reused by the caller once this returns
+     * @param target: the address to send the datagram to
+     * @throws IOException if the datagram could not be sent
+     */
+    void send(ByteBuffer message, SocketAddress target) throws IOException;
+
+    /**
+     * @return true if payloads are read and written without a copy when held in direct buffers rather than heap buffers
+     */
+    boolean prefersDirectBuffers();
+
+    /**
+     * @return the local address the transport is bound to
+     */
+    SocketAddress getLocalAddress();
+}
@@ -0,0 +1,59 @@
+package Server.Transport;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Opens several UDP channels bound to the same port with SO_REUSEPORT, e.g. on Linux
+ * The kernel then spreads incoming datagrams across the channels by a hash of each client's address and port,
+ * so every channel can be read by its own thread and a client's requests always arrive on the same channel
+ * StandardSocketOptions.SO_REUSEPORT is looked up reflectively, since the project is built for Java 8
+ */
+public class ReusePortChannels {
+    private static final SocketOption<Boolean> SO_REUSEPORT = findReusePortOption();
+
+    /**
+     * @return true if the running JDK and operating system support SO_REUSEPORT on UDP channels
+     */
+    public static boolean isSupported() {
+        if (SO_REUSEPORT == null) return false;
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            return channel.supportedOptions().contains(SO_REUSEPORT);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Opens a channel in blocking mode, bound to port with SO_REUSEPORT set
+     * Call again with the same port to open the next channel of the group
+     * @param port: the port shared by the group
+     * @return the bound channel
+     * @throws UnsupportedOperationException if SO_REUSEPORT is not supported, see isSupported
+     * @throws IOException if the channel could not be opened or bound
+     */
+    public static DatagramChannel open(int port) throws IOException {
+        if (SO_REUSEPORT == null) throw new UnsupportedOperationException("SO_REUSEPORT is not supported by this JDK");
+        DatagramChannel channel = DatagramChannel.open();
+        try {
+            channel.setOption(SO_REUSEPORT, true);
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            return channel.bind(new InetSocketAddress(port));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> findReusePortOption() {
+        try {
+            return (SocketOption<Boolean>) StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
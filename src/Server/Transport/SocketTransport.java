@@ -0,0 +1,79 @@
+package Server.Transport;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * Transport over a blocking DatagramSocket, as the server has always used
+ * Payloads in heap buffers are received into and sent from the buffer's array directly.
+ * Payloads in direct buffers are copied through an array, since DatagramPacket can only hold a byte[]
+ */
+public class SocketTransport implements IDatagramTransport {
+    private final DatagramSocket socket;
+    // Each thread reuses its own packet, so sending or receiving does not allocate one
+    private final ThreadLocal<DatagramPacket> packets = ThreadLocal.withInitial(() -> new DatagramPacket(new byte[0], 0));
+
+    /**
+     * @param port: the port to bind to
+     * @throws IOException if the socket could not be opened or bound
+     */
+    public SocketTransport(int port) throws IOException {
+        this(new DatagramSocket(port));
+    }
+
+    /**
+     * @param socket: an open socket. It is closed when this transport is closed
+     */
+    public SocketTransport(DatagramSocket socket) {
+        this.socket = socket;
+    }
+
+    @Override
+    public SocketAddress receive(ByteBuffer buffer) throws IOException {
+        DatagramPacket packet = packets.get();
+        if (buffer.hasArray()) {
+            packet.setData(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            socket.receive(packet);
+            buffer.position(buffer.position() + packet.getLength());
+        } else {
+            packet.setData(new byte[buffer.remaining()]);
+            socket.receive(packet);
+            buffer.put(packet.getData(), 0, packet.getLength());
+        }
+        return packet.getSocketAddress();
+    }
+
+    @Override
+    public void send(ByteBuffer message, SocketAddress target) throws IOException {
+        DatagramPacket packet = packets.get();
+        int length = message.remaining();
+        if (message.hasArray()) {
+            packet.setData(message.array(), message.arrayOffset() + message.position(), length);
+        } else {
+            byte[] bytesArr = new byte[length];
+            message.duplicate().get(bytesArr);
+            packet.setData(bytesArr);
+        }
+        packet.setSocketAddress(target);
+        socket.send(packet);
+        message.position(message.limit());
+    }
+
+    @Override
+    public boolean prefersDirectBuffers() {
+        return false;
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() {
+        return socket.getLocalSocketAddress();
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+    }
+}
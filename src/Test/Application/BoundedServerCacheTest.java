@@ -0,0 +1,71 @@
+package Test.Application;
+
+import Server.Application.BoundedServerCache;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BoundedServerCacheTest {
+    long now;
+    BoundedServerCache cache;
+
+    @Before
+    public void createCache() {
+        now = 0;
+        cache = new BoundedServerCache(3, 1000, () -> now);
+    }
+
+    @Test
+    public void retryWithinTtlFindsResponse() {
+        cache.addRequest("1/127.0.0.1:5000", "Booking confirmation ID: 1");
+        now = 999;
+        assertTrue(cache.hasRequest("1/127.0.0.1:5000"));
+        assertEquals("Booking confirmation ID: 1", cache.getResponse("1/127.0.0.1:5000"));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void responseExpiresAfterTtl() {
+        cache.addRequest("1/127.0.0.1:5000", "Booking confirmation ID: 1");
+        now = 1000;
+        assertFalse(cache.hasRequest("1/127.0.0.1:5000"));
+        assertNull(cache.getResponse("1/127.0.0.1:5000"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getExpirations());
+    }
+
+    @Test
+    public void expiredResponsesMakeRoomBeforeEviction() {
+        cache.addRequest("1", "a");
+        cache.addRequest("2", "b");
+        now = 1500;
+        cache.addRequest("3", "c");
+        cache.addRequest("4", "d");
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getExpirations());
+        assertEquals(0, cache.getRejections());
+    }
+
+    @Test
+    public void newRequestsAreRejectedWhileFull() {
+        cache.addRequest("1", "a");
+        now = 500;
+        cache.addRequest("2", "b");
+        cache.addRequest("3", "c");
+
+        // Every response is kept for its whole TTL, and a new request is turned away instead of being run
+        assertTrue(cache.hasRequest("4"));
+        assertEquals(BoundedServerCache.FULL_RESPONSE, cache.getResponse("4"));
+        assertEquals("a", cache.getResponse("1"));
+        assertEquals(1, cache.getRejections());
+
+        // Its retry is run once the eldest response expires
+        now = 1000;
+        assertFalse(cache.hasRequest("4"));
+        assertEquals("b", cache.getResponse("2"));
+    }
+}
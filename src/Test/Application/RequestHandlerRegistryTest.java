@@ -0,0 +1,77 @@
+package Test.Application;
+
+import Client.ClientRequest;
+import Client.Protocol;
+import Server.Application.RequestHandlerRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RequestHandlerRegistryTest {
+    static final InetSocketAddress CLIENT = new InetSocketAddress("192.168.1.10", 50000);
+    RequestHandlerRegistry registry;
+
+    @Before
+    public void createRegistry() {
+        registry = new RequestHandlerRegistry(Protocol.HEARTBEAT);
+        registry.register(Protocol.HEARTBEAT, "heartbeat", (client, clientRequest, transport) -> "Request received by server");
+        registry.register(Protocol.GET_AVAILABILITY, "getAvailability",
+                (client, clientRequest, transport) -> "Facility availability: " + clientRequest.getArguments().get(0));
+        registry.register(Protocol.STATS, "stats", (client, clientRequest, transport) -> registry.getStatsReport());
+    }
+
+    @Test
+    public void dispatchesByOpcode() {
+        assertEquals("Facility availability: LT1", handle(Protocol.GET_AVAILABILITY, "LT1"));
+        assertEquals("Request received by server", handle(Protocol.HEARTBEAT, "Sending heartbeat"));
+        // Unknown opcodes go to the fallback
+        assertEquals("Request received by server", handle(42, "Unknown"));
+
+        assertEquals(1, registry.getLatency(Protocol.GET_AVAILABILITY).getCount());
+        assertEquals(2, registry.getLatency(Protocol.HEARTBEAT).getCount());
+        assertNull(registry.getLatency(42));
+        assertEquals(Arrays.asList(0, 2, 99), registry.getOpcodes());
+    }
+
+    @Test
+    public void registeringReplacesHandler() {
+        registry.register(Protocol.GET_AVAILABILITY, "getAvailability", (client, clientRequest, transport) -> "404: Facility not found");
+        assertEquals("404: Facility not found", handle(Protocol.GET_AVAILABILITY, "LT1"));
+    }
+
+    @Test
+    public void statsOpcodeReportsEveryOperation() {
+        handle(Protocol.GET_AVAILABILITY, "LT1");
+        registry.getDecodeLatency().record(2_000);
+        registry.getEncodeLatency().record(3_000);
+
+        String report = handle(Protocol.STATS);
+        String[] lines = report.split("\\R");
+        assertEquals(7, lines.length);
+        assertTrue(lines[1].startsWith("operation"));
+        assertTrue(lines[2].matches("decode +1 .* 2\\.0"));
+        assertTrue(lines[3].startsWith("0 heartbeat"));
+        assertTrue(lines[4].matches("2 getAvailability +1 .*"));
+        // Still running while the report is made
+        assertTrue(lines[5].matches("99 stats +0 .*"));
+        assertTrue(lines[6].matches("encode +1 .* 3\\.0"));
+    }
+
+    @Test
+    public void missingFallbackIsReported() {
+        RequestHandlerRegistry empty = new RequestHandlerRegistry(Protocol.HEARTBEAT);
+        assertThrows(IllegalStateException.class, () -> empty.handle(CLIENT, new ClientRequest(7, Collections.emptyList(), 1), null));
+    }
+
+    private String handle(int opcode, String... arguments) {
+        return registry.handle(CLIENT, new ClientRequest(opcode, Arrays.asList(arguments), 1), null);
+    }
+}
@@ -0,0 +1,114 @@
+package Test.Application;
+
+import Client.Protocol;
+import Server.Application.SlidingWindowRequestCache;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SlidingWindowRequestCacheTest {
+    static final InetSocketAddress CLIENT_A = new InetSocketAddress("192.168.1.10", 50000);
+    static final InetSocketAddress CLIENT_B = new InetSocketAddress("192.168.1.10", 50001);
+    static final InetSocketAddress CLIENT_V6 = new InetSocketAddress("::1", 50000);
+    long now;
+    SlidingWindowRequestCache cache;
+
+    @Before
+    public void createCache() {
+        now = 0;
+        cache = new SlidingWindowRequestCache(4, 1000, () -> now);
+    }
+
+    @Test
+    public void retryFindsResponse() {
+        assertNull(cache.getResponse(CLIENT_A, 1));
+        cache.addRequest(CLIENT_A, 1, "Booking confirmation ID: 1");
+        assertTrue(cache.hasRequest(CLIENT_A, 1));
+        assertEquals("Booking confirmation ID: 1", cache.getResponse(CLIENT_A, 1));
+
+        // Same address on another port is another client
+        assertNull(cache.getResponse(CLIENT_B, 1));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void requestsOlderThanWindowAreStale() {
+        for (int requestId = 1; requestId <= 6; requestId++) {
+            cache.addRequest(CLIENT_A, requestId, "Response " + requestId);
+        }
+        // Window of 4 holds 3..6
+        assertEquals("Response 3", cache.getResponse(CLIENT_A, 3));
+        assertEquals("Response 6", cache.getResponse(CLIENT_A, 6));
+        assertTrue(cache.hasRequest(CLIENT_A, 2));
+        assertEquals(SlidingWindowRequestCache.STALE_RESPONSE, cache.getResponse(CLIENT_A, 2));
+        assertEquals(1, cache.getStaleRequests());
+        assertFalse(cache.hasRequest(CLIENT_A, 7));
+    }
+
+    @Test
+    public void idsSkippedByOtherRequestsAreNotAnswered() {
+        // Requests 2 and 3 were not at-most-once, so were never cached
+        cache.addRequest(CLIENT_A, 1, "Response 1");
+        cache.addRequest(CLIENT_A, 4, "Response 4");
+        assertFalse(cache.hasRequest(CLIENT_A, 3));
+        assertEquals("Response 1", cache.getResponse(CLIENT_A, 1));
+    }
+
+    @Test
+    public void idleClientsAreForgotten() {
+        cache.addRequest(CLIENT_A, 1, "Response 1");
+        now = 1500;
+        cache.addRequest(CLIENT_B, 20, "Response 20");
+        assertEquals(1, cache.getClientCount());
+        assertFalse(cache.hasRequest(CLIENT_A, 1));
+
+        // A client that comes back after being forgotten starts over, e.g. after restarting on the same port
+        now = 3000;
+        cache.addRequest(CLIENT_B, 1, "Response 1 again");
+        assertEquals("Response 1 again", cache.getResponse(CLIENT_B, 1));
+    }
+
+    @Test
+    public void restartedClientStartsNewEpoch() {
+        int firstRun = Protocol.firstRequestId(10_000);
+        for (int requestId = firstRun; requestId < firstRun + 6; requestId++) {
+            cache.addRequest(CLIENT_A, requestId, "Response " + requestId);
+        }
+        // Restarted on the same port before being forgotten, and numbering from 1 again in the new epoch
+        int secondRun = Protocol.firstRequestId(11_000);
+        assertFalse(cache.hasRequest(CLIENT_A, secondRun));
+        cache.addRequest(CLIENT_A, secondRun, "Response again");
+        assertEquals("Response again", cache.getResponse(CLIENT_A, secondRun));
+
+        // A late duplicate from before the restart is not run again, nor does it reset the window
+        assertEquals(SlidingWindowRequestCache.STALE_RESPONSE, cache.getResponse(CLIENT_A, firstRun + 5));
+        cache.addRequest(CLIENT_A, firstRun + 5, "Response from before");
+        assertEquals("Response again", cache.getResponse(CLIENT_A, secondRun));
+
+        // The epoch after the last one wraps around to 0, and is still newer
+        cache.addRequest(CLIENT_B, Protocol.firstRequestId(0x7FFF * 1000L), "Last epoch");
+        int wrapped = Protocol.firstRequestId(0x8000 * 1000L);
+        assertFalse(cache.hasRequest(CLIENT_B, wrapped));
+        cache.addRequest(CLIENT_B, wrapped, "First epoch");
+        assertEquals("First epoch", cache.getResponse(CLIENT_B, wrapped));
+    }
+
+    @Test
+    public void manyClientsAndIpv6ClientsAreKeptApart() {
+        for (int port = 1; port <= 1000; port++) {
+            cache.addRequest(new InetSocketAddress("10.0.0.1", port), 1, "Response " + port);
+        }
+        cache.addRequest(CLIENT_V6, 1, "Response v6");
+        assertEquals(1001, cache.getClientCount());
+        assertEquals("Response 500", cache.getResponse(new InetSocketAddress("10.0.0.1", 500), 1));
+        assertEquals("Response v6", cache.getResponse(CLIENT_V6, 1));
+        assertNull(cache.getResponse(new InetSocketAddress("10.0.0.2", 500), 1));
+    }
+}
@@ -0,0 +1,218 @@
+package Test.Application;
+
+import Server.Application.BoundedServerCache;
+import Server.Application.IRequestCache;
+import Server.Application.SlidingWindowRequestCache;
+import Server.Application.StripedRequestCache;
+import Server.BusinessLogic.FacilitiesBookingSystem;
+import Server.DataAccess.ServerDB;
+import Server.Exceptions.*;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class StripedRequestCacheTest {
+    static final InetSocketAddress CLIENT_A = new InetSocketAddress("192.168.1.10", 50000);
+    static final InetSocketAddress CLIENT_B = new InetSocketAddress("192.168.1.10", 50001);
+
+    @Test
+    public void concurrentDuplicateBookingRunsOnce() throws Exception {
+        // 16 copies of one create booking request arrive at once, as retries handled by worker threads would
+        FacilitiesBookingSystem fbs = new FacilitiesBookingSystem(new ServerDB());
+        StripedRequestCache cache = new StripedRequestCache(new SlidingWindowRequestCache(16, 60_000));
+        AtomicInteger bookingsRun = new AtomicInteger();
+
+        List<String> responses = runConcurrently(16, () -> cache.computeIfAbsent(CLIENT_A, 1, () -> {
+            bookingsRun.incrementAndGet();
+            return createBooking(fbs, "LT1", 600, 660);
+        }));
+
+        assertEquals(1, bookingsRun.get());
+        assertEquals(1, cache.getComputations());
+        assertEquals(15, cache.getHits() + cache.getCoalesced());
+        for (String response : responses) {
+            assertEquals(responses.get(0), response);
+        }
+        assertTrue(responses.get(0).startsWith("Booking confirmation ID: "));
+    }
+
+    @Test
+    public void retransmissionsWaitForOriginal() throws Exception {
+        // The original is still running when its retransmissions arrive, so the response is not cached yet
+        StripedRequestCache cache = new StripedRequestCache(new SlidingWindowRequestCache(16, 60_000), 1);
+        CountDownLatch originalStarted = new CountDownLatch(1);
+        CountDownLatch finishOriginal = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Future<String> original = executor.submit(() -> cache.computeIfAbsent(CLIENT_A, 1, () -> {
+            originalStarted.countDown();
+            await(finishOriginal);
+            return "Booking confirmation ID: 1";
+        }));
+        originalStarted.await();
+
+        List<Future<String>> retransmissions = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            retransmissions.add(executor.submit(() -> cache.computeIfAbsent(CLIENT_A, 1, () -> "Ran again")));
+        }
+        while (cache.getCoalesced() < 2) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, cache.getInFlightCount());
+
+        // Another request runs while the original is in flight, although both share the only lock
+        assertEquals("Booking confirmation ID: 2", executor.submit(() ->
+                cache.computeIfAbsent(CLIENT_B, 1, () -> "Booking confirmation ID: 2")).get(5, TimeUnit.SECONDS));
+
+        finishOriginal.countDown();
+        assertEquals("Booking confirmation ID: 1", original.get());
+        for (Future<String> retransmission : retransmissions) {
+            assertEquals("Booking confirmation ID: 1", retransmission.get());
+        }
+        executor.shutdown();
+
+        assertEquals(2, cache.getComputations());
+        assertEquals(2, cache.getCoalesced());
+        assertEquals(0, cache.getInFlightCount());
+        // Later retries are answered from the cache
+        assertEquals("Booking confirmation ID: 1", cache.computeIfAbsent(CLIENT_A, 1, () -> "Ran again"));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void failedRequestIsNotCached() {
+        StripedRequestCache cache = new StripedRequestCache(new SlidingWindowRequestCache(16, 60_000), 4);
+
+        assertThrows(IllegalStateException.class, () -> cache.computeIfAbsent(CLIENT_A, 1, () -> {
+            throw new IllegalStateException("Handler failed");
+        }));
+        assertEquals(0, cache.getInFlightCount());
+        assertEquals("Booking updated successfully", cache.computeIfAbsent(CLIENT_A, 1, () -> "Booking updated successfully"));
+        assertEquals(2, cache.getComputations());
+    }
+
+    @Test
+    public void responseExpiringDuringLookupIsReturned() {
+        // Every read of the clock moves it on 600ms, so a response looked up twice would expire between the lookups
+        long[] now = {0};
+        BoundedServerCache responses = new BoundedServerCache(100, 1000, () -> now[0] += 600);
+        responses.addRequest(CLIENT_A, 1, "Booking confirmation ID: 1");
+        StripedRequestCache cache = new StripedRequestCache(responses, 4);
+
+        assertEquals("Booking confirmation ID: 1", cache.computeIfAbsent(CLIENT_A, 1, () -> "Ran again"));
+        assertEquals(0, cache.getComputations());
+        assertEquals(1, responses.getHits());
+    }
+
+    @Test
+    public void defaultComputeIfAbsentRunsOnce() throws Exception {
+        IRequestCache cache = new BoundedServerCache(100, 60_000);
+        AtomicInteger handlersRun = new AtomicInteger();
+
+        List<String> responses = runConcurrently(8, () -> cache.computeIfAbsent(CLIENT_A, 1, () -> {
+            handlersRun.incrementAndGet();
+            sleep(20);
+            return "Booking updated successfully";
+        }));
+
+        assertEquals(1, handlersRun.get());
+        for (String response : responses) {
+            assertEquals("Booking updated successfully", response);
+        }
+    }
+
+    @Test
+    public void distinctRequestsEachRun() {
+        FacilitiesBookingSystem fbs = new FacilitiesBookingSystem(new ServerDB());
+        StripedRequestCache cache = new StripedRequestCache(new SlidingWindowRequestCache(16, 60_000), 4);
+
+        String first = cache.computeIfAbsent(CLIENT_A, 1, () -> createBooking(fbs, "LT1", 600, 660));
+        // Same id from another client, and the next id from the same client, are new requests
+        String otherClient = cache.computeIfAbsent(CLIENT_B, 1, () -> createBooking(fbs, "LT1", 600, 660));
+        String nextRequest = cache.computeIfAbsent(CLIENT_A, 2, () -> createBooking(fbs, "LT1", 700, 760));
+        // A retry after the request has finished is answered from the cache
+        String retry = cache.computeIfAbsent(CLIENT_A, 1, () -> createBooking(fbs, "LT1", 800, 860));
+
+        assertTrue(first.startsWith("Booking confirmation ID: "));
+        assertEquals("409: Booking time not available", otherClient);
+        assertTrue(nextRequest.startsWith("Booking confirmation ID: "));
+        assertEquals(first, retry);
+        assertEquals(3, cache.getComputations());
+        assertEquals(1, cache.getHits());
+        assertEquals(4, cache.getStripes());
+    }
+
+    // =====================================
+    // Helpers
+    // =====================================
+
+    /**
+     * Starts the given number of threads at once, each running task
+     * @return what each thread's task returned
+     */
+    static List<String> runConcurrently(int threads, Callable<String> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+
+        List<String> results = new ArrayList<>();
+        for (Future<String> future : futures) {
+            results.add(future.get());
+        }
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+        return results;
+    }
+
+    /**
+     * Books a facility on monday, answering as Server's create booking handler does
+     */
+    static String createBooking(FacilitiesBookingSystem fbs, String facilityName, int startMinute, int endMinute) {
+        try {
+            sleep(20); // Long enough for the copies of the request to pile up
+            return "Booking confirmation ID: " + fbs.createBooking(facilityName, 1, startMinute, endMinute, "192.168.1.10:50000");
+        } catch (TimingUnavailableException e) {
+            return "409: Booking time not available";
+        } catch (FacilityNotFoundException e) {
+            return "404: Facility not found";
+        } catch (InvalidDatetimeException | ParseException e) {
+            return "400: Invalid datetime provided";
+        }
+    }
+
+    static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
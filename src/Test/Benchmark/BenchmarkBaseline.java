@@ -0,0 +1,110 @@
+package Test.Benchmark;
+
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stored JMH results that later runs are compared against
+ * The baseline is a CSV file with one line per benchmark and parameter combination:
+ * benchmark,params,ops_per_s,bytes_per_op
+ * It is written on the first run, and rewritten when run with -Dbenchmark.updateBaseline=true
+ */
+public class BenchmarkBaseline {
+    private static final String HEADER = "benchmark,params,ops_per_s,bytes_per_op";
+
+    /**
+     * Prints each result next to its baseline, and stores the results as the new baseline if requested
+     * @param results: results of a JMH run with the GC profiler enabled
+     * @param baselineFile: path of the CSV baseline
+     */
+    public static void compareAndReport(Collection<RunResult> results, String baselineFile) throws IOException {
+        Path path = Paths.get(baselineFile);
+        Map<String, double[]> baseline = Files.exists(path) ? read(path) : new TreeMap<>();
+        Map<String, double[]> current = summarise(results);
+
+        System.out.println();
+        System.out.printf("%-92s %14s %9s %12s %9s%n", "Benchmark", "ops/s", "vs base", "B/op", "vs base");
+        for (Map.Entry<String, double[]> entry : current.entrySet()) {
+            double[] now = entry.getValue();
+            double[] base = baseline.get(entry.getKey());
+            System.out.printf("%-92s %14.0f %9s %12.1f %9s%n", entry.getKey().replace(",", " "),
+                    now[0], base == null ? "new" : percentChange(base[0], now[0]),
+                    now[1], base == null ? "new" : percentChange(base[1], now[1]));
+        }
+
+        if (baseline.isEmpty() || Boolean.getBoolean("benchmark.updateBaseline")) {
+            baseline.putAll(current);
+            write(path, baseline);
+            System.out.println("Baseline written to " + path);
+        }
+    }
+
+    // =====================================
+    // Private methods
+    // =====================================
+
+    /**
+     * @return {ops/s, bytes allocated per op} keyed by "benchmark,params"
+     */
+    private static Map<String, double[]> summarise(Collection<RunResult> results) {
+        Map<String, double[]> summary = new LinkedHashMap<>();
+        for (RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            benchmark = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+            List<String> params = new ArrayList<>();
+            for (String key : result.getParams().getParamsKeys()) {
+                params.add(key + "=" + result.getParams().getParam(key));
+            }
+            double opsPerSecond = result.getPrimaryResult().getScore();
+            summary.put(benchmark + "," + String.join(" ", params), new double[]{opsPerSecond, getAllocatedBytesPerOp(result)});
+        }
+        return summary;
+    }
+
+    private static double getAllocatedBytesPerOp(RunResult result) {
+        for (String label : result.getSecondaryResults().keySet()) {
+            if (!label.endsWith("gc.alloc.rate.norm")) continue;
+            Result<?> allocationRate = result.getSecondaryResults().get(label);
+            return allocationRate.getScore();
+        }
+        return Double.NaN; // Run without the GC profiler
+    }
+
+    private static String percentChange(double base, double now) {
+        if (base == 0 || Double.isNaN(base) || Double.isNaN(now)) return "-";
+        return String.format("%+.1f%%", 100 * (now - base) / base);
+    }
+
+    private static Map<String, double[]> read(Path path) throws IOException {
+        Map<String, double[]> baseline = new TreeMap<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            if (line.isEmpty() || line.equals(HEADER)) continue;
+            String[] columns = line.split(",");
+            baseline.put(columns[0] + "," + columns[1],
+                    new double[]{Double.parseDouble(columns[2]), Double.parseDouble(columns[3])});
+        }
+        return baseline;
+    }
+
+    private static void write(Path path, Map<String, double[]> baseline) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(HEADER);
+        for (Map.Entry<String, double[]> entry : new TreeMap<>(baseline).entrySet()) {
+            lines.add(String.format(Locale.ROOT, "%s,%.0f,%.1f", entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+        }
+        Files.write(path, lines, StandardCharsets.UTF_8);
+    }
+}
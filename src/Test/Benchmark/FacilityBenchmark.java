@@ -0,0 +1,128 @@
+package Test.Benchmark;
+
+import Server.Entities.Concrete.BitmapFacility;
+import Server.Entities.Concrete.Facility;
+import Server.Entities.Concrete.TimeSlot;
+import Server.Exceptions.BookingNotFoundException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of the two facility implementations on a densely booked day, as a badminton court might be
+ * Every day is booked in blocks of blockMinutes, leaving every fourth block free
+ * INDEX is Facility, which checks conflicts in its BookingIntervalIndex and lists availability by walking the
+ * bookings. BITMAP is BitmapFacility, which does both on its OccupancyBitmap
+ * Run with: java Test.Benchmark.FacilityBenchmark [JMH options] e.g. -p facilityType=BITMAP
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FacilityBenchmark {
+    private static final int DAY = 3;
+    private static final List<Integer> ALL_DAYS = Arrays.asList(0, 1, 2, 3, 4, 5, 6);
+
+    @Param({"INDEX", "BITMAP"})
+    public String facilityType;
+
+    @Param({"30", "5"})
+    public int blockMinutes;
+
+    private Facility facility;
+    private TimeSlot[] candidates; // Every block of the day, booked or free
+    private int nextCandidate = 0;
+    private String movedConfirmationId;
+    private TimeSlot movedFrom;
+    private TimeSlot movedTo;
+
+    @Setup
+    public void setUp() {
+        facility = "BITMAP".equals(facilityType)
+                ? new BitmapFacility("BTC1", "Badminton Court")
+                : new Facility("BTC1", "Badminton Court");
+        List<TimeSlot> blocks = new ArrayList<>();
+        for (int start = 0; start + blockMinutes <= TimeSlot.MINUTES_PER_DAY; start += blockMinutes) {
+            blocks.add(new TimeSlot(start, start + blockMinutes - 1));
+        }
+        for (int day : ALL_DAYS) {
+            for (int i = 0; i < blocks.size(); i++) {
+                if (i % 4 == 3) continue;
+                String confirmationId = facility.addBooking(day, "client", blocks.get(i), null);
+                if (day == DAY && i == 0) movedConfirmationId = confirmationId;
+            }
+        }
+        candidates = blocks.toArray(new TimeSlot[0]);
+        movedFrom = blocks.get(0);
+        movedTo = blocks.get(3); // Left free
+    }
+
+    // =====================================
+    // Benchmarks
+    // =====================================
+
+    /**
+     * Checks one block for conflicts, cycling through the day's blocks
+     */
+    @Benchmark
+    public boolean checkConflict() {
+        TimeSlot timeSlot = candidates[nextCandidate];
+        nextCandidate = (nextCandidate + 1) % candidates.length;
+        return facility.overlapsBooking(DAY, timeSlot, null);
+    }
+
+    /**
+     * Lists the free time slots of every day, as sent to clients and observers
+     * Nothing is booked in between, so after the first call this is a read from the facility's AvailabilityCache
+     */
+    @Benchmark
+    public String getAvailability() {
+        return facility.getAvailability(ALL_DAYS);
+    }
+
+    /**
+     * Checks and moves a booking to a free block, then moves it back
+     */
+    @Benchmark
+    public boolean moveBooking() throws BookingNotFoundException {
+        TimeSlot target = facility.getBookingByConfirmationId(movedConfirmationId).getStartMinute() == movedFrom.getStartMinute()
+                ? movedTo : movedFrom;
+        if (facility.overlapsBooking(DAY, target, facility.getBookingByConfirmationId(movedConfirmationId))) {
+            throw new IllegalStateException("Block should be free");
+        }
+        return facility.updateBooking(DAY, movedConfirmationId, target, null);
+    }
+
+    /**
+     * @param args: any JMH options, e.g. -p facilityType=BITMAP to run one implementation only
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLineOptions);
+        if (commandLineOptions.getIncludes().isEmpty()) {
+            options.include(FacilityBenchmark.class.getSimpleName());
+        }
+        new Runner(options.build()).run();
+    }
+}
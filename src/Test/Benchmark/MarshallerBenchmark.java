@@ -0,0 +1,171 @@
+package Test.Benchmark;
+
+import Client.AvailabilityRequest;
+import Client.ClientRequest;
+import Marshaller.Marshallable;
+import Marshaller.Marshaller;
+import Marshaller.Unmarshaller;
+import Marshaller.WireFormat;
+import Server.Application.ServerResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the Marshaller package on the messages the client and server exchange
+ * Reports ops/s, and bytes allocated per op through the GC profiler (gc.alloc.rate.norm)
+ * Run with: java Test.Benchmark.MarshallerBenchmark
+ * The results are compared against marshaller-baseline.csv, see BenchmarkBaseline
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarshallerBenchmark {
+    static final String BASELINE_FILE = "src/Test/Benchmark/marshaller-baseline.csv";
+
+    /**
+     * heartbeat: the request sent on connecting
+     * availability: 7-day availability request with string arguments
+     * availabilityTyped: the same request as a typed AvailabilityRequest
+     * longArguments: request with 64 string arguments
+     * Each shape is paired with the server's reply to it for the response benchmarks
+     */
+    @Param({"heartbeat", "availability", "availabilityTyped", "longArguments"})
+    public String shape;
+
+    @Param({"LEGACY", "COMPACT", "COMPACT_VARINT"})
+    public String format;
+
+    private WireFormat wireFormat;
+    private ClientRequest request;
+    private byte[] requestBytes;
+    private ServerResponse response;
+    private byte[] responseBytes;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setUp() throws IllegalAccessException {
+        wireFormat = WireFormat.valueOf(format);
+        request = createRequest(shape);
+        requestBytes = Marshaller.marshall(request, wireFormat);
+        response = createResponse(shape);
+        response.setId(request.getId());
+        responseBytes = Marshaller.marshall(response, wireFormat);
+        buffer = ByteBuffer.allocate(4096);
+    }
+
+    static ClientRequest createRequest(String shape) {
+        switch (shape) {
+            case "heartbeat":
+                return new ClientRequest(0, Arrays.asList("Sending heartbeat from: /192.168.1.10"), 1);
+            case "availability":
+                return new ClientRequest(2, Arrays.asList("LT1", "0", "1", "2", "3", "4", "5", "6", "1"), 2);
+            case "availabilityTyped":
+                return new AvailabilityRequest("LT1", 0x7F, true, 2);
+            case "longArguments":
+                List<String> arguments = new ArrayList<>();
+                for (int i = 0; i < 64; i++) {
+                    arguments.add("argument" + i);
+                }
+                return new ClientRequest(3, arguments, 3);
+            default:
+                throw new IllegalArgumentException("Unknown request shape: " + shape);
+        }
+    }
+
+    /**
+     * The server's reply to each request shape
+     */
+    static ServerResponse createResponse(String shape) {
+        switch (shape) {
+            case "heartbeat":
+                return new ServerResponse("Request received by server");
+            case "availability":
+            case "availabilityTyped":
+                StringBuilder availability = new StringBuilder("Facility availability: ");
+                for (int day = 0; day <= 6; day++) {
+                    availability.append(day).append("/00/00 to ").append(day).append("/23/59, ");
+                }
+                return new ServerResponse(availability.toString());
+            default:
+                return new ServerResponse("Booking confirmation ID: 192.168.1.10:50000%=day1%=BTC1%=0");
+        }
+    }
+
+    // =====================================
+    // Benchmarks
+    // =====================================
+    @Benchmark
+    public byte[] marshallRequest() throws IllegalAccessException {
+        return Marshaller.marshall(request, wireFormat);
+    }
+
+    @Benchmark
+    public int marshallRequestIntoBuffer() throws IllegalAccessException {
+        buffer.clear();
+        return Marshaller.marshall(request, buffer, wireFormat);
+    }
+
+    @Benchmark
+    public ClientRequest unmarshallRequest() throws ClassNotFoundException {
+        return Unmarshaller.unmarshall(requestBytes, ClientRequest.class);
+    }
+
+    @Benchmark
+    public ClientRequest roundTripRequest() throws IllegalAccessException {
+        return Marshallable.unmarshall(request.marshall(wireFormat), ClientRequest.class);
+    }
+
+    @Benchmark
+    public ServerResponse roundTripResponse() throws IllegalAccessException {
+        return Marshallable.unmarshall(response.marshall(wireFormat), ServerResponse.class);
+    }
+
+    @Benchmark
+    public ServerResponse unmarshallResponse() throws ClassNotFoundException {
+        return Unmarshaller.unmarshall(responseBytes, ServerResponse.class);
+    }
+
+    /**
+     * Runs the suite with the GC profiler and compares the results against the stored baseline
+     * @param args: any JMH options, e.g. a benchmark name to run only that benchmark
+     */
+    public static void main(String[] args) throws RunnerException, IOException, CommandLineOptionException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class);
+        if (commandLineOptions.getIncludes().isEmpty()) {
+            options.include(MarshallerBenchmark.class.getSimpleName());
+        }
+        Collection<RunResult> results = new Runner(options.build()).run();
+        BenchmarkBaseline.compareAndReport(results, BASELINE_FILE);
+    }
+}
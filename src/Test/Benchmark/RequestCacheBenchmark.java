@@ -0,0 +1,119 @@
+package Test.Benchmark;
+
+import Server.Application.BoundedServerCache;
+import Server.Application.IRequestCache;
+import Server.Application.SlidingWindowRequestCache;
+import Server.Application.StripedRequestCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JMH contention benchmark of the at-most-once cache's computeIfAbsent, with 8 worker threads sharing one cache
+ * Each thread is a client sending new requests, each followed by a retry that is answered from the cache
+ * handlerWork is the CPU work of running a request
+ * BOUNDED runs every request under the cache's monitor, the default computeIfAbsent. The STRIPED caches only lock
+ * around the lookup, and run the request outside of the lock
+ * Run with: java Test.Benchmark.RequestCacheBenchmark [JMH options] e.g. -t 4 for 4 threads
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class RequestCacheBenchmark {
+    @Param({"BOUNDED", "STRIPED_BOUNDED", "STRIPED_SLIDING_WINDOW"})
+    public String cacheType;
+
+    @Param({"0", "1000"})
+    public int handlerWork;
+
+    private IRequestCache cache;
+    private final AtomicInteger nextPort = new AtomicInteger(50000);
+
+    @Setup
+    public void setUp() {
+        switch (cacheType) {
+            case "BOUNDED":
+                cache = new BoundedServerCache(BoundedServerCache.DEFAULT_MAX_ENTRIES, BoundedServerCache.DEFAULT_TTL_MILLIS);
+                break;
+            case "STRIPED_BOUNDED":
+                cache = new StripedRequestCache(new BoundedServerCache(BoundedServerCache.DEFAULT_MAX_ENTRIES,
+                        BoundedServerCache.DEFAULT_TTL_MILLIS));
+                break;
+            case "STRIPED_SLIDING_WINDOW":
+                cache = new StripedRequestCache(new SlidingWindowRequestCache(SlidingWindowRequestCache.DEFAULT_WINDOW_SIZE,
+                        BoundedServerCache.DEFAULT_TTL_MILLIS));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown cache type: " + cacheType);
+        }
+    }
+
+    /**
+     * One client per benchmark thread, numbering its requests 1, 2, 3... as the real client does
+     */
+    @State(Scope.Thread)
+    public static class Client {
+        InetSocketAddress address;
+        int requestId = 0;
+
+        @Setup
+        public void setUp(RequestCacheBenchmark benchmark) {
+            address = new InetSocketAddress("192.168.1.10", benchmark.nextPort.getAndIncrement());
+        }
+    }
+
+    // =====================================
+    // Benchmarks
+    // =====================================
+
+    /**
+     * A new request, which runs the handler, then a retry of it
+     */
+    @Benchmark
+    public String requestAndRetry(Client client) {
+        int requestId = ++client.requestId;
+        cache.computeIfAbsent(client.address, requestId, () -> {
+            Blackhole.consumeCPU(handlerWork);
+            return "Booking confirmation ID: " + requestId;
+        });
+        return cache.computeIfAbsent(client.address, requestId, () -> {
+            throw new IllegalStateException("Retry ran the request again");
+        });
+    }
+
+    /**
+     * @param args: any JMH options, e.g. -p cacheType=STRIPED_SLIDING_WINDOW to run one cache only
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLineOptions);
+        if (commandLineOptions.getIncludes().isEmpty()) {
+            options.include(RequestCacheBenchmark.class.getSimpleName());
+        }
+        new Runner(options.build()).run();
+    }
+}
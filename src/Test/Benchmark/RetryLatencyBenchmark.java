@@ -0,0 +1,105 @@
+package Test.Benchmark;
+
+import Client.ClientRequest;
+import Marshaller.WireFormat;
+import Server.Application.Server;
+import Server.Application.ServerConfig;
+import Server.Metrics.LatencyHistogram;
+import Server.Transport.FaultProfile;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+
+/**
+ * Measures request latency, including retries, over loopback against a server that loses a fraction of its replies
+ * The server's losses are drawn from a fixed seed and a single client sends one request at a time, so every run
+ * at a given loss rate loses the same replies and makes the same retries
+ * Run with: java Test.Benchmark.RetryLatencyBenchmark [loss rates...] e.g. java Test.Benchmark.RetryLatencyBenchmark 0 0.3
+ * -Dbenchmark.requests sets the number of requests, -Dbenchmark.timeoutMillis the client's retry timeout and
+ * -Dbenchmark.seed the seed of the server's losses
+ */
+public class RetryLatencyBenchmark {
+    private static final int PORT = Integer.getInteger("benchmark.port", 19018);
+    private static final int REQUESTS = Integer.getInteger("benchmark.requests", 2_000);
+    private static final int TIMEOUT_MILLIS = Integer.getInteger("benchmark.timeoutMillis", 20);
+    private static final long SEED = Long.getLong("benchmark.seed", 2024);
+    private static final int STARTUP_TIMEOUT_MILLIS = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        double[] lossRates = args.length == 0 ? new double[] {0, 0.1, 0.3} : Arrays.stream(args).mapToDouble(Double::parseDouble).toArray();
+
+        System.out.printf("%-6s %8s %8s %10s %10s %10s%n", "Loss", "Requests", "Retries", "p50 (us)", "p99 (us)", "Max (us)");
+        for (double lossRate : lossRates) {
+            FaultProfile faults = new FaultProfile(SEED, 0, lossRate, 0, 0, 0);
+            ServerConfig config = new ServerConfig(PORT, ServerConfig.ExecutionMode.SERIAL, 1, ServerConfig.DEFAULT_QUEUE_CAPACITY,
+                    ServerConfig.TransportType.SOCKET, 1, faults);
+            Server server = new Server(config);
+            Thread serverThread = new Thread(() -> {
+                try {
+                    server.service();
+                } catch (IOException | IllegalAccessException e) {
+                    // Closed at the end of the run
+                }
+            }, "server-receiver-0");
+            serverThread.start();
+
+            LatencyHistogram latency = new LatencyHistogram();
+            long retries = measure(latency);
+            server.close();
+            serverThread.join();
+            System.out.printf("%-6.2f %8d %8d %10.0f %10.0f %10.0f%n", lossRate, latency.getCount(), retries,
+                    latency.getValueAtPercentile(50) / 1e3, latency.getValueAtPercentile(99) / 1e3, latency.getMax() / 1e3);
+        }
+    }
+
+    /**
+     * Sends REQUESTS heartbeats one at a time, resending each with the same request ID until it is answered
+     * @param latency: records the time from first sending each request to receiving its reply
+     * @return the number of resends
+     */
+    private static long measure(LatencyHistogram latency) throws IOException, IllegalAccessException {
+        long retries = 0;
+        try (DatagramSocket socket = new DatagramSocket()) {
+            InetAddress server = InetAddress.getLoopbackAddress();
+            DatagramPacket replyPacket = new DatagramPacket(new byte[512], 512);
+
+            // Waits out the server's startup with a long timeout, so that no request is resent while it is starting
+            // and the losses drawn from then on do not depend on how long it took
+            socket.setSoTimeout(STARTUP_TIMEOUT_MILLIS);
+            send(socket, server, 0, replyPacket);
+
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+            for (int requestId = 1; requestId <= REQUESTS; requestId++) {
+                long start = System.nanoTime();
+                retries += send(socket, server, requestId, replyPacket);
+                latency.record(System.nanoTime() - start);
+            }
+        }
+        return retries;
+    }
+
+    /**
+     * Sends a heartbeat, and resends it each time the socket times out, until it is answered
+     * @return the number of resends
+     */
+    private static int send(DatagramSocket socket, InetAddress server, int requestId, DatagramPacket replyPacket)
+            throws IOException, IllegalAccessException {
+        byte[] request = new ClientRequest(0, Arrays.asList("Sending heartbeat from: benchmark"), requestId)
+                .marshall(WireFormat.COMPACT_VARINT);
+        DatagramPacket requestPacket = new DatagramPacket(request, request.length, server, PORT);
+        int retries = 0;
+        while (true) {
+            socket.send(requestPacket);
+            try {
+                socket.receive(replyPacket);
+                return retries;
+            } catch (SocketTimeoutException e) {
+                retries++;
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package Test.Benchmark;
+
+import Client.ClientRequest;
+import Marshaller.WireFormat;
+import Server.Application.Server;
+import Server.Application.ServerConfig;
+import Server.Transport.FaultProfile;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures heartbeat round trips per second over loopback against a server with 1, 2, 4 and 8 sockets
+ * bound to the same port with SO_REUSEPORT
+ * Each client thread has its own socket, and so its own source port, so the kernel spreads them across the server's sockets
+ * Run with: java Test.Benchmark.ReusePortBenchmark [socket counts...] e.g. java Test.Benchmark.ReusePortBenchmark 1 4
+ * -Dbenchmark.clients sets the number of client threads, and -Dserver.transport the server's transport
+ */
+public class ReusePortBenchmark {
+    private static final int PORT = Integer.getInteger("benchmark.port", 19017);
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 16);
+    private static final long WARMUP_MILLIS = 1_000;
+    private static final long MEASURED_MILLIS = 3_000;
+
+    public static void main(String[] args) throws Exception {
+        int[] socketCounts = args.length == 0 ? new int[] {1, 2, 4, 8} : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        ServerConfig.TransportType transportType = ServerConfig.TransportType.valueOf(System.getProperty("server.transport", "SOCKET"));
+
+        System.out.printf("%-8s %-10s %8s %16s%n", "Sockets", "Transport", "Clients", "Round trips/s");
+        for (int sockets : socketCounts) {
+            // No simulated faults, so clients only wait on the server
+            ServerConfig config = new ServerConfig(PORT, ServerConfig.ExecutionMode.SERIAL, 1, ServerConfig.DEFAULT_QUEUE_CAPACITY,
+                    transportType, sockets, FaultProfile.NONE);
+            Server server = new Server(config);
+            Thread serverThread = new Thread(() -> {
+                try {
+                    server.service();
+                } catch (IOException | IllegalAccessException e) {
+                    // Closed at the end of the run
+                }
+            }, "server-receiver-0");
+            serverThread.start();
+
+            double roundTripsPerSecond = measure();
+            server.close();
+            serverThread.join();
+            System.out.printf("%-8d %-10s %8d %16.0f%n", sockets, transportType, CLIENTS, roundTripsPerSecond);
+        }
+    }
+
+    /**
+     * Runs the clients through a warmup and a measured period
+     * @return the number of replies received per second during the measured period
+     */
+    private static double measure() throws InterruptedException {
+        LongAdder replies = new LongAdder();
+        long measureFrom = System.currentTimeMillis() + WARMUP_MILLIS;
+        long measureUntil = measureFrom + MEASURED_MILLIS;
+
+        List<Thread> clients = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            Thread client = new Thread(() -> runClient(replies, measureFrom, measureUntil));
+            clients.add(client);
+            client.start();
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+        return replies.sum() * 1000.0 / MEASURED_MILLIS;
+    }
+
+    /**
+     * Sends a heartbeat and waits for its reply, in a loop, until measureUntil
+     * Replies received between measureFrom and measureUntil are counted
+     */
+    private static void runClient(LongAdder replies, long measureFrom, long measureUntil) {
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.setSoTimeout(100);
+            InetAddress server = InetAddress.getLoopbackAddress();
+            byte[] request = new ClientRequest(0, Arrays.asList("Sending heartbeat from: benchmark"), 1).marshall(WireFormat.COMPACT_VARINT);
+            DatagramPacket requestPacket = new DatagramPacket(request, request.length, server, PORT);
+            DatagramPacket replyPacket = new DatagramPacket(new byte[512], 512);
+
+            long now;
+            while ((now = System.currentTimeMillis()) < measureUntil) {
+                socket.send(requestPacket);
+                try {
+                    socket.receive(replyPacket);
+                    if (now >= measureFrom) replies.increment();
+                } catch (SocketTimeoutException e) {
+                    // Lost on a full receive buffer. Send the next one
+                }
+            }
+        } catch (IOException | IllegalAccessException e) {
+            e.printStackTrace();
+        }
+    }
+}
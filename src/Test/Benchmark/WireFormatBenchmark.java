@@ -0,0 +1,76 @@
+package Test.Benchmark;
+
+import Client.AvailabilityRequest;
+import Client.ClientRequest;
+import Client.CreateBookingRequest;
+import Client.ObserveFacilityRequest;
+import Client.UpdateBookingRequest;
+import Marshaller.Marshallable;
+import Marshaller.WireFormat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the size and round-trip throughput of each wire format on the requests the client actually sends
+ * Run with: java Test.Benchmark.WireFormatBenchmark
+ */
+public class WireFormatBenchmark {
+    private static final int WARMUP_ITERATIONS = 200_000;
+    private static final int MEASURED_ITERATIONS = 1_000_000;
+
+    public static void main(String[] args) throws IllegalAccessException {
+        Map<String, ClientRequest> requests = createRequests();
+
+        System.out.printf("%-26s %-15s %8s %14s%n", "Request", "Format", "Bytes", "Round trips/s");
+        for (Map.Entry<String, ClientRequest> entry : requests.entrySet()) {
+            for (WireFormat format : WireFormat.values()) {
+                ClientRequest request = entry.getValue();
+                int size = request.marshall(format).length;
+                roundTrip(request, format, WARMUP_ITERATIONS);
+
+                long start = System.nanoTime();
+                roundTrip(request, format, MEASURED_ITERATIONS);
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                System.out.printf("%-26s %-15s %8d %14.0f%n", entry.getKey(), format, size, MEASURED_ITERATIONS / seconds);
+            }
+        }
+    }
+
+    /**
+     * Requests shaped like the ones built in Client for each menu option
+     */
+    static Map<String, ClientRequest> createRequests() {
+        Map<String, ClientRequest> requests = new LinkedHashMap<>();
+        requests.put("heartbeat", new ClientRequest(0,
+                Arrays.asList("Sending heartbeat from: /192.168.1.10"), 1));
+        List<String> availabilityArguments = new ArrayList<>(Arrays.asList("LT1", "0", "1", "2", "3", "4", "5", "6", "1"));
+        requests.put("availability (7 days)", new ClientRequest(2, availabilityArguments, 2));
+        requests.put("create booking", new ClientRequest(3,
+                Arrays.asList("BTC1", "1/10/00", "1/11/30", "1"), 3));
+        requests.put("update booking", new ClientRequest(4,
+                Arrays.asList("192.168.1.10:50000%=day1%=BTC1%=0", "-30", "1"), 4));
+        requests.put("observe facility", new ClientRequest(5,
+                Arrays.asList("SWLAB1", "15", "0"), 5));
+
+        // The same requests as typed messages
+        requests.put("availability (typed)", new AvailabilityRequest("LT1", 0x7F, true, 2));
+        requests.put("create booking (typed)", new CreateBookingRequest("BTC1", 1, 600, 690, true, 3));
+        requests.put("update booking (typed)", new UpdateBookingRequest("192.168.1.10:50000%=day1%=BTC1%=0", -30, true, 4));
+        requests.put("observe facility (typed)", new ObserveFacilityRequest("SWLAB1", 15, false, 5));
+        return requests;
+    }
+
+    private static void roundTrip(ClientRequest request, WireFormat format, int iterations) throws IllegalAccessException {
+        int sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            byte[] bytesArr = request.marshall(format);
+            sink += Marshallable.unmarshall(bytesArr, ClientRequest.class).getRequestMethod();
+        }
+        if (sink == -1) System.out.println(sink); // Keeps the loop from being optimised away
+    }
+}
@@ -0,0 +1,81 @@
+package Test;
+
+import Marshaller.BufferPool;
+import Marshaller.Marshallable;
+import Marshaller.WireFormat;
+import Server.Application.ServerResponse;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class BufferPoolTest {
+
+    @Test
+    public void releasedBuffersAreReused() {
+        BufferPool pool = new BufferPool(64, 2);
+
+        ByteBuffer first = pool.acquire();
+        ByteBuffer second = pool.acquire();
+        assertEquals(0, pool.getHits());
+        assertEquals(2, pool.getMisses());
+        assertEquals(2, pool.getInUse());
+
+        first.putInt(42);
+        pool.release(first);
+        pool.release(second);
+        ByteBuffer reused = pool.acquire();
+        assertSame(first, reused);
+        assertEquals(0, reused.position()); // Cleared before being handed out again
+        assertEquals(1, pool.getHits());
+        assertEquals(2, pool.getHighWaterMark());
+        assertEquals(1, pool.getInUse());
+    }
+
+    @Test
+    public void buffersBeyondCapacityAreDropped() {
+        BufferPool pool = new BufferPool(64, 1);
+        ByteBuffer first = pool.acquire();
+        ByteBuffer second = pool.acquire();
+        pool.release(first);
+        pool.release(second);
+        pool.release(ByteBuffer.allocate(128)); // Not from this pool
+        assertEquals(2, pool.getDrops());
+    }
+
+    @Test
+    public void marshallIntoPooledBuffer() throws IllegalAccessException {
+        BufferPool pool = new BufferPool(128, 4);
+        ServerResponse serverResponse = new ServerResponse("Booking updated successfully");
+        serverResponse.setId(7);
+
+        for (WireFormat format : WireFormat.values()) {
+            ByteBuffer buffer = serverResponse.marshall(pool, format);
+            byte[] pooledBytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(pooledBytes);
+            assertArrayEquals(serverResponse.marshall(format), pooledBytes);
+
+            ServerResponse unmarshalled = Marshallable.unmarshall(buffer.array(), buffer.arrayOffset(), buffer.limit(), ServerResponse.class);
+            assertEquals(serverResponse.getData(), unmarshalled.getData());
+            pool.release(buffer);
+        }
+        assertEquals(1, pool.getMisses()); // The same buffer was reused for every format
+        assertEquals(0, pool.getInUse());
+    }
+
+    @Test
+    public void oversizedMessageFallsBackToNewBuffer() throws IllegalAccessException {
+        BufferPool pool = new BufferPool(16, 4);
+        ServerResponse serverResponse = new ServerResponse("Facility availability: 1/00/00 to 1/23/59, ");
+
+        ByteBuffer buffer = serverResponse.marshall(pool, WireFormat.LEGACY);
+        assertEquals(serverResponse.marshall(WireFormat.LEGACY).length, buffer.remaining());
+        assertEquals(1, pool.getInUse());
+        pool.release(buffer);
+        assertEquals(0, pool.getInUse());
+        assertEquals(1, pool.getDrops());
+    }
+}
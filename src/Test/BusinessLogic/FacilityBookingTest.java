@@ -4,14 +4,27 @@ import Server.BusinessLogic.FacilitiesBookingSystem;
 import Server.DataAccess.IServerDB;
 import Server.DataAccess.ServerDB;
 import Server.Exceptions.*;
+import Server.Transport.IDatagramTransport;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class FacilityBookingTest {
     IServerDB serverDB;
@@ -41,6 +54,29 @@ public class FacilityBookingTest {
 
     }
 
+    @Test
+    public void createBookingFromMinutesTest() {
+        // Same bookings as getAvailablityWithInputsTest, given as minutes from the start of the day
+        List<Integer> daysQuery = new ArrayList<>();
+        daysQuery.add(1);
+        String facilityName = "LT1";
+
+        try {
+            fbs.createBooking(facilityName, 1, 60, 120, "Client A");
+            fbs.createBooking(facilityName, 1, 121, 180, "Client B");
+            String availableTimings = fbs.getAvailability(facilityName, daysQuery);
+            assertEquals("1/00/00 to 1/00/59, 1/03/01 to 1/23/59, ", availableTimings);
+        } catch (TimingUnavailableException | FacilityNotFoundException | InvalidDatetimeException | ParseException e) {
+            e.printStackTrace();
+            assert false;
+        }
+
+        assertThrows(InvalidDatetimeException.class, () -> fbs.createBooking(facilityName, 7, 60, 120, "Client C"));
+        assertThrows(InvalidDatetimeException.class, () -> fbs.createBooking(facilityName, 2, 120, 60, "Client C"));
+        assertThrows(InvalidDatetimeException.class, () -> fbs.createBooking(facilityName, 2, 60, 24 * 60, "Client C"));
+        assertThrows(TimingUnavailableException.class, () -> fbs.createBooking(facilityName, 1, 90, 150, "Client C"));
+    }
+
     @Test
     public void getAvailablityWithInputsTest() {
         // Client queriess availablity for monday and tuesday, for facility LT1
@@ -267,4 +303,101 @@ public class FacilityBookingTest {
         }
 
     }
+
+    @Test
+    public void concurrentBookingsOfSameSlotTest() throws Exception {
+        // Clients race to book LT1 on monday 10:00 - 11:00, as worker threads of the server would
+        int clients = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            String clientId = "Client " + i;
+            results.add(executor.submit(() -> {
+                start.await();
+                try {
+                    fbs.createBooking("LT1", 1, 600, 660, clientId);
+                    return true;
+                } catch (TimingUnavailableException e) {
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+
+        int successfulBookings = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) successfulBookings++;
+        }
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+
+        assertEquals(1, successfulBookings);
+        List<Integer> daysQuery = new ArrayList<>();
+        daysQuery.add(1);
+        assertEquals("1/00/00 to 1/09/59, 1/11/01 to 1/23/59, ", fbs.getAvailability("LT1", daysQuery));
+    }
+
+    @Test
+    public void slowObserverDoesNotHoldUpBookingsTest() throws Exception {
+        // One lock for every facility, so LT1 and LT2 share it as facilities on the same stripe would
+        fbs = new FacilitiesBookingSystem(serverDB, 1);
+        fbs.addObservingClient("LT1", InetAddress.getLoopbackAddress(), 5001, 10);
+        BlockingTransport observer = new BlockingTransport();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<String> observed = executor.submit(() -> fbs.createBooking("LT1", 1, 600, 660, "Client A", observer));
+            assertTrue(observer.sending.await(5, TimeUnit.SECONDS));
+
+            // While LT1's observer is still being sent the update, other bookings go ahead
+            Future<String> otherFacility = executor.submit(() -> fbs.createBooking("LT2", 1, 600, 660, "Client B", observer));
+            Future<String> sameFacility = executor.submit(() -> fbs.createBooking("LT1", 2, 600, 660, "Client C"));
+            assertTrue(otherFacility.get(5, TimeUnit.SECONDS).startsWith("Client B"));
+            assertTrue(sameFacility.get(5, TimeUnit.SECONDS).startsWith("Client C"));
+            assertFalse(observed.isDone());
+
+            observer.release.countDown();
+            assertTrue(observed.get(5, TimeUnit.SECONDS).startsWith("Client A"));
+        } finally {
+            observer.release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Blocks every send until released, as a slow observer fan-out would
+     */
+    static class BlockingTransport implements IDatagramTransport {
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public SocketAddress receive(ByteBuffer buffer) {
+            throw new IllegalStateException("Nothing to receive");
+        }
+
+        @Override
+        public void send(ByteBuffer message, SocketAddress target) {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public boolean prefersDirectBuffers() {
+            return false;
+        }
+
+        @Override
+        public SocketAddress getLocalAddress() {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), 17);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
@@ -2,6 +2,8 @@ package Test.Entities;
 
 import Server.Entities.AbstractFacility;
 import Server.Entities.Concrete.ObservationSession;
+import Server.Transport.IDatagramTransport;
+import Server.Transport.SocketTransport;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -22,12 +24,14 @@ public class AbstractFacilityTest {
     TestFacility facility;
     static int serverPort = 17;
     static DatagramSocket serverSocket = null;
+    static IDatagramTransport serverTransport = null;
 
     // Before class is run ONCE ONLY before entire test starts
     @BeforeClass
     public static void createServerSocket() {
         try {
             serverSocket = new DatagramSocket(serverPort);
+            serverTransport = new SocketTransport(serverSocket);
         } catch (SocketException e) {
             e.printStackTrace();
         }
@@ -46,7 +50,7 @@ public class AbstractFacilityTest {
             // Initial heap size is correct
             assertEquals(6, facility.getObservationSessions().size());
             // Function call should remove all observation sessions
-            facility.sendUpdateToObservingClients(serverSocket);
+            facility.sendUpdateToObservingClients(serverTransport);
             // Ending heap should be empty
             assertEquals(0, facility.getObservationSessions().size());
         } catch (IOException exception) {
@@ -71,7 +75,7 @@ public class AbstractFacilityTest {
 
             // Send updates to clients
             assertEquals(7, facility.getObservationSessions().size());
-            facility.sendUpdateToObservingClients(serverSocket);
+            facility.sendUpdateToObservingClients(serverTransport);
             assertEquals(1, facility.getObservationSessions().size());
 
             // Ensure thread has ended and assert server reply is as expected
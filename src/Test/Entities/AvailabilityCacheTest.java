@@ -0,0 +1,61 @@
+package Test.Entities;
+
+import Server.Entities.Concrete.AvailabilityCache;
+import Server.Entities.Concrete.Facility;
+import Server.Entities.Concrete.TimeSlot;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class AvailabilityCacheTest {
+    @Test
+    public void testRepeatedReadsAreCached() {
+        int[] computed = new int[7];
+        AvailabilityCache cache = new AvailabilityCache(day -> {
+            computed[day]++;
+            return Collections.singletonList(new TimeSlot(60, 119));
+        });
+
+        String message = cache.getMessage(2);
+        assertEquals("2/01/00 to 2/01/59, ", message);
+        assertSame(message, cache.getMessage(2));
+        assertEquals(1, computed[2]);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // Only the invalidated day is computed again
+        cache.getMessage(3);
+        cache.invalidate(2);
+        cache.getMessage(Arrays.asList(2, 3));
+        assertEquals(2, computed[2]);
+        assertEquals(1, computed[3]);
+    }
+
+    @Test
+    public void testDaysInOrderOnce() {
+        AvailabilityCache cache = new AvailabilityCache(day -> Collections.singletonList(new TimeSlot(0, TimeSlot.LAST_MINUTE)));
+        assertEquals("1/00/00 to 1/23/59, 4/00/00 to 4/23/59, ", cache.getMessage(Arrays.asList(4, 1, 4)));
+        assertEquals("", cache.getMessage(Collections.emptyList()));
+    }
+
+    @Test
+    public void testFacilityInvalidatesOnWrite() throws Exception {
+        Facility facility = new Facility("LT1", "Lecture Theater");
+        List<Integer> days = Arrays.asList(0, 1, 2, 3, 4, 5, 6);
+        String emptyWeek = facility.getAvailability(days);
+        assertSame(emptyWeek, facility.getAvailability(days));
+
+        String confirmationId = facility.addBooking(1, "Dummy client", "10:00", "11:59");
+        assertEquals("1/00/00 to 1/09/59, 1/12/00 to 1/23/59, ", facility.getAvailability(Collections.singletonList(1)));
+
+        facility.updateBooking(1, confirmationId, "08:00", "09:59");
+        assertEquals("1/00/00 to 1/07/59, 1/10/00 to 1/23/59, ", facility.getAvailability(Collections.singletonList(1)));
+        assertEquals("Snapshot #2 LT1: " + facility.getAvailability(days), facility.getSnapshot());
+        assertEquals("0/00/00 to 0/23/59, ", facility.getAvailability(Collections.singletonList(0)));
+    }
+}
@@ -0,0 +1,81 @@
+package Test.Entities;
+
+import Server.Entities.Concrete.BitmapFacility;
+import Server.Entities.Concrete.Facility;
+import Server.Entities.Concrete.OccupancyBitmap;
+import Server.Entities.Concrete.TimeSlot;
+import Server.Entities.IBooking;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BitmapFacilityTest {
+    @Test
+    public void testBitmapAcrossWordBoundaries() {
+        OccupancyBitmap bitmap = new OccupancyBitmap();
+        bitmap.book(new TimeSlot(60, 130)); // Spans the second and third words
+        assertTrue(bitmap.isBooked(new TimeSlot(0, 60)));
+        assertTrue(bitmap.isBooked(new TimeSlot(130, 200)));
+        assertFalse(bitmap.isBooked(new TimeSlot(0, 59)));
+        assertFalse(bitmap.isBooked(new TimeSlot(131, TimeSlot.LAST_MINUTE)));
+        assertFalse(bitmap.isBooked(new TimeSlot(50, 140), new TimeSlot(60, 130)));
+
+        bitmap.book(new TimeSlot(TimeSlot.LAST_MINUTE - 1, TimeSlot.LAST_MINUTE));
+        assertEquals("[00:00-00:59, 02:11-23:57]", format(bitmap.getFreeTimeSlots()));
+
+        bitmap.free(new TimeSlot(60, 130));
+        assertEquals("[00:00-23:57]", format(bitmap.getFreeTimeSlots()));
+    }
+
+    @Test
+    public void testMatchesFacility() throws Exception {
+        Facility facility = new Facility("BTC1", "Badminton Court");
+        BitmapFacility bitmapFacility = new BitmapFacility("BTC1", "Badminton Court");
+        Random random = new Random(4013);
+        List<String> confirmationIds = new ArrayList<>();
+
+        for (int i = 0; i < 2000; i++) {
+            int day = random.nextInt(7);
+            int start = random.nextInt(TimeSlot.MINUTES_PER_DAY - 1);
+            int end = Math.min(start + 1 + random.nextInt(90), TimeSlot.LAST_MINUTE);
+            TimeSlot timeSlot = new TimeSlot(start, end);
+
+            if (confirmationIds.isEmpty() || random.nextBoolean()) {
+                assertEquals(facility.overlapsBooking(day, timeSlot, null), bitmapFacility.overlapsBooking(day, timeSlot, null));
+                if (!facility.overlapsBooking(day, timeSlot, null)) {
+                    String confirmationId = facility.addBooking(day, "client", timeSlot, null);
+                    assertEquals(confirmationId, bitmapFacility.addBooking(day, "client", timeSlot, null));
+                    confirmationIds.add(confirmationId);
+                }
+            } else {
+                // Moves a booking, leaving itself out of the check
+                String confirmationId = confirmationIds.get(random.nextInt(confirmationIds.size()));
+                IBooking booking = facility.getBookingByConfirmationId(confirmationId);
+                IBooking bitmapBooking = bitmapFacility.getBookingByConfirmationId(confirmationId);
+                boolean overlaps = facility.overlapsBooking(booking.getDay(), timeSlot, booking);
+                assertEquals(overlaps, bitmapFacility.overlapsBooking(bitmapBooking.getDay(), timeSlot, bitmapBooking));
+                if (!overlaps) {
+                    facility.updateBooking(booking.getDay(), confirmationId, timeSlot, null);
+                    bitmapFacility.updateBooking(bitmapBooking.getDay(), confirmationId, timeSlot, null);
+                }
+            }
+        }
+        List<Integer> days = Arrays.asList(0, 1, 2, 3, 4, 5, 6);
+        assertEquals(facility.getAvailability(days), bitmapFacility.getAvailability(days));
+    }
+
+    private static String format(List<TimeSlot> timeSlots) {
+        List<String> formatted = new ArrayList<>();
+        for (TimeSlot timeSlot : timeSlots) {
+            formatted.add(timeSlot.getStartTime() + "-" + timeSlot.getEndTime());
+        }
+        return formatted.toString();
+    }
+}
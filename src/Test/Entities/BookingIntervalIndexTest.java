@@ -0,0 +1,76 @@
+package Test.Entities;
+
+import Server.Entities.Concrete.BookingIntervalIndex;
+import Server.Entities.Concrete.Facility;
+import Server.Entities.Concrete.TimeSlot;
+import Server.Entities.IBooking;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BookingIntervalIndexTest {
+    Facility facility;
+    BookingIntervalIndex bookingIndex;
+
+    @Before
+    public void createFacility() {
+        facility = new Facility("test facility", "test type");
+        bookingIndex = facility.getBookingIndex(2);
+    }
+
+    @Test
+    public void testOverlapsIsInclusive() {
+        facility.addBooking(2, "Dummy client", "10:00", "11:00");
+        facility.addBooking(2, "Dummy client", "13:00", "14:00");
+
+        assertTrue(bookingIndex.overlaps(new TimeSlot("09:00", "10:00"))); // Ends as a booking starts
+        assertTrue(bookingIndex.overlaps(new TimeSlot("11:00", "12:00"))); // Starts as a booking ends
+        assertTrue(bookingIndex.overlaps(new TimeSlot("10:15", "10:45")));
+        assertTrue(bookingIndex.overlaps(new TimeSlot("09:00", "15:00")));
+        assertFalse(bookingIndex.overlaps(new TimeSlot("11:01", "12:59")));
+        assertFalse(bookingIndex.overlaps(new TimeSlot("00:00", "09:59")));
+        assertFalse(bookingIndex.overlaps(new TimeSlot("14:01", "23:59")));
+        // Other days are indexed separately
+        assertFalse(facility.getBookingIndex(3).overlaps(new TimeSlot("10:00", "11:00")));
+    }
+
+    @Test
+    public void testOverlapsIgnoresBookingBeingMoved() throws Exception {
+        String confirmationId = facility.addBooking(2, "Dummy client", "10:00", "11:00");
+        facility.addBooking(2, "Dummy client", "08:00", "09:00");
+        IBooking booking = facility.getBookingByConfirmationId(confirmationId);
+
+        assertFalse(bookingIndex.overlaps(new TimeSlot("10:30", "11:30"), booking));
+        assertTrue(bookingIndex.overlaps(new TimeSlot("08:30", "10:30"), booking));
+    }
+
+    @Test
+    public void testIteratesInOrderAfterMove() throws Exception {
+        String confirmationId = facility.addBooking(2, "Dummy client", "15:00", "16:00");
+        facility.addBooking(2, "Dummy client", "12:00", "13:00");
+        facility.updateBooking(2, confirmationId, "09:00", "10:00");
+
+        List<String> startTimes = new ArrayList<>();
+        for (IBooking booking : bookingIndex) {
+            startTimes.add(booking.getStartTime());
+        }
+        assertEquals(Arrays.asList("09:00", "12:00"), startTimes);
+        assertEquals(2, bookingIndex.size());
+        assertFalse(bookingIndex.overlaps(new TimeSlot("15:00", "16:00")));
+    }
+
+    @Test
+    public void testRejectsOverlappingBooking() {
+        facility.addBooking(2, "Dummy client", "10:00", "11:00");
+        assertThrows(IllegalArgumentException.class, () -> facility.addBooking(2, "Dummy client", "10:30", "11:30"));
+        assertEquals(1, bookingIndex.size());
+    }
+}
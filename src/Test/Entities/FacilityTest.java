@@ -4,6 +4,8 @@ import Server.Entities.Concrete.Facility;
 import Server.Entities.Concrete.ObservationSession;
 import Server.Entities.IBooking;
 import Server.Exceptions.BookingNotFoundException;
+import Server.Transport.IDatagramTransport;
+import Server.Transport.SocketTransport;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -25,6 +27,7 @@ public class FacilityTest {
     Facility facility;
     static int serverPort = 18;
     static DatagramSocket serverSocket = null;
+    static IDatagramTransport serverTransport = null;
 
     @Before
     public void createFacility() {
@@ -36,6 +39,7 @@ public class FacilityTest {
     public static void createServerSocket() {
         try {
             serverSocket = new DatagramSocket(serverPort);
+            serverTransport = new SocketTransport(serverSocket);
         } catch (SocketException e) {
             e.printStackTrace();
         }
@@ -146,13 +150,12 @@ public class FacilityTest {
             assertEquals(7, facility.getObservationSessions().size());
 
             // Add booking to facility
-            facility.addBooking(2, "test client", "1000", "1159", serverSocket);
+            facility.addBooking(2, "test client", "1000", "1159", serverTransport);
 
             // Ensure thread has ended and assert server reply is as expected
             receiveThread.join();
             String workerReply = receiveWorker.getServerReplyAndResetBuffer();
-            assertEquals(facility.getServerReplyString(), workerReply);
-            System.out.println(workerReply); // Check availability message is sent correctly
+            assertEquals("Update #1 " + facility.getFacilityName() + ": none -> 2/10/00 to 2/11/59", workerReply);
 
             // Ensure expired observation sessions are removed
             assertEquals(1, facility.getObservationSessions().size());
@@ -176,19 +179,21 @@ public class FacilityTest {
             InetAddress clientAddress = InetAddress.getLocalHost();
             facility.addObservationSession(clientAddress, observingClientPort, System.currentTimeMillis() + 100000L);
             // Add booking to facility
-            String confirmationId = facility.addBooking(2, "test client", "1000", "1159", serverSocket);
+            String confirmationId = facility.addBooking(2, "test client", "1000", "1159", serverTransport);
             // Ensure thread has ended and assert server reply is as expected
             receiveThread.join();
-            assertEquals(facility.getServerReplyString(), receiveWorker.getServerReplyAndResetBuffer());
+            assertEquals("Update #1 " + facility.getFacilityName() + ": none -> 2/10/00 to 2/11/59",
+                    receiveWorker.getServerReplyAndResetBuffer());
 
             // Set up worker thread for update booking update message
             receiveThread = new Thread(receiveWorker);
             receiveThread.start();
             // Update booking
-            facility.updateBooking(2, confirmationId, "0800", "0959", serverSocket);
+            facility.updateBooking(2, confirmationId, "0800", "0959", serverTransport);
             // Ensure thread has ended and assert server reply is as expected
             receiveThread.join();
-            assertEquals(facility.getServerReplyString(), receiveWorker.getServerReplyAndResetBuffer());
+            assertEquals("Update #2 " + facility.getFacilityName() + ": 2/10/00 to 2/11/59 -> 2/08/00 to 2/09/59",
+                    receiveWorker.getServerReplyAndResetBuffer());
         } catch (Exception e) {
             System.out.println("Program should not reach here!");
             e.printStackTrace();
@@ -0,0 +1,90 @@
+package Test.Entities;
+
+import Client.Protocol;
+import Server.Entities.Concrete.BitmapFacility;
+import Server.Entities.Concrete.Facility;
+import Server.Entities.Concrete.FacilityUpdate;
+import Server.Entities.Concrete.TimeSlot;
+import Server.Transport.IDatagramTransport;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class FacilityUpdateTest {
+    @Test
+    public void testMessageAndSequence() {
+        FacilityUpdate created = new FacilityUpdate(1, "LT1", "confirmationId", 3, null, new TimeSlot(600, 719));
+        assertEquals("Update #1 LT1: none -> 3/10/00 to 3/11/59", created.getMessage());
+        FacilityUpdate moved = new FacilityUpdate(12, "LT1", "confirmationId", 3, new TimeSlot(600, 719), new TimeSlot(480, 599));
+        assertEquals("Update #12 LT1: 3/10/00 to 3/11/59 -> 3/08/00 to 3/09/59", moved.getMessage());
+        assertSame(moved.getMessageBytes(), moved.getMessageBytes());
+
+        assertEquals(12, Protocol.parseSequence(moved.getMessage(), Protocol.UPDATE_PREFIX));
+        assertEquals(-1, Protocol.parseSequence(moved.getMessage(), Protocol.SNAPSHOT_PREFIX));
+        assertEquals(4, Protocol.parseSequence(FacilityUpdate.getSnapshotMessage(4, "LT1", ""), Protocol.SNAPSHOT_PREFIX));
+        assertEquals(-1, Protocol.parseSequence("404: Facility not found", Protocol.SNAPSHOT_PREFIX));
+    }
+
+    @Test
+    public void testObserversShareOneUpdate() throws Exception {
+        Facility facility = new BitmapFacility("BTC1", "Badminton Court");
+        InetAddress localhost = InetAddress.getLoopbackAddress();
+        long expiry = System.currentTimeMillis() + 100000L;
+        facility.addObservationSession(localhost, 5001, expiry);
+        facility.addObservationSession(localhost, 5002, expiry);
+        facility.addObservationSession(localhost, 5003, expiry);
+        RecordingTransport transport = new RecordingTransport();
+
+        String confirmationId = facility.addBooking(1, "client", new TimeSlot(600, 659), transport);
+        facility.addBooking(1, "client", new TimeSlot(700, 759), null); // Numbered, though no one is told
+        facility.updateBooking(1, confirmationId, new TimeSlot(800, 859), transport);
+
+        assertEquals(6, transport.sent.size());
+        assertSame(transport.sent.get(0), transport.sent.get(2));
+        assertSame(transport.sent.get(3), transport.sent.get(5));
+        assertEquals("Update #1 BTC1: none -> 1/10/00 to 1/10/59", new String(transport.sent.get(0), StandardCharsets.UTF_8));
+        assertEquals("Update #3 BTC1: 1/10/00 to 1/10/59 -> 1/13/20 to 1/14/19", new String(transport.sent.get(3), StandardCharsets.UTF_8));
+        assertEquals(3, facility.getUpdateSequence());
+        assertEquals(3, Protocol.parseSequence(facility.getSnapshot(), Protocol.SNAPSHOT_PREFIX));
+    }
+
+    /**
+     * Keeps the array behind each message sent, to check which messages share their bytes
+     */
+    static class RecordingTransport implements IDatagramTransport {
+        final List<byte[]> sent = new ArrayList<>();
+
+        @Override
+        public SocketAddress receive(ByteBuffer buffer) {
+            throw new IllegalStateException("Nothing to receive");
+        }
+
+        @Override
+        public synchronized void send(ByteBuffer message, SocketAddress target) {
+            sent.add(message.array());
+        }
+
+        @Override
+        public boolean prefersDirectBuffers() {
+            return false;
+        }
+
+        @Override
+        public SocketAddress getLocalAddress() {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), 17);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
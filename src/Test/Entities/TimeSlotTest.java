@@ -0,0 +1,46 @@
+package Test.Entities;
+
+import Server.Entities.Concrete.TimeSlot;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TimeSlotTest {
+    @Test
+    public void testParseAndFormat() {
+        assertEquals(0, TimeSlot.parseMinuteOfDay("00:00"));
+        assertEquals(630, TimeSlot.parseMinuteOfDay("10:30"));
+        assertEquals(630, TimeSlot.parseMinuteOfDay("1030"));
+        assertEquals(TimeSlot.LAST_MINUTE, TimeSlot.parseMinuteOfDay("2359"));
+        assertEquals("10:30", TimeSlot.formatMinuteOfDay(630));
+        assertEquals("23:59", TimeSlot.formatMinuteOfDay(TimeSlot.LAST_MINUTE));
+
+        assertThrows(NumberFormatException.class, () -> TimeSlot.parseMinuteOfDay("10:3"));
+        assertThrows(NumberFormatException.class, () -> TimeSlot.parseMinuteOfDay("1a30"));
+    }
+
+    @Test
+    public void testOffSetTimeSlot() {
+        TimeSlot timeSlot = new TimeSlot("09:00", "10:30");
+        TimeSlot later = timeSlot.offSetTimeSlot(90);
+        assertEquals("10:30", later.getStartTime());
+        assertEquals("12:00", later.getEndTime());
+        assertTrue(later.isValidTimeSlot());
+
+        // Wraps around midnight, which leaves the end before the start
+        TimeSlot wrapped = new TimeSlot("23:00", "23:30").offSetTimeSlot(45);
+        assertEquals("23:45", wrapped.getStartTime());
+        assertEquals("00:15", wrapped.getEndTime());
+        assertFalse(wrapped.isValidTimeSlot());
+        assertEquals("23:15", new TimeSlot("00:15", "01:00").offSetTimeSlot(-60).getStartTime());
+    }
+
+    @Test
+    public void testCompareByStartTime() {
+        assertTrue(new TimeSlot(60, 120).compareTo(new TimeSlot(61, 62)) < 0);
+        assertEquals(0, new TimeSlot(60, 120).compareTo(new TimeSlot(60, 61)));
+    }
+}
@@ -0,0 +1,86 @@
+package Test.Logging;
+
+import Server.Logging.AsyncLogAppender;
+import Server.Logging.LogLevel;
+import Server.Logging.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LoggerTest {
+    long now;
+    StringWriter output;
+    AsyncLogAppender appender;
+
+    @Before
+    public void createAppender() {
+        now = 0;
+        output = new StringWriter();
+        appender = new AsyncLogAppender(16, output);
+    }
+
+    @Test
+    public void writesStructuredRecords() {
+        appender.start();
+        Logger log = new Logger("Server", appender, LogLevel.INFO, 0, () -> now);
+
+        log.debug("request.received", "requestId", 1);
+        log.info("request.duplicate", "client", new InetSocketAddress("127.0.0.1", 50000), "requestId", 3);
+        log.error("request.failed", new IllegalStateException("Handler failed"));
+        appender.flush();
+
+        String[] lines = output.toString().split("\\R");
+        assertTrue(lines[0].endsWith(" INFO  Server request.duplicate client=/127.0.0.1:50000 requestId=3"));
+        assertTrue(lines[1].endsWith(" ERROR Server request.failed error=java.lang.IllegalStateException: Handler failed"));
+        assertTrue(lines[2].startsWith("java.lang.IllegalStateException: Handler failed"));
+        assertFalse(output.toString().contains("request.received"));
+    }
+
+    @Test
+    public void repeatedEventsAreSampled() {
+        appender.start();
+        Logger log = new Logger("Facility", appender, LogLevel.DEBUG, 2, () -> now);
+
+        for (int i = 0; i < 5; i++) {
+            log.warn("observer.sendFailed", "attempt", i);
+        }
+        log.warn("reply.withheld"); // Other events have their own limit
+        now += 1000;
+        log.warn("observer.sendFailed", "attempt", 5);
+        appender.flush();
+
+        String[] lines = output.toString().split("\\R");
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].endsWith("observer.sendFailed attempt=0"));
+        assertTrue(lines[1].endsWith("observer.sendFailed attempt=1"));
+        assertTrue(lines[2].endsWith("reply.withheld"));
+        assertTrue(lines[3].endsWith("observer.sendFailed attempt=5 suppressed=3"));
+    }
+
+    @Test
+    public void fullBufferDropsRecords() throws InterruptedException {
+        Logger log = new Logger("Server", appender, LogLevel.INFO, 0, () -> now);
+        for (int i = 0; i < 20; i++) {
+            log.info("request.duplicate", "requestId", i);
+        }
+        assertEquals(4, appender.getDropped());
+
+        // Records appended before the appender started are written once it is
+        appender.start();
+        appender.flush();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!output.toString().contains("log.dropped") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        String[] lines = output.toString().split("\\R");
+        assertEquals(17, lines.length);
+        assertTrue(lines[15].endsWith("request.duplicate requestId=15"));
+        assertTrue(lines[16].endsWith(" WARN  AsyncLogAppender log.dropped count=4"));
+    }
+}
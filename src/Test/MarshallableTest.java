@@ -1,12 +1,27 @@
 package Test;
 
+import Client.AvailabilityRequest;
 import Client.ClientRequest;
+import Client.CreateBookingRequest;
+import Marshaller.ClassSchema;
+import Marshaller.CodecMode;
+import Marshaller.FieldId;
 import Marshaller.Marshallable;
+import Marshaller.Marshaller;
+import Marshaller.SchemaRegistry;
+import Marshaller.WireFormat;
 
 import Server.Application.ServerResponse;
 import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.net.DatagramPacket;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -16,20 +31,20 @@ public class MarshallableTest {
 
     public static class ClassForTesting extends Marshallable {
 
-        List<Integer> integerList;
-        List<List<Integer>> twoDIntegerList;
-        Integer classInteger;
-        int primitiveInteger;
-        String string;
-        String stringNull;
-        Boolean classBoolean;
-        boolean primitiveBoolean;
-        Short classShort;
-        short primitiveShort;
-        Float classFloat;
-        float primitiveFloat;
-        Double classDouble;
-        double primitiveDouble;
+        @FieldId(0) List<Integer> integerList;
+        @FieldId(1) List<List<Integer>> twoDIntegerList;
+        @FieldId(2) Integer classInteger;
+        @FieldId(3) int primitiveInteger;
+        @FieldId(4) String string;
+        @FieldId(5) String stringNull;
+        @FieldId(6) Boolean classBoolean;
+        @FieldId(7) boolean primitiveBoolean;
+        @FieldId(8) Short classShort;
+        @FieldId(9) short primitiveShort;
+        @FieldId(10) Float classFloat;
+        @FieldId(11) float primitiveFloat;
+        @FieldId(12) Double classDouble;
+        @FieldId(13) double primitiveDouble;
 
         public ClassForTesting() {
             super();
@@ -56,6 +71,50 @@ public class MarshallableTest {
         }
     }
 
+    public enum Colour { RED, GREEN, BLUE }
+
+    public static class NestedForTesting extends Marshallable {
+        @FieldId(0) String name;
+        @FieldId(1) int[] values;
+        @FieldId(2) NestedForTesting child;
+
+        public NestedForTesting() {
+            super();
+        }
+
+        public NestedForTesting(String name, int[] values, NestedForTesting child) {
+            super();
+            this.name = name;
+            this.values = values;
+            this.child = child;
+        }
+    }
+
+    public static class ArraysForTesting extends Marshallable {
+        @FieldId(0) long primitiveLong;
+        @FieldId(1) Long classLong;
+        @FieldId(2) byte primitiveByte;
+        @FieldId(3) byte[] bytes;
+        @FieldId(4) boolean[] booleans;
+        @FieldId(5) short[] shorts;
+        @FieldId(6) int[] ints;
+        @FieldId(7) long[] longs;
+        @FieldId(8) float[] floats;
+        @FieldId(9) double[] doubles;
+        @FieldId(10) int[] emptyInts;
+        @FieldId(11) int[] nullInts;
+        @FieldId(12) String[] strings;
+        @FieldId(13) int[][] twoDInts;
+        @FieldId(14) Colour colour;
+        @FieldId(15) Colour[] colours;
+        @FieldId(16) NestedForTesting nested;
+        @FieldId(17) List<NestedForTesting> nestedList;
+
+        public ArraysForTesting() {
+            super();
+        }
+    }
+
     @Test
     public void objShouldEqualUnmarshalledMarshalledObj() throws IllegalAccessException {
         final double DELTA = 1e-15;
@@ -126,4 +185,417 @@ public class MarshallableTest {
 
     }
 
+    @Test
+    public void marshalledServerResponseMatchesWireFormat() throws IllegalAccessException {
+        ServerResponse serverResponse = new ServerResponse("ok");
+        serverResponse.setId(7);
+
+        // [class name][id][field name][not null][value]
+        ByteBuffer expected = ByteBuffer.allocate(64);
+        putString(expected, "Server.Application.ServerResponse");
+        expected.putInt(7);
+        putString(expected, "response");
+        expected.put((byte) 1);
+        putString(expected, "ok");
+        expected.flip();
+        byte[] expectedBytes = new byte[expected.remaining()];
+        expected.get(expectedBytes);
+
+        assertArrayEquals(expectedBytes, serverResponse.marshall());
+    }
+
+    @Test
+    public void marshallIntoCallerSuppliedBuffer() throws IllegalAccessException {
+        ClientRequest cr = new ClientRequest(3, Arrays.asList("LT1", "1/10/00", "1/11/00", "1"), 12);
+        byte[] expected = cr.marshall();
+
+        ByteBuffer buffer = ByteBuffer.allocate(512);
+        buffer.position(5);
+        int written = cr.marshall(buffer);
+
+        assertEquals(expected.length, written);
+        assertEquals(5 + written, buffer.position());
+        byte[] actual = Arrays.copyOfRange(buffer.array(), 5, 5 + written);
+        assertArrayEquals(expected, actual);
+
+        ByteBuffer tooSmall = ByteBuffer.allocate(expected.length - 1);
+        assertThrows(BufferOverflowException.class, () -> cr.marshall(tooSmall));
+    }
+
+    @Test
+    public void marshallVarIntsIntoExactlySizedBuffer() throws IllegalAccessException {
+        ClientRequest cr = new ClientRequest(2, Arrays.asList("LT1", "0", "6", "1"), Integer.MIN_VALUE);
+        byte[] expected = cr.marshall(WireFormat.COMPACT_VARINT);
+
+        // The last string's length is a 1 byte varint, which fits however few bytes follow it
+        ByteBuffer exact = ByteBuffer.allocate(expected.length);
+        cr.marshall(exact, WireFormat.COMPACT_VARINT);
+        assertArrayEquals(expected, exact.array());
+        assertEquals(Integer.MIN_VALUE, Marshallable.unmarshall(expected, ClientRequest.class).getId());
+    }
+
+    @Test
+    public void unmarshallFromPartOfPaddedBuffer() throws IllegalAccessException {
+        ClientRequest cr = new ClientRequest(2, Arrays.asList("LT1", "0", "6", "1"), 3);
+        byte[] bytesArr = cr.marshall();
+
+        // Message sits in the middle of a larger, zero-padded receive buffer
+        byte[] buffer = new byte[256];
+        System.arraycopy(bytesArr, 0, buffer, 10, bytesArr.length);
+        DatagramPacket packet = new DatagramPacket(buffer, 10, bytesArr.length);
+
+        ClientRequest crUnmarshalled = Marshallable.unmarshall(packet, ClientRequest.class);
+        assertEquals(cr.getId(), crUnmarshalled.getId());
+        assertEquals(cr.getRequestMethod(), crUnmarshalled.getRequestMethod());
+        assertEquals(cr.getArguments(), crUnmarshalled.getArguments());
+    }
+
+    @Test
+    public void unmarshallTruncatedMessageThrows() throws IllegalAccessException {
+        byte[] bytesArr = new ServerResponse("server response").marshall();
+        assertThrows(BufferUnderflowException.class,
+                () -> Marshallable.unmarshall(bytesArr, 0, bytesArr.length - 1, ServerResponse.class));
+    }
+
+    @Test
+    public void classSchemaIsReusedAcrossMessages() throws IllegalAccessException {
+        ServerResponse serverResponse = new ServerResponse("cached");
+        byte[] bytesArr = serverResponse.marshall();
+        long hitsBefore = ClassSchema.forClass(ServerResponse.class).getHitCount();
+
+        for (int i = 0; i < 10; i++) {
+            serverResponse.marshall();
+            Marshallable.unmarshall(bytesArr, ServerResponse.class);
+        }
+
+        long hitsAfter = ClassSchema.forClass(ServerResponse.class).getHitCount();
+        assertTrue(hitsAfter - hitsBefore >= 20);
+        assertTrue(ClassSchema.getHitCounts().containsKey(ServerResponse.class.getName()));
+    }
+
+    @Test
+    public void unmarshallFieldsInAnyOrder() {
+        // ClientRequest with its fields written in reverse declaration order
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+        putString(buffer, "Client.ClientRequest");
+        buffer.putInt(9);
+        putString(buffer, "arguments");
+        buffer.put((byte) 1);
+        buffer.putInt(1);
+        buffer.put((byte) 1);
+        putString(buffer, "LT1");
+        putString(buffer, "requestMethod");
+        buffer.put((byte) 1);
+        buffer.putInt(2);
+
+        ClientRequest cr = Marshallable.unmarshall(buffer.array(), 0, buffer.position(), ClientRequest.class);
+        assertEquals(9, cr.getId());
+        assertEquals(2, cr.getRequestMethod());
+        assertEquals(Arrays.asList("LT1"), cr.getArguments());
+    }
+
+    @Test
+    public void generatedAndReflectiveCodecsProduceIdenticalBytes() throws IllegalAccessException {
+        ClassForTesting obj = new ClassForTesting(Arrays.asList(6, 7, 8), Arrays.asList(Arrays.asList(29, 4), Arrays.asList(8)),
+                123, -8346, "book room", null, true, false, (short) 64, (short) -90, 3.14f, 6.18f, null, 1.08);
+        obj.setId(5);
+        ClientRequest cr = new ClientRequest(3, Arrays.asList("LT1", "1/10/00", "1/11/00", "1"), 12);
+        ServerResponse serverResponse = new ServerResponse("Booking confirmation ID: 1");
+        List<Marshallable> objs = Arrays.asList(obj, cr, serverResponse);
+
+        CodecMode originalMode = Marshaller.getCodecMode();
+        try {
+            for (Marshallable m : objs) {
+                Marshaller.setCodecMode(CodecMode.REFLECTIVE);
+                byte[] reflective = m.marshall();
+                Marshaller.setCodecMode(CodecMode.GENERATED);
+                byte[] generated = m.marshall();
+                assertArrayEquals(reflective, generated);
+
+                // Each mode decodes what the other encoded back to the same bytes
+                Marshaller.setCodecMode(CodecMode.GENERATED);
+                byte[] generatedRoundTrip = Marshallable.unmarshall(reflective, m.getClass()).marshall();
+                Marshaller.setCodecMode(CodecMode.REFLECTIVE);
+                byte[] reflectiveRoundTrip = Marshallable.unmarshall(generated, m.getClass()).marshall();
+                assertArrayEquals(reflective, generatedRoundTrip);
+                assertArrayEquals(reflective, reflectiveRoundTrip);
+            }
+        } finally {
+            Marshaller.setCodecMode(originalMode);
+        }
+    }
+
+    @Test
+    public void compactFormatRoundTripsAndIsSmaller() throws IllegalAccessException {
+        ClientRequest cr = new ClientRequest(3, Arrays.asList("LT1", "1/10/00", "1/11/00", "1"), 12);
+        byte[] legacy = cr.marshall(WireFormat.LEGACY);
+        byte[] compact = cr.marshall(WireFormat.COMPACT);
+
+        assertEquals(WireFormat.LEGACY, WireFormat.detect(legacy, 0));
+        assertEquals(WireFormat.COMPACT, WireFormat.detect(compact, 0));
+        System.out.println("legacy: " + legacy.length + " bytes, compact: " + compact.length + " bytes");
+        assertTrue(compact.length < legacy.length);
+
+        ClientRequest crUnmarshalled = Marshallable.unmarshall(compact, ClientRequest.class);
+        assertEquals(cr.getId(), crUnmarshalled.getId());
+        assertEquals(cr.getRequestMethod(), crUnmarshalled.getRequestMethod());
+        assertEquals(cr.getArguments(), crUnmarshalled.getArguments());
+    }
+
+    @Test
+    public void compactFormatIsIdenticalForBothCodecModes() throws IllegalAccessException {
+        SchemaRegistry.register(1000, ClassForTesting.class);
+        ClassForTesting obj = new ClassForTesting(Arrays.asList(1, 2), Arrays.asList(Arrays.asList(3), Arrays.asList(4, 5)),
+                null, 7, "compact", null, false, true, (short) 1, (short) 2, 0.5f, 1.5f, 2.5, 3.5);
+
+        CodecMode originalMode = Marshaller.getCodecMode();
+        try {
+            Marshaller.setCodecMode(CodecMode.REFLECTIVE);
+            byte[] reflective = obj.marshall(WireFormat.COMPACT);
+            Marshaller.setCodecMode(CodecMode.GENERATED);
+            byte[] generated = obj.marshall(WireFormat.COMPACT);
+            assertArrayEquals(reflective, generated);
+
+            ClassForTesting result = Marshallable.unmarshall(generated, ClassForTesting.class);
+            assertEquals(obj.twoDIntegerList, result.twoDIntegerList);
+            assertEquals(obj.classInteger, result.classInteger);
+            assertEquals(obj.string, result.string);
+            assertEquals(obj.primitiveBoolean, result.primitiveBoolean);
+            assertEquals(obj.classDouble, result.classDouble);
+        } finally {
+            Marshaller.setCodecMode(originalMode);
+        }
+    }
+
+    @Test
+    public void varintFormatRoundTripsBoundaryValues() throws IllegalAccessException {
+        SchemaRegistry.register(1000, ClassForTesting.class);
+        int[] values = {0, -1, 1, 63, -64, 64, 127, 128, 16383, 16384, -100000, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (int value : values) {
+            ClassForTesting obj = new ClassForTesting(Arrays.asList(value, -value), null, value, value, "",
+                    null, null, false, null, (short) 0, null, 0f, null, 0);
+            obj.setId(value);
+            byte[] varint = obj.marshall(WireFormat.COMPACT_VARINT);
+            assertEquals(WireFormat.COMPACT_VARINT, WireFormat.detect(varint, 0));
+
+            ClassForTesting result = Marshallable.unmarshall(varint, ClassForTesting.class);
+            assertEquals(value, result.getId());
+            assertEquals(Integer.valueOf(value), result.classInteger);
+            assertEquals(value, result.primitiveInteger);
+            assertEquals(obj.integerList, result.integerList);
+            assertEquals("", result.string);
+        }
+    }
+
+    @Test
+    public void varintFormatShrinksSmallInts() throws IllegalAccessException {
+        ClientRequest cr = new ClientRequest(2, Arrays.asList("LT1", "0", "1", "2", "3", "4", "5", "6", "1"), 12);
+        byte[] compact = cr.marshall(WireFormat.COMPACT);
+        byte[] varint = cr.marshall(WireFormat.COMPACT_VARINT);
+        // requestMethod, id, list length and 9 string lengths each shrink from 4 bytes to 1, the type id from 2 to 1
+        assertEquals(compact.length - 12 * 3 - 1, varint.length);
+
+        ClientRequest crUnmarshalled = Marshallable.unmarshall(varint, ClientRequest.class);
+        assertEquals(cr.getId(), crUnmarshalled.getId());
+        assertEquals(cr.getRequestMethod(), crUnmarshalled.getRequestMethod());
+        assertEquals(cr.getArguments(), crUnmarshalled.getArguments());
+    }
+
+    @Test
+    public void compactFormatRequiresRegisteredType() {
+        assertThrows(IllegalArgumentException.class, () -> Marshaller.marshall(new Marshallable(), WireFormat.COMPACT));
+        assertThrows(IllegalArgumentException.class, () -> SchemaRegistry.register(1, ServerResponse.class));
+    }
+
+    @Test
+    public void typedRequestRoundTripsWithInheritedFields() throws IllegalAccessException {
+        CreateBookingRequest cbr = new CreateBookingRequest("BTC1", 1, 600, 690, true, 3);
+        ClientRequest untyped = new ClientRequest(3, Arrays.asList("BTC1", "1/10/00", "1/11/30", "1"), 3);
+
+        for (WireFormat format : WireFormat.values()) {
+            byte[] bytesArr = cbr.marshall(format);
+            // Decoded as the class written on the wire, even when a ClientRequest is expected
+            ClientRequest crUnmarshalled = Marshallable.unmarshall(bytesArr, ClientRequest.class);
+            assertTrue(crUnmarshalled instanceof CreateBookingRequest);
+
+            CreateBookingRequest cbrUnmarshalled = (CreateBookingRequest) crUnmarshalled;
+            assertEquals(cbr.getId(), cbrUnmarshalled.getId());
+            assertEquals(CreateBookingRequest.REQUEST_METHOD, cbrUnmarshalled.getRequestMethod());
+            assertEquals("BTC1", cbrUnmarshalled.getFacilityName());
+            assertEquals(1, cbrUnmarshalled.getDay());
+            assertEquals(600, cbrUnmarshalled.getStartMinute());
+            assertEquals(690, cbrUnmarshalled.getEndMinute());
+            assertTrue(cbrUnmarshalled.isAtMostOnce());
+            // LEGACY spells out every field name, so only the compact formats are smaller than the untyped request
+            if (format.isCompact()) assertTrue(bytesArr.length < untyped.marshall(format).length);
+        }
+    }
+
+    @Test
+    public void availabilityRequestPacksDays() throws IllegalAccessException {
+        int dayMask = AvailabilityRequest.toDayMask(Arrays.asList(0, 2, 6));
+        assertEquals(0b1000101, dayMask);
+        assertThrows(IllegalArgumentException.class, () -> AvailabilityRequest.toDayMask(Arrays.asList(7)));
+
+        AvailabilityRequest ar = new AvailabilityRequest("LT1", dayMask, false, 4);
+        AvailabilityRequest arUnmarshalled = Marshallable.unmarshall(ar.marshall(WireFormat.COMPACT_VARINT), AvailabilityRequest.class);
+        assertEquals(Arrays.asList(0, 2, 6), arUnmarshalled.getDays());
+        assertEquals(false, arUnmarshalled.isAtMostOnce());
+    }
+
+    @Test
+    public void arraysEnumsAndNestedObjectsRoundTrip() throws IllegalAccessException {
+        final double DELTA = 1e-15;
+        SchemaRegistry.register(1001, ArraysForTesting.class);
+
+        ArraysForTesting obj = new ArraysForTesting();
+        obj.primitiveLong = Long.MIN_VALUE;
+        obj.classLong = 1L << 40;
+        obj.primitiveByte = -7;
+        obj.bytes = new byte[]{0, -1, 127, -128};
+        obj.booleans = new boolean[]{true, false, true};
+        obj.shorts = new short[]{Short.MIN_VALUE, 0, Short.MAX_VALUE};
+        obj.ints = new int[]{Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE};
+        obj.longs = new long[]{Long.MIN_VALUE, 0, Long.MAX_VALUE};
+        obj.floats = new float[]{-1.5f, 0f, 3.14f};
+        obj.doubles = new double[]{-1.5, 0, 42.8};
+        obj.emptyInts = new int[0];
+        obj.strings = new String[]{"LT1", null, "SWLAB1"};
+        obj.twoDInts = new int[][]{{1, 2}, {}, {3}};
+        obj.colour = Colour.BLUE;
+        obj.colours = new Colour[]{Colour.GREEN, null, Colour.RED};
+        obj.nested = new NestedForTesting("parent", new int[]{1, 2, 3},
+                new NestedForTesting("child", new int[]{4}, null));
+        obj.nestedList = Arrays.asList(new NestedForTesting("first", null, null), null);
+
+        CodecMode originalMode = Marshaller.getCodecMode();
+        try {
+            for (CodecMode mode : CodecMode.values()) {
+                Marshaller.setCodecMode(mode);
+                for (WireFormat format : WireFormat.values()) {
+                    ArraysForTesting result = Marshallable.unmarshall(obj.marshall(format), ArraysForTesting.class);
+
+                    assertEquals(obj.primitiveLong, result.primitiveLong);
+                    assertEquals(obj.classLong, result.classLong);
+                    assertEquals(obj.primitiveByte, result.primitiveByte);
+                    assertArrayEquals(obj.bytes, result.bytes);
+                    assertArrayEquals(obj.booleans, result.booleans);
+                    assertArrayEquals(obj.shorts, result.shorts);
+                    assertArrayEquals(obj.ints, result.ints);
+                    assertArrayEquals(obj.longs, result.longs);
+                    assertArrayEquals(obj.floats, result.floats, (float) DELTA);
+                    assertArrayEquals(obj.doubles, result.doubles, DELTA);
+                    assertArrayEquals(obj.emptyInts, result.emptyInts);
+                    assertEquals(null, result.nullInts);
+                    assertArrayEquals(obj.strings, result.strings);
+                    assertArrayEquals(obj.twoDInts, result.twoDInts);
+                    assertEquals(Colour.BLUE, result.colour);
+                    assertArrayEquals(obj.colours, result.colours);
+
+                    assertEquals("parent", result.nested.name);
+                    assertArrayEquals(new int[]{1, 2, 3}, result.nested.values);
+                    assertEquals("child", result.nested.child.name);
+                    assertArrayEquals(new int[]{4}, result.nested.child.values);
+                    assertEquals(null, result.nested.child.child);
+                    assertEquals(2, result.nestedList.size());
+                    assertEquals("first", result.nestedList.get(0).name);
+                    assertEquals(null, result.nestedList.get(1));
+                }
+            }
+        } finally {
+            Marshaller.setCodecMode(originalMode);
+        }
+    }
+
+    @Test
+    public void generatedAndReflectiveCodecsAgreeOnArraysAndNestedObjects() throws IllegalAccessException {
+        ArraysForTesting obj = new ArraysForTesting();
+        obj.ints = new int[]{1, 2, 3};
+        obj.colour = Colour.GREEN;
+        obj.nested = new NestedForTesting("parent", new int[]{1}, new NestedForTesting("child", null, null));
+
+        CodecMode originalMode = Marshaller.getCodecMode();
+        try {
+            Marshaller.setCodecMode(CodecMode.REFLECTIVE);
+            byte[] reflective = obj.marshall();
+            Marshaller.setCodecMode(CodecMode.GENERATED);
+            byte[] generated = obj.marshall();
+            assertArrayEquals(reflective, generated);
+        } finally {
+            Marshaller.setCodecMode(originalMode);
+        }
+    }
+
+    @Test
+    public void nestedReferenceCycleThrows() {
+        NestedForTesting obj = new NestedForTesting("loop", null, null);
+        obj.child = obj;
+        assertThrows(IllegalArgumentException.class, obj::marshall);
+    }
+
+    @Test
+    public void corruptArrayLengthThrowsBeforeAllocating() throws IllegalAccessException {
+        NestedForTesting obj = new NestedForTesting("name", new int[]{1, 2, 3}, null);
+        byte[] bytesArr = obj.marshall(WireFormat.LEGACY);
+
+        // Overwrite the array length, which directly follows the name of the values field and its null flag
+        byte[] valuesHeader = "values".getBytes();
+        int lengthOffset = indexOf(bytesArr, valuesHeader) + valuesHeader.length + 1;
+        ByteBuffer.wrap(bytesArr).putInt(lengthOffset, Integer.MAX_VALUE);
+
+        assertThrows(BufferUnderflowException.class, () -> Marshallable.unmarshall(bytesArr, NestedForTesting.class));
+    }
+
+    public static class UnnumberedForTesting extends Marshallable {
+        String name = "unnumbered";
+    }
+
+    public static class DuplicateIdsForTesting extends Marshallable {
+        @FieldId(0) String first;
+        @FieldId(0) String second;
+    }
+
+    @Test
+    public void emptyMessageThrows() {
+        assertThrows(BufferUnderflowException.class, () -> Marshallable.unmarshall(new byte[0], ClientRequest.class));
+        assertThrows(BufferUnderflowException.class, () -> WireFormat.detect(ByteBuffer.allocate(0)));
+        assertThrows(BufferUnderflowException.class, () -> WireFormat.detect(new byte[0], 0));
+        // Only the magic byte, without the version after it
+        assertThrows(BufferUnderflowException.class, () -> WireFormat.detect(new byte[]{WireFormat.COMPACT_MAGIC}, 0));
+        assertThrows(BufferUnderflowException.class, () -> WireFormat.detect(ByteBuffer.wrap(new byte[]{WireFormat.COMPACT_MAGIC})));
+    }
+
+    @Test
+    public void compactFieldIdsAreDeclared() throws Exception {
+        SchemaRegistry.register(1002, UnnumberedForTesting.class);
+        assertThrows(IllegalArgumentException.class, () -> new UnnumberedForTesting().marshall(WireFormat.COMPACT));
+        assertEquals("unnumbered", Marshallable.unmarshall(new UnnumberedForTesting().marshall(WireFormat.LEGACY), UnnumberedForTesting.class).name);
+        assertThrows(IllegalArgumentException.class, () -> ClassSchema.forClass(DuplicateIdsForTesting.class));
+
+        // Inherited fields keep their ids in every subclass
+        byte[] bytesArr = new CreateBookingRequest("LT1", 1, 600, 659, true, 3).marshall(WireFormat.COMPACT);
+        bytesArr[bytesArr.length - 3] = 9; // The id of atMostOnce, the last field, replaced by one that is not declared
+        assertThrows(IllegalArgumentException.class, () -> Marshallable.unmarshall(bytesArr, CreateBookingRequest.class));
+    }
+
+    @Test
+    public void corruptStringLengthThrowsBeforeAllocating() {
+        // The first field name claims to be almost 2GB long
+        byte[] oversized = {0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xF0, 1, 2, 3};
+        assertThrows(BufferUnderflowException.class, () -> Marshallable.unmarshall(oversized, ClientRequest.class));
+        byte[] negative = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xF0, 1, 2, 3};
+        assertThrows(BufferUnderflowException.class, () -> Marshallable.unmarshall(negative, ClientRequest.class));
+    }
+
+    private int indexOf(byte[] bytesArr, byte[] target) {
+        for (int i = 0; i + target.length <= bytesArr.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(bytesArr, i, i + target.length), target)) return i;
+        }
+        return -1;
+    }
+
+    private void putString(ByteBuffer buffer, String string) {
+        buffer.putInt(string.length());
+        buffer.put(string.getBytes());
+    }
 }
@@ -0,0 +1,165 @@
+package Test.Transport;
+
+import Server.Transport.FaultInjectingTransport;
+import Server.Transport.FaultProfile;
+import Server.Transport.IDatagramTransport;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FaultInjectingTransportTest {
+    static final InetSocketAddress CLIENT = new InetSocketAddress("127.0.0.1", 50000);
+
+    @Test
+    public void noFaultsLeavesTransportUnwrapped() {
+        RecordingTransport transport = new RecordingTransport();
+        assertSame(transport, FaultInjectingTransport.wrap(transport, FaultProfile.NONE));
+    }
+
+    @Test
+    public void sameSeedLosesSameDatagrams() throws Exception {
+        FaultProfile profile = new FaultProfile(42, 0, 0.3, 0, 0, 0);
+        List<String> firstRun = sendNumbered(profile, 200);
+        List<String> secondRun = sendNumbered(profile, 200);
+        List<String> otherSeed = sendNumbered(profile.withSeed(43), 200);
+
+        assertEquals(firstRun, secondRun);
+        assertTrue(!firstRun.equals(otherSeed));
+        // About 30% are lost
+        assertTrue(firstRun.size() > 110 && firstRun.size() < 170);
+    }
+
+    @Test
+    public void duplicatesAndReorders() throws Exception {
+        // Every datagram is sent twice
+        List<String> sent = sendNumbered(new FaultProfile(1, 0, 0, 0, 1, 0), 3);
+        assertEquals(6, sent.size());
+        assertEquals("0", sent.get(0));
+        assertEquals("0", sent.get(1));
+
+        // The first datagram is held back, so one sent straight after overtakes it
+        RecordingTransport transport = new RecordingTransport();
+        FaultInjectingTransport faulty = new FaultInjectingTransport(transport, new FaultProfile(1, 0, 0, 0, 0, 1));
+        faulty.send(utf8("0"), CLIENT);
+        transport.send(utf8("1"), CLIENT);
+        while (transport.getSent().size() < 2) {
+            Thread.sleep(1);
+        }
+        assertEquals(Arrays.asList("1", "0"), transport.getSent());
+        assertEquals(1, faulty.getReordered());
+        faulty.close();
+    }
+
+    @Test
+    public void delayedSendArrivesLater() throws Exception {
+        RecordingTransport transport = new RecordingTransport();
+        FaultInjectingTransport faulty = new FaultInjectingTransport(transport, new FaultProfile(1, 0, 0, 0, 0, 1));
+        ByteBuffer message = utf8("Booking confirmation ID: 1");
+        long start = System.nanoTime();
+        faulty.send(message, CLIENT);
+        // The caller may reuse its buffer at once
+        assertEquals(message.limit(), message.position());
+        message.clear();
+        message.put(new byte[message.capacity()]);
+
+        while (transport.getSent().isEmpty()) {
+            Thread.sleep(1);
+        }
+        assertTrue(System.nanoTime() - start >= FaultProfile.REORDER_DELAY_MILLIS * 1_000_000L);
+        assertEquals("Booking confirmation ID: 1", transport.getSent().get(0));
+        assertEquals(1, faulty.getDelayed());
+        faulty.close();
+    }
+
+    @Test
+    public void lostRequestsAreSkipped() throws Exception {
+        RecordingTransport transport = new RecordingTransport();
+        for (int i = 0; i < 100; i++) {
+            transport.toReceive.add("request " + i);
+        }
+        FaultInjectingTransport faulty = new FaultInjectingTransport(transport, new FaultProfile(7, 0.5, 0, 0, 0, 0));
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        int received = 0;
+        try {
+            while (true) {
+                buffer.clear();
+                faulty.receive(buffer);
+                received++;
+            }
+        } catch (IllegalStateException e) {
+            // Nothing left to receive
+        }
+        assertEquals(100, received + faulty.getDroppedReceived());
+        assertTrue(received > 30 && received < 70);
+    }
+
+    // =====================================
+    // Helpers
+    // =====================================
+    private static List<String> sendNumbered(FaultProfile profile, int count) throws Exception {
+        RecordingTransport transport = new RecordingTransport();
+        try (FaultInjectingTransport faulty = new FaultInjectingTransport(transport, profile)) {
+            for (int i = 0; i < count; i++) {
+                faulty.send(utf8(Integer.toString(i)), CLIENT);
+            }
+        }
+        return transport.getSent();
+    }
+
+    private static ByteBuffer utf8(String message) {
+        return ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Records what is sent, and receives a fixed list of payloads
+     */
+    static class RecordingTransport implements IDatagramTransport {
+        private final List<String> sent = new ArrayList<>();
+        final Queue<String> toReceive = new ArrayDeque<>();
+
+        @Override
+        public SocketAddress receive(ByteBuffer buffer) {
+            String payload = toReceive.poll();
+            if (payload == null) throw new IllegalStateException("Nothing to receive");
+            buffer.put(payload.getBytes(StandardCharsets.UTF_8));
+            return CLIENT;
+        }
+
+        @Override
+        public synchronized void send(ByteBuffer message, SocketAddress target) {
+            byte[] payload = new byte[message.remaining()];
+            message.get(payload);
+            sent.add(new String(payload, StandardCharsets.UTF_8));
+        }
+
+        synchronized List<String> getSent() {
+            return new ArrayList<>(sent);
+        }
+
+        @Override
+        public boolean prefersDirectBuffers() {
+            return false;
+        }
+
+        @Override
+        public SocketAddress getLocalAddress() {
+            return CLIENT;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package Test.Transport;
+
+import Client.ClientRequest;
+import Client.CreateBookingRequest;
+import Marshaller.BufferPool;
+import Marshaller.Marshallable;
+import Marshaller.WireFormat;
+import Server.Transport.ChannelTransport;
+import Server.Transport.IDatagramTransport;
+import Server.Transport.ReusePortChannels;
+import Server.Transport.SocketTransport;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TransportTest {
+    private static final InetAddress LOOPBACK = InetAddress.getLoopbackAddress();
+
+    @Test
+    public void socketTransportRoundTrip() throws IOException {
+        try (IDatagramTransport transport = new SocketTransport(new DatagramSocket(0, LOOPBACK))) {
+            assertRoundTrip(transport, ByteBuffer.allocate(512));
+            assertRoundTrip(transport, ByteBuffer.allocateDirect(512));
+        }
+    }
+
+    @Test
+    public void channelTransportRoundTrip() throws IOException {
+        try (IDatagramTransport transport = new ChannelTransport(DatagramChannel.open().bind(new InetSocketAddress(LOOPBACK, 0)))) {
+            assertTrue(transport.prefersDirectBuffers());
+            assertRoundTrip(transport, ByteBuffer.allocateDirect(512));
+            assertRoundTrip(transport, ByteBuffer.allocate(512));
+        }
+    }
+
+    @Test
+    public void requestUnmarshalledFromPooledDirectBuffer() throws IOException, IllegalAccessException {
+        // The path the server takes with a channel transport: receive into a direct buffer, detect the format, unmarshall
+        BufferPool pool = new BufferPool(512, 4, true);
+        try (IDatagramTransport transport = new ChannelTransport(DatagramChannel.open().bind(new InetSocketAddress(LOOPBACK, 0)));
+             DatagramSocket client = new DatagramSocket(0, LOOPBACK)) {
+            byte[] request = new CreateBookingRequest("BTC1", 1, 600, 690, true, 7).marshall(WireFormat.COMPACT_VARINT);
+            client.send(new DatagramPacket(request, request.length, transport.getLocalAddress()));
+
+            ByteBuffer requestBuffer = pool.acquire();
+            assertTrue(requestBuffer.isDirect());
+            transport.receive(requestBuffer);
+            requestBuffer.flip();
+
+            assertEquals(WireFormat.COMPACT_VARINT, WireFormat.detect(requestBuffer));
+            ClientRequest received = Marshallable.unmarshall(requestBuffer, ClientRequest.class);
+            pool.release(requestBuffer);
+
+            assertTrue(received instanceof CreateBookingRequest);
+            assertEquals(7, received.getId());
+            assertEquals(690, ((CreateBookingRequest) received).getEndMinute());
+            assertEquals(0, pool.getInUse());
+        }
+    }
+
+    @Test
+    public void reusePortChannelsShareAPort() throws IOException {
+        Assume.assumeTrue(ReusePortChannels.isSupported());
+        try (DatagramChannel first = ReusePortChannels.open(0)) {
+            int port = ((InetSocketAddress) first.getLocalAddress()).getPort();
+            try (DatagramChannel second = ReusePortChannels.open(port)) {
+                assertEquals(port, ((InetSocketAddress) second.getLocalAddress()).getPort());
+            }
+        }
+    }
+
+    /**
+     * Sends a datagram from a client socket to the transport and replies to it through the transport
+     */
+    private static void assertRoundTrip(IDatagramTransport transport, ByteBuffer buffer) throws IOException {
+        try (DatagramSocket client = new DatagramSocket(0, LOOPBACK)) {
+            client.setSoTimeout(2000);
+            byte[] request = "request".getBytes(StandardCharsets.UTF_8);
+            client.send(new DatagramPacket(request, request.length, transport.getLocalAddress()));
+
+            buffer.clear();
+            SocketAddress sender = transport.receive(buffer);
+            buffer.flip();
+            byte[] received = new byte[buffer.remaining()];
+            buffer.get(received);
+            assertArrayEquals(request, received);
+            assertEquals(client.getLocalSocketAddress(), sender);
+
+            buffer.clear();
+            buffer.put("reply".getBytes(StandardCharsets.UTF_8)).flip();
+            transport.send(buffer, sender);
+            DatagramPacket reply = new DatagramPacket(new byte[16], 16);
+            client.receive(reply);
+            assertEquals("reply", new String(reply.getData(), 0, reply.getLength(), StandardCharsets.UTF_8));
+        }
+    }
+}